@@ -1,5 +1,6 @@
 package smacc;
 
+import smacc.arm.Register;
 import smacc.arm.Translator;
 import smacc.ast.ASTVisitorListener;
 import smacc.ast.Translatable;
@@ -16,6 +17,18 @@ import java.util.List;
  */
 public class Function implements Translatable {
 
+  /*
+   * How a caller hands over the arguments, the result is always in r0
+   */
+  public enum CallingConvention {
+    // Every argument pushed in order, the last nearest the stack pointer
+    STACK,
+    // The first four in r0 to r3 and any others pushed in order
+    REGISTERS
+  }
+
+  public static final int ARGUMENT_REGISTERS = 4;
+
   private ScopeNode scopeNode;
   private WACCType returnType;
   private List<Variable> parameters;
@@ -26,6 +39,17 @@ public class Function implements Translatable {
   //  Unique identifier used in ARM output
   private String id;
 
+  //  Callee-saved registers pushed by the prologue, set by register allocation
+  private List<Register> savedRegisters = new ArrayList<>();
+
+  //  Cleared for leaf functions, which return straight from lr
+  private boolean savesLinkRegister = true;
+
+  private CallingConvention callingConvention = CallingConvention.STACK;
+
+  //  Bytes of locals below the saved registers, set by the frame layout
+  private int frameSize = 0;
+
   public Function(String baseId, WACCType returnType,
       ArrayList<Variable> arrayList, SymbolTable funcScope) {
     this.returnType = returnType;
@@ -79,6 +103,81 @@ public class Function implements Translatable {
     return size;
   }
 
+  public int getFrameSize() {
+    return frameSize;
+  }
+
+  public void setFrameSize(int frameSize) {
+    this.frameSize = frameSize;
+  }
+
+  public CallingConvention getCallingConvention() {
+    return callingConvention;
+  }
+
+  public void setCallingConvention(CallingConvention callingConvention) {
+    this.callingConvention = callingConvention;
+  }
+
+  // Whether argument i arrives in register ri rather than on the stack
+  public boolean isPassedInRegister(int i) {
+    return callingConvention == CallingConvention.REGISTERS
+        && i < ARGUMENT_REGISTERS;
+  }
+
+  //  Bytes of arguments the caller pushes and pops again
+  public int stackParameterSizeInBytes() {
+    int size = 0;
+    for (int i = 0; i < parameters.size(); i++) {
+      if (!isPassedInRegister(i)) {
+        size += parameters.get(i).getSizeInBytes();
+      }
+    }
+    return size;
+  }
+
+  //  Scope holding the parameters themselves, the root of the function scope
+  public SymbolTable getParameterScope() {
+    return scopeNode.getSymbolTable().getPreviousTable();
+  }
+
+  //  Arguments passed in registers that were not given a register of their
+  //  own, the prologue pushes these below the link register
+  public List<Variable> getHomedParameters() {
+    List<Variable> homed = new ArrayList<>();
+    if (isMain()) {
+      return homed;
+    }
+    int i = 0;
+    for (Variable parameter : getParameterScope().getVariables()) {
+      if (isPassedInRegister(i++) && !parameter.hasRegister()) {
+        homed.add(parameter);
+      }
+    }
+    return homed;
+  }
+
+  /*
+   * Offset of a parameter from the top of the locals. Homed arguments take a
+   * word each in order, pushed arguments are above the saved registers and
+   * any saved link register with the last argument lowest.
+   */
+  public int getParameterOffset(Variable parameter) {
+    List<Variable> homed = getHomedParameters();
+    if (homed.contains(parameter)) {
+      return 4 * homed.indexOf(parameter);
+    }
+    List<Variable> all = new ArrayList<>(getParameterScope().getVariables());
+    int offset = 4 * (homed.size() + savedRegisters.size()
+        + (savesLinkRegister ? 1 : 0));
+    for (int i = all.indexOf(parameter) + 1; i < all.size(); i++) {
+      if (!isPassedInRegister(i)) {
+        offset += all.get(i).getSizeInBytes();
+      }
+    }
+    return offset;
+  }
+
   @Override
   public boolean equals(Object o) {
 
@@ -102,6 +201,22 @@ public class Function implements Translatable {
         && (baseId.equals(other.baseId));
   }
 
+  public List<Register> getSavedRegisters() {
+    return savedRegisters;
+  }
+
+  public void setSavedRegisters(List<Register> savedRegisters) {
+    this.savedRegisters = savedRegisters;
+  }
+
+  public boolean savesLinkRegister() {
+    return savesLinkRegister;
+  }
+
+  public void setSavesLinkRegister(boolean savesLinkRegister) {
+    this.savesLinkRegister = savesLinkRegister;
+  }
+
   public SymbolTable getFuncScope() {
     return scopeNode.getSymbolTable();
   }
@@ -6,7 +6,18 @@ import smacc.ast.stat.StatNode;
 import smacc.exceptions.IdentifierDeclaredPreviouslyInCurrentScopeException;
 import smacc.exceptions.IdentifierUndeclaredException;
 import smacc.arm.ARMNode;
+import smacc.arm.PeepholeOptimiser;
+import smacc.arm.ShrinkWrapper;
 import smacc.arm.Translator;
+import smacc.ast.ConstantFolder;
+import smacc.ast.DeadCodeEliminator;
+import smacc.ast.Inliner;
+import smacc.ast.TailCallEliminator;
+import smacc.ast.smartalloc.FrameLayout;
+import smacc.ast.smartalloc.LinearScanAllocator;
+import smacc.ir.InstructionSelector;
+import smacc.ir.Lowering;
+import smacc.ir.Optimiser;
 import smacc.types.WACCType;
 
 /*
@@ -91,13 +102,101 @@ public class FunctionTable {
     }
   }
 
-  public List<ARMNode> translate() {
+  //  Folds the constant expressions of every function, including main
+  public void foldConstants() {
+    ConstantFolder folder = new ConstantFolder();
+    for (String id : funcTable.keySet()) {
+      for (Function function : funcTable.get(id)) {
+        folder.fold(function);
+      }
+    }
+    folder.fold(main);
+  }
+
+  //  Turns functions ending in a call to themselves into loops
+  public void eliminateTailCalls() {
+    TailCallEliminator eliminator = new TailCallEliminator();
+    for (String id : funcTable.keySet()) {
+      for (Function function : funcTable.get(id)) {
+        eliminator.eliminate(function);
+      }
+    }
+  }
+
+  //  Replaces calls to small functions by copies of their bodies
+  public void inlineCalls(int threshold) {
+    Inliner inliner = new Inliner(threshold);
+    for (String id : funcTable.keySet()) {
+      for (Function function : funcTable.get(id)) {
+        inliner.inline(function);
+      }
+    }
+    inliner.inline(main);
+  }
+
+  //  Drops unreachable statements and assignments that are never read
+  public void eliminateDeadCode() {
+    DeadCodeEliminator eliminator = new DeadCodeEliminator();
+    for (String id : funcTable.keySet()) {
+      for (Function function : funcTable.get(id)) {
+        eliminator.eliminate(function);
+      }
+    }
+    eliminator.eliminate(main);
+  }
+
+  //  Every function gets a single frame, and from optimisation level 1
+  //  locals are allocated registers before any function is translated,
+  //  level 2 goes through the IR instead
+  public List<ARMNode> translate(int optimisationLevel) {
+    // From level 1 the first arguments are passed in registers
+    for (String id : funcTable.keySet()) {
+      for (Function function : funcTable.get(id)) {
+        function.setCallingConvention((optimisationLevel >= 1)
+            ? Function.CallingConvention.REGISTERS
+            : Function.CallingConvention.STACK);
+      }
+    }
+
+    if (optimisationLevel >= 2) {
+      InstructionSelector selector = new InstructionSelector();
+      for (String id : funcTable.keySet()) {
+        for (Function function : funcTable.get(id)) {
+          selector.select(Optimiser.optimise(Lowering.lower(function)));
+        }
+      }
+      selector.select(Optimiser.optimise(Lowering.lower(main)));
+      return PeepholeOptimiser.optimise(ShrinkWrapper.run(selector.getARM()));
+    }
+
+    if (optimisationLevel >= 1) {
+      for (String id : funcTable.keySet()) {
+        for (Function function : funcTable.get(id)) {
+          LinearScanAllocator.allocate(function);
+        }
+      }
+      LinearScanAllocator.allocate(main);
+    }
+
+    // Only the locals left without a register take a slot
+    for (String id : funcTable.keySet()) {
+      for (Function function : funcTable.get(id)) {
+        FrameLayout.layOut(function);
+      }
+    }
+    FrameLayout.layOut(main);
+
     for (String id : funcTable.keySet()) {
       for (Function function : funcTable.get(id)) {
         function.translate(translator);
       }
     }
     main.translate(translator);
+
+    if (optimisationLevel >= 1) {
+      return PeepholeOptimiser.optimise(ShrinkWrapper.run(translator
+          .getARM()));
+    }
     return translator.getARM();
   }
 
@@ -14,6 +14,7 @@ import org.antlr.v4.runtime.tree.ParseTree;
 
 import smacc.arm.ARMNode;
 import smacc.ast.ASTStaticViewer;
+import smacc.ast.Inliner;
 import smacc.exceptions.InvalidProgramTreeError;
 
 import antlr.WACCLexer;
@@ -34,6 +35,10 @@ public class SMACC {
       + "\n  -gnc,--graph-no-compile\tProduce a graph but do not compile the \n\t\t\t\tGraphviz source"
       + "\n  -ug, --unstructured-graph\tGraph produced is unstructured \n\t\t\t\tie. functions are put in place"
       + "\n  -f,  --format\t\t\tSpecify graph output format, \n\t\t\t\tSupported formats: ps, png, svg"
+      + "\n  -O0\t\t\t\tDisable optimisation, every variable lives on \n\t\t\t\tthe stack"
+      + "\n  -O1\t\t\t\tKeep variables in registers (default)"
+      + "\n  -O2\t\t\t\tCompile through the intermediate representation,\n\t\t\t\tallocating registers by graph colouring"
+      + "\n  -i,  --inline-threshold\tLargest function, in AST nodes, inlined from \n\t\t\t\t-O1 up (default 32, 0 disables inlining)"
       + "\n  -q,  --quiet\t\t\tQuiet mode, suppresses all message text"
       + "\n  -v,  --verbose\t\tVerbose mode, increases amount of message text";
 
@@ -56,6 +61,8 @@ public class SMACC {
     String graphPath = "astgraph";
 
     int feedbackLevel = 1;
+    int optimisationLevel = 1;
+    int inlineThreshold = Inliner.DEFAULT_THRESHOLD;
     boolean writeArmToSTDOut = true;
     String armPath = "out.s";
 
@@ -127,6 +134,30 @@ public class SMACC {
           }
           break;
 
+        case "-O0":
+          optimisationLevel = 0;
+          break;
+
+        case "-O1":
+          optimisationLevel = 1;
+          break;
+
+        case "-O2":
+          optimisationLevel = 2;
+          break;
+
+        case "-i":
+        case "--inline-threshold":
+          // Next argument should be a node count
+          arg = args[++i];
+          try {
+            inlineThreshold = Integer.parseInt(arg);
+          } catch (NumberFormatException e) {
+            System.err.printf("SMACC: invalid inline threshold %s\n", arg);
+            System.exit(EXIT_INVALID_ARGUMENT);
+          }
+          break;
+
         case "-q":
         case "--quiet":
           feedbackLevel = 0;
@@ -220,6 +251,14 @@ public class SMACC {
     if (feedbackLevel > 1)
       System.out.printf("Done!\n");
 
+    // Collapse constant expressions before they are graphed or translated
+    funcTable.foldConstants();
+    if (optimisationLevel >= 1) {
+      funcTable.eliminateTailCalls();
+      funcTable.inlineCalls(inlineThreshold);
+      funcTable.eliminateDeadCode();
+    }
+
     // Produce graph if options are set
     if (produceGraph) {
       if (feedbackLevel > 0) {
@@ -254,7 +293,7 @@ public class SMACC {
     }
 
     // Translate AST into ARM nodes then convert to strings
-    List<ARMNode> arm = funcTable.translate();
+    List<ARMNode> arm = funcTable.translate(optimisationLevel);
     for (ARMNode node : arm) {
       try {
         out.write(node.toString());
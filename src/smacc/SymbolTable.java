@@ -1,5 +1,6 @@
 package smacc;
 
+import java.util.Collection;
 import java.util.LinkedHashMap;
 
 import smacc.exceptions.IdentifierDeclaredPreviouslyInCurrentScopeException;
@@ -14,7 +15,6 @@ public class SymbolTable {
   private LinkedHashMap<String, Variable> entries;
   private SymbolTable previousTable;
   private int offset = 0;
-  private int spOffset = 0;
 
   //  This constructor only used to create a global symbol table
   public SymbolTable() {
@@ -63,15 +63,6 @@ public class SymbolTable {
     return symbol;
   }
 
-  //  Change Stack Pointer Offset
-  public void changeSPOffset(int x) {
-    spOffset += x;
-  }
-
-  public void setSPOffset(int x) {
-    spOffset = x;
-  }
-
   public void declare(Variable entry, String id)
       throws IdentifierDeclaredPreviouslyInCurrentScopeException {
     if (entries.containsKey(id)) {
@@ -82,21 +73,18 @@ public class SymbolTable {
     entries.put(id, entry);
   }
 
-  //  Get the stack offset of a variable
-  public int getOffset(Variable entry) {
-    int entryOffset = 0;
-    SymbolTable currentTable = this;
-    int currentTableSize = currentTable.getSizeOfTableInBytes();
-    while ((currentTable != null) && !currentTable.entries.containsValue(entry)) {
-      entryOffset += currentTable.getSizeOfTableInBytes();
-      currentTableSize = currentTable.getSizeOfTableInBytes();
-      currentTable = currentTable.getPreviousTable();
-    }
-    if (currentTable != null) {
-      currentTableSize = currentTable.getSizeOfTableInBytes();
-    }
-    entryOffset += currentTableSize - entry.getOffset();
-    return entryOffset + spOffset;
+  //  Variables declared in this scope, in declaration order
+  public Collection<Variable> getVariables() {
+    return entries.values();
+  }
+
+  //  Identifiers declared in this scope, in declaration order
+  public Collection<String> getIdentifiers() {
+    return entries.keySet();
+  }
+
+  public Variable lookupInThisTable(String id) {
+    return entries.get(id);
   }
 
   public boolean containsKeyInThisTable(String id) {
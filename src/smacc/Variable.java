@@ -11,18 +11,35 @@ import smacc.types.WACCType;
 
 public class Variable {
 
+  // Register number held by variables that live on the stack
+  public static final int NO_REGISTER = -1;
+
   WACCType type;
   int register;
   int offset;
+  int frameOffset;
   int birthIndex;
   int deathIndex;
 
   public Variable(WACCType type) {
     this.birthIndex = 0;
     this.deathIndex = 0;
+    this.register = NO_REGISTER;
     this.type = type;
   }
 
+  public boolean hasRegister() {
+    return register != NO_REGISTER;
+  }
+
+  public int getRegister() {
+    return register;
+  }
+
+  public void setRegister(int register) {
+    this.register = register;
+  }
+
   public int getBirthIndex() {
     return birthIndex;
   }
@@ -47,6 +64,15 @@ public class Variable {
     this.offset = offset;
   }
 
+  // Offset from the stack pointer once the frame is allocated
+  public int getFrameOffset() {
+    return frameOffset;
+  }
+
+  public void setFrameOffset(int frameOffset) {
+    this.frameOffset = frameOffset;
+  }
+
   public WACCType getType() {
     return type;
   }
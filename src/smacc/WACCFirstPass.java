@@ -411,14 +411,12 @@ public class WACCFirstPass extends WACCParserBaseVisitor<ASTNode> {
         returnType = TYPE_BOOL;
         break;
     }
-    boolean typesAreCorrect = true;
     if (!expectedArgType.equals(lhs)) {
       if (rhs.equals(expectedArgType)) {
         expectedArgType = rhs;
       }
       errors.add(ctx, "Expected left argument of % to be % but got %", binOp,
           expectedArgType, lhs);
-      typesAreCorrect = false;
     }
     if (!expectedArgType.equals(rhs)) {
       if (lhs.equals(expectedArgType)) {
@@ -426,75 +424,13 @@ public class WACCFirstPass extends WACCParserBaseVisitor<ASTNode> {
       }
       errors.add(ctx, "Expected right argument of % to be % but got %", binOp,
           expectedArgType, rhs);
-      typesAreCorrect = false;
     }
     if (expectedArgType.equals(lhs) && expectedArgType.equals(rhs)
         && !(lhs.equals(rhs))) {
       errors.add(ctx, "Type mismatch in %", binOp);
-      typesAreCorrect = false;
     }
     typeStack.push(returnType);
 
-    if (typesAreCorrect && lhsnode instanceof ImmediateReplacable
-        && rhsnode instanceof ImmediateReplacable) {
-
-      /*
-       * We know both operands are immediates and so we can evaluate the result
-       * here, at compile time
-       * 
-       * We apologise profusely
-       */
-
-      ImmediateReplacable lhsImm = (ImmediateReplacable) lhsnode;
-      ImmediateReplacable rhsImm = (ImmediateReplacable) rhsnode;
-
-      switch (binOp) {
-        case "%":
-          return new IntLiteralNode(lhsImm.getIntValue() % rhsImm.getIntValue());
-        case "/":
-          if (rhsImm.getIntValue() == 0) {
-            errors.add(ctx, "Tried to divide by zero");
-            errors.setErrorType(ErrorCode.RUNTIME_ERR);
-
-          } else
-            return new IntLiteralNode(lhsImm.getIntValue()
-                / rhsImm.getIntValue());
-        case "*":
-          return new IntLiteralNode(lhsImm.getIntValue() * rhsImm.getIntValue());
-        case "+":
-          return new IntLiteralNode(lhsImm.getIntValue() + rhsImm.getIntValue());
-        case "-":
-          return new IntLiteralNode(lhsImm.getIntValue() - rhsImm.getIntValue());
-        case ">":
-          return new BoolLiteralNode(lhsImm.getIntValue() > rhsImm
-              .getIntValue());
-        case ">=":
-          return new BoolLiteralNode(lhsImm.getIntValue() >= rhsImm
-              .getIntValue());
-        case "<":
-          return new BoolLiteralNode(lhsImm.getIntValue() < rhsImm
-              .getIntValue());
-        case "<=":
-          return new BoolLiteralNode(lhsImm.getIntValue() <= rhsImm
-              .getIntValue());
-        case "==":
-          return new BoolLiteralNode(lhsImm.getIntValue() == rhsImm
-              .getIntValue());
-        case "!=":
-          return new BoolLiteralNode(lhsImm.getIntValue() != rhsImm
-              .getIntValue());
-        case "&&":
-          return new BoolLiteralNode(lhsImm.getIntValue() == 1
-              && rhsImm.getIntValue() == 1);
-        case "||":
-          return new BoolLiteralNode(lhsImm.getIntValue() == 1
-              || rhsImm.getIntValue() == 1);
-
-        default:
-          break;
-      }
-    }
-
     return new BinaryOpNode(binOp, lhsnode, rhsnode, returnType);
   }
 
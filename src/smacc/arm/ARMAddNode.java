@@ -1,5 +1,9 @@
 package smacc.arm;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 public class ARMAddNode extends ARMNode {
 
   public enum AddComparator {
@@ -24,4 +28,42 @@ public class ARMAddNode extends ARMNode {
         destReg, regOp1, op2);
     return instruction;
   }
+
+  public AddComparator getComparator() {
+    return comparator;
+  }
+
+  @Override
+  public List<Register> getUsedRegisters() {
+    List<Register> used = new ArrayList<>();
+    used.add(regOp1);
+    if (op2.getRegister() != null) {
+      used.add(op2.getRegister());
+    }
+    return used;
+  }
+
+  @Override
+  public List<Register> getDefinedRegisters() {
+    List<Register> defined = new ArrayList<>();
+    defined.add(destReg);
+    return defined;
+  }
+
+  @Override
+  public int getStackAdjustment() {
+    Register sp = new Register(Register.SpecialReg.sp);
+    if (destReg.equals(sp) && regOp1.equals(sp) && op2.getRegister() == null) {
+      return -op2.getImmediate();
+    }
+    return 0;
+  }
+
+  @Override
+  public void replaceRegisters(Map<Register, Register> uses,
+      Map<Register, Register> defs) {
+    regOp1 = rename(regOp1, uses);
+    op2 = rename(op2, uses);
+    destReg = rename(destReg, defs);
+  }
 }
@@ -1,15 +1,81 @@
 package smacc.arm;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import smacc.arm.Register.SpecialReg;
+
 public class ARMBranchNode extends ARMNode {
   public enum BranchComparator {
-    BEQ, BLEQ, BLNE, BL, BLCS, BLVS, B, BLLT
+    BEQ, BNE, BLT, BLE, BGT, BGE, BLEQ, BLNE, BL, BLCS, BLVS, B, BLLT
   }
 
+  String label;
+  BranchComparator comparator;
+
   public ARMBranchNode(String label, BranchComparator comparator) {
+    this.label = label;
+    this.comparator = comparator;
     instruction = "\t" + comparator.name() + " " + label + '\n';
   }
 
+  public String getLabel() {
+    return label;
+  }
+
+  public BranchComparator getComparator() {
+    return comparator;
+  }
+
+  // Branch with link instructions call a function, BLT and BLE do not
+  public boolean isCall() {
+    switch (comparator) {
+      case BL:
+      case BLEQ:
+      case BLNE:
+      case BLCS:
+      case BLVS:
+      case BLLT:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  // Calls that come back, the error handlers and exit never do
+  public boolean isReturningCall() {
+    return isCall() && !label.equals("p_throw_overflow_error")
+        && !label.equals("p_throw_runtime_error") && !label.equals("exit");
+  }
+
   public String toString() {
     return instruction;
   }
+
+  // Calls may read any argument register
+  @Override
+  public List<Register> getUsedRegisters() {
+    List<Register> used = new ArrayList<>();
+    if (isCall()) {
+      used.add(new Register(SpecialReg.r0));
+      used.add(new Register(SpecialReg.r1));
+      used.add(new Register(SpecialReg.r2));
+      used.add(new Register(SpecialReg.r3));
+    }
+    return used;
+  }
+
+  // Calls clobber the argument registers and the link register
+  @Override
+  public List<Register> getDefinedRegisters() {
+    List<Register> defined = new ArrayList<>();
+    if (isCall()) {
+      defined.add(new Register(SpecialReg.r0));
+      defined.add(new Register(SpecialReg.r1));
+      defined.add(new Register(SpecialReg.r2));
+      defined.add(new Register(SpecialReg.r3));
+      defined.add(new Register(SpecialReg.lr));
+    }
+    return defined;
+  }
 }
@@ -1,5 +1,9 @@
 package smacc.arm;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 public class ARMCmpNode extends ARMNode {
   Register register;
   OperandTwo operandTwo;
@@ -13,4 +17,29 @@ public class ARMCmpNode extends ARMNode {
     instruction = String.format("\tCMP %s, %s\n", register, operandTwo);
     return instruction;
   }
+
+  public Register getRegister() {
+    return register;
+  }
+
+  public OperandTwo getOperandTwo() {
+    return operandTwo;
+  }
+
+  @Override
+  public List<Register> getUsedRegisters() {
+    List<Register> used = new ArrayList<>();
+    used.add(register);
+    if (operandTwo.getRegister() != null) {
+      used.add(operandTwo.getRegister());
+    }
+    return used;
+  }
+
+  @Override
+  public void replaceRegisters(Map<Register, Register> uses,
+      Map<Register, Register> defs) {
+    register = rename(register, uses);
+    operandTwo = rename(operandTwo, uses);
+  }
 }
@@ -0,0 +1,73 @@
+package smacc.arm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Function epilogue, restores the registers saved by the matching
+ * ARMFunctionStart and returns by popping the saved link register into pc,
+ * or with BX lr when the link register was never saved
+ */
+public class ARMFunctionReturn extends ARMNode {
+
+  private List<Register> savedRegisters;
+  private boolean savesLinkRegister;
+
+  public ARMFunctionReturn(List<Register> savedRegisters) {
+    this(savedRegisters, true);
+  }
+
+  public ARMFunctionReturn(List<Register> savedRegisters,
+      boolean savesLinkRegister) {
+    this.savedRegisters = savedRegisters;
+    this.savesLinkRegister = savesLinkRegister;
+  }
+
+  public List<Register> getSavedRegisters() {
+    return savedRegisters;
+  }
+
+  public boolean savesLinkRegister() {
+    return savesLinkRegister;
+  }
+
+  // POP of the saved registers followed by last, empty if there are none
+  protected String pop(String last) {
+    StringBuilder registers = new StringBuilder();
+    for (Register register : savedRegisters) {
+      registers.append(registers.length() == 0 ? "" : ", ").append(register);
+    }
+    if (last != null) {
+      registers.append(registers.length() == 0 ? "" : ", ").append(last);
+    }
+    return (registers.length() == 0) ? ""
+        : String.format("\tPOP {%s}\n", registers);
+  }
+
+  public String toString() {
+    if (savesLinkRegister) {
+      return pop("pc");
+    }
+    return pop(null) + "\tBX lr\n";
+  }
+
+  // The return value is passed back in r0
+  @Override
+  public List<Register> getUsedRegisters() {
+    List<Register> used = new ArrayList<>();
+    used.add(new Register(Register.SpecialReg.r0));
+    used.add(new Register(Register.SpecialReg.sp));
+    if (!savesLinkRegister) {
+      used.add(new Register(Register.SpecialReg.lr));
+    }
+    return used;
+  }
+
+  @Override
+  public List<Register> getDefinedRegisters() {
+    List<Register> defined = new ArrayList<>(savedRegisters);
+    defined.add(new Register(Register.SpecialReg.sp));
+    defined.add(new Register(Register.SpecialReg.pc));
+    return defined;
+  }
+}
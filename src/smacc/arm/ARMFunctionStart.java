@@ -1,12 +1,88 @@
 package smacc.arm;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Function prologue, saves the link register along with any callee-saved
+ * registers the function body writes to. Leaf functions keep their return
+ * address in lr, so only push the callee-saved registers, if any.
+ */
 public class ARMFunctionStart extends ARMNode {
+
+  private List<Register> savedRegisters;
+  private boolean savesLinkRegister;
+
   public ARMFunctionStart() {
+    this(new ArrayList<Register>());
+  }
+
+  public ARMFunctionStart(List<Register> savedRegisters) {
+    this(savedRegisters, true);
+  }
+
+  public ARMFunctionStart(List<Register> savedRegisters,
+      boolean savesLinkRegister) {
+    this.savedRegisters = savedRegisters;
+    this.savesLinkRegister = savesLinkRegister;
+  }
+
+  public List<Register> getSavedRegisters() {
+    return savedRegisters;
+  }
+
+  public boolean savesLinkRegister() {
+    return savesLinkRegister;
+  }
+
+  // Nothing pushed at all
+  public boolean isEmpty() {
+    return savedRegisters.isEmpty() && !savesLinkRegister;
+  }
 
+  /*
+   * Whether a function body leaves lr alone, calls to the error handlers and
+   * exit never come back so do not need it kept
+   */
+  public static boolean isLeaf(List<ARMNode> body) {
+    for (ARMNode node : body) {
+      if (node instanceof ARMBranchNode
+          && ((ARMBranchNode) node).isReturningCall()) {
+        return false;
+      }
+    }
+    return true;
   }
 
   public String toString() {
-    return "\tPUSH {lr}\n";
+    if (isEmpty()) {
+      return "";
+    }
+    StringBuilder registers = new StringBuilder();
+    for (Register register : savedRegisters) {
+      registers.append(registers.length() == 0 ? "" : ", ").append(register);
+    }
+    if (savesLinkRegister) {
+      registers.append(registers.length() == 0 ? "" : ", ").append("lr");
+    }
+    return String.format("\tPUSH {%s}\n", registers);
+  }
+
+  @Override
+  public List<Register> getUsedRegisters() {
+    List<Register> used = new ArrayList<>(savedRegisters);
+    if (savesLinkRegister) {
+      used.add(new Register(Register.SpecialReg.lr));
+    }
+    used.add(new Register(Register.SpecialReg.sp));
+    return used;
+  }
+
+  @Override
+  public List<Register> getDefinedRegisters() {
+    List<Register> defined = new ArrayList<>();
+    defined.add(new Register(Register.SpecialReg.sp));
+    return defined;
   }
 
 }
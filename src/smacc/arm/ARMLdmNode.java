@@ -0,0 +1,67 @@
+package smacc.arm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Load multiple, reads consecutive words from the base register up into the
+ * registers with the lowest numbered register lowest. LDMIA starts at the
+ * base and LDMIB a word above it, and writing back leaves the base just past
+ * the last word loaded.
+ */
+public class ARMLdmNode extends ARMNode {
+  public enum LdmComparator {
+    LDMIA, LDMIB
+  }
+
+  LdmComparator comparator;
+  Register base;
+  List<Register> registers;
+  boolean changeBase;
+
+  public ARMLdmNode(Register base, List<Register> registers,
+      boolean changeBase, LdmComparator comparator) {
+    this.comparator = comparator;
+    this.base = base;
+    this.registers = new ArrayList<>(registers);
+    this.changeBase = changeBase;
+  }
+
+  public String toString() {
+    instruction = String.format("\t%s %s%s, %s\n", comparator.name(), base,
+        changeBase ? "!" : "", registerList(registers));
+    return instruction;
+  }
+
+  public Register getBase() {
+    return base;
+  }
+
+  public List<Register> getRegisters() {
+    return registers;
+  }
+
+  @Override
+  public List<Register> getUsedRegisters() {
+    List<Register> used = new ArrayList<>();
+    used.add(base);
+    return used;
+  }
+
+  @Override
+  public List<Register> getDefinedRegisters() {
+    List<Register> defined = new ArrayList<>(registers);
+    if (changeBase) {
+      defined.add(base);
+    }
+    return defined;
+  }
+
+  @Override
+  public void replaceRegisters(Map<Register, Register> uses,
+      Map<Register, Register> defs) {
+    registers = rename(registers, defs);
+    base = rename(base, changeBase ? defs : uses);
+  }
+}
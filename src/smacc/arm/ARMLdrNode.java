@@ -1,5 +1,9 @@
 package smacc.arm;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 public class ARMLdrNode extends ARMNode {
   public enum LdrComparator {
     LDR, LDRNE, LDREQ, LDRSB, LDRLT, LDRCS
@@ -50,4 +54,55 @@ public class ARMLdrNode extends ARMNode {
     return instruction;
   }
 
+  public Register getDestReg() {
+    return destReg;
+  }
+
+  // Null unless the load reads memory at a register plus an offset
+  public Register getMemReg() {
+    return memReg;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  public LdrComparator getComparator() {
+    return comparator;
+  }
+
+  @Override
+  public List<Register> getUsedRegisters() {
+    List<Register> used = new ArrayList<>();
+    if (memReg != null) {
+      used.add(memReg);
+    }
+    // A conditional load may leave the old value in place
+    if (comparator != LdrComparator.LDR && comparator != LdrComparator.LDRSB) {
+      used.add(destReg);
+    }
+    return used;
+  }
+
+  @Override
+  public List<Register> getDefinedRegisters() {
+    List<Register> defined = new ArrayList<>();
+    defined.add(destReg);
+    return defined;
+  }
+
+  @Override
+  public boolean isConditional() {
+    return comparator != LdrComparator.LDR
+        && comparator != LdrComparator.LDRSB;
+  }
+
+  @Override
+  public void replaceRegisters(Map<Register, Register> uses,
+      Map<Register, Register> defs) {
+    if (memReg != null) {
+      memReg = rename(memReg, uses);
+    }
+    destReg = rename(destReg, defs);
+  }
 }
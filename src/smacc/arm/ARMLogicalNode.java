@@ -1,8 +1,12 @@
 package smacc.arm;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 public class ARMLogicalNode extends ARMNode {
   public enum LogicalComparator {
-    AND, ORR
+    AND, ORR, BIC
   }
 
   LogicalComparator comparator;
@@ -25,4 +29,28 @@ public class ARMLogicalNode extends ARMNode {
     return instruction;
   }
 
+  @Override
+  public List<Register> getUsedRegisters() {
+    List<Register> used = new ArrayList<>();
+    used.add(op1Reg);
+    if (op2.getRegister() != null) {
+      used.add(op2.getRegister());
+    }
+    return used;
+  }
+
+  @Override
+  public List<Register> getDefinedRegisters() {
+    List<Register> defined = new ArrayList<>();
+    defined.add(dstReg);
+    return defined;
+  }
+
+  @Override
+  public void replaceRegisters(Map<Register, Register> uses,
+      Map<Register, Register> defs) {
+    op1Reg = rename(op1Reg, uses);
+    op2 = rename(op2, uses);
+    dstReg = rename(dstReg, defs);
+  }
 }
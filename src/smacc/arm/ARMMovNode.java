@@ -1,5 +1,9 @@
 package smacc.arm;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 public class ARMMovNode extends ARMNode {
   public enum MovComparator {
     MOV, MOVEQ, MOVNE, MOVGT, MOVLE, MOVGE, MOVLT
@@ -23,4 +27,54 @@ public class ARMMovNode extends ARMNode {
         operandTwo);
     return instruction;
   }
+
+  public Register getDestReg() {
+    return destReg;
+  }
+
+  public OperandTwo getOperandTwo() {
+    return operandTwo;
+  }
+
+  public MovComparator getComparator() {
+    return comparator;
+  }
+
+  @Override
+  public List<Register> getUsedRegisters() {
+    List<Register> used = new ArrayList<>();
+    if (operandTwo.getRegister() != null) {
+      used.add(operandTwo.getRegister());
+    }
+    // A conditional move may leave the old value in place
+    if (comparator != MovComparator.MOV) {
+      used.add(destReg);
+    }
+    return used;
+  }
+
+  @Override
+  public List<Register> getDefinedRegisters() {
+    List<Register> defined = new ArrayList<>();
+    defined.add(destReg);
+    return defined;
+  }
+
+  // An unconditional move of one register into another
+  public boolean isRegisterCopy() {
+    return comparator == MovComparator.MOV && operandTwo.getRegister() != null
+        && operandTwo.getShiftType() == null;
+  }
+
+  @Override
+  public boolean isConditional() {
+    return comparator != MovComparator.MOV;
+  }
+
+  @Override
+  public void replaceRegisters(Map<Register, Register> uses,
+      Map<Register, Register> defs) {
+    operandTwo = rename(operandTwo, uses);
+    destReg = rename(destReg, defs);
+  }
 }
@@ -1,8 +1,12 @@
 package smacc.arm;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 public class ARMMulNode extends ARMNode {
   public enum MulComparator {
-    SMULL
+    SMULL, MUL
   }
 
   MulComparator comparator;
@@ -20,11 +24,50 @@ public class ARMMulNode extends ARMNode {
     this.regOp2 = regOp2;
   }
 
+  // The low 32 bits of the product only
+  public ARMMulNode(MulComparator comparator, Register destination,
+      Register regOp1, Register regOp2) {
+    this(comparator, destination, null, regOp1, regOp2);
+  }
+
   @Override
   public String toString() {
-    instruction = String.format("\t%s %s, %s, %s, %s\n", comparator.name(),
-        regLower32Bits, regHigher32Bits, regOp1, regOp2);
+    if (regHigher32Bits == null) {
+      instruction = String.format("\t%s %s, %s, %s\n", comparator.name(),
+          regLower32Bits, regOp1, regOp2);
+    } else {
+      instruction = String.format("\t%s %s, %s, %s, %s\n", comparator.name(),
+          regLower32Bits, regHigher32Bits, regOp1, regOp2);
+    }
     return instruction;
   }
 
+  @Override
+  public List<Register> getUsedRegisters() {
+    List<Register> used = new ArrayList<>();
+    used.add(regOp1);
+    used.add(regOp2);
+    return used;
+  }
+
+  @Override
+  public List<Register> getDefinedRegisters() {
+    List<Register> defined = new ArrayList<>();
+    defined.add(regLower32Bits);
+    if (regHigher32Bits != null) {
+      defined.add(regHigher32Bits);
+    }
+    return defined;
+  }
+
+  @Override
+  public void replaceRegisters(Map<Register, Register> uses,
+      Map<Register, Register> defs) {
+    regOp1 = rename(regOp1, uses);
+    regOp2 = rename(regOp2, uses);
+    regLower32Bits = rename(regLower32Bits, defs);
+    if (regHigher32Bits != null) {
+      regHigher32Bits = rename(regHigher32Bits, defs);
+    }
+  }
 }
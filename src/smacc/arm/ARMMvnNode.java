@@ -0,0 +1,46 @@
+package smacc.arm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Moves the bitwise inverse of operandTwo into destReg
+public class ARMMvnNode extends ARMNode {
+
+  Register destReg;
+  OperandTwo operandTwo;
+
+  public ARMMvnNode(Register destReg, OperandTwo operandTwo) {
+    this.destReg = destReg;
+    this.operandTwo = operandTwo;
+  }
+
+  @Override
+  public String toString() {
+    instruction = String.format("\tMVN %s, %s\n", destReg, operandTwo);
+    return instruction;
+  }
+
+  @Override
+  public List<Register> getUsedRegisters() {
+    List<Register> used = new ArrayList<>();
+    if (operandTwo.getRegister() != null) {
+      used.add(operandTwo.getRegister());
+    }
+    return used;
+  }
+
+  @Override
+  public List<Register> getDefinedRegisters() {
+    List<Register> defined = new ArrayList<>();
+    defined.add(destReg);
+    return defined;
+  }
+
+  @Override
+  public void replaceRegisters(Map<Register, Register> uses,
+      Map<Register, Register> defs) {
+    operandTwo = rename(operandTwo, uses);
+    destReg = rename(destReg, defs);
+  }
+}
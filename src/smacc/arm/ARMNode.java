@@ -1,5 +1,72 @@
 package smacc.arm;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 public abstract class ARMNode {
   String instruction;
+
+  /*
+   * Registers read and written by the instruction, used by the register
+   * allocators when looking over the emitted program
+   */
+  public List<Register> getUsedRegisters() {
+    return Collections.emptyList();
+  }
+
+  public List<Register> getDefinedRegisters() {
+    return Collections.emptyList();
+  }
+
+  // Number of bytes the instruction moves the stack pointer down by
+  public int getStackAdjustment() {
+    return 0;
+  }
+
+  // Conditional instructions may leave their destination unchanged
+  public boolean isConditional() {
+    return false;
+  }
+
+  /*
+   * Rewrites the registers of the instruction after allocation, registers
+   * read are looked up in uses and registers written in defs
+   */
+  public void replaceRegisters(Map<Register, Register> uses,
+      Map<Register, Register> defs) {
+  }
+
+  // Register list of a block transfer, as in {r4, r5, lr}
+  protected static String registerList(List<Register> registers) {
+    StringBuilder list = new StringBuilder("{");
+    for (Register register : registers) {
+      list.append(list.length() == 1 ? "" : ", ").append(register);
+    }
+    return list.append("}").toString();
+  }
+
+  protected static List<Register> rename(List<Register> registers,
+      Map<Register, Register> renames) {
+    List<Register> renamed = new ArrayList<>();
+    for (Register register : registers) {
+      renamed.add(rename(register, renames));
+    }
+    return renamed;
+  }
+
+  protected static Register rename(Register register,
+      Map<Register, Register> renames) {
+    Register renamed = renames.get(register);
+    return (renamed == null) ? register : renamed;
+  }
+
+  protected static OperandTwo rename(OperandTwo operandTwo,
+      Map<Register, Register> renames) {
+    if (operandTwo.getRegister() == null) {
+      return operandTwo;
+    }
+    return operandTwo.replaceRegister(rename(operandTwo.getRegister(), renames));
+  }
 }
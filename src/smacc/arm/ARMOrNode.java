@@ -1,5 +1,9 @@
 package smacc.arm;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 public class ARMOrNode extends ARMNode {
 
   public enum OrOperator {
@@ -25,4 +29,28 @@ public class ARMOrNode extends ARMNode {
     return instruction;
   }
 
+  @Override
+  public List<Register> getUsedRegisters() {
+    List<Register> used = new ArrayList<>();
+    used.add(regOp1);
+    if (op2.getRegister() != null) {
+      used.add(op2.getRegister());
+    }
+    return used;
+  }
+
+  @Override
+  public List<Register> getDefinedRegisters() {
+    List<Register> defined = new ArrayList<>();
+    defined.add(destReg);
+    return defined;
+  }
+
+  @Override
+  public void replaceRegisters(Map<Register, Register> uses,
+      Map<Register, Register> defs) {
+    regOp1 = rename(regOp1, uses);
+    op2 = rename(op2, uses);
+    destReg = rename(destReg, defs);
+  }
 }
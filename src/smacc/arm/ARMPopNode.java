@@ -1,16 +1,56 @@
 package smacc.arm;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Pops one or more registers, the lowest numbered from the lowest address
+ */
 public class ARMPopNode extends ARMNode {
 
-  Register reg;
+  List<Register> registers;
 
   public ARMPopNode(Register reg) {
-    this.reg = reg;
+    this(Collections.singletonList(reg));
+  }
+
+  public ARMPopNode(List<Register> registers) {
+    this.registers = new ArrayList<>(registers);
+  }
+
+  public List<Register> getRegisters() {
+    return registers;
   }
 
   public String toString() {
-    instruction = String.format("\tPOP {%s}\n", reg);
+    instruction = String.format("\tPOP %s\n", registerList(registers));
     return instruction;
   }
 
+  @Override
+  public List<Register> getUsedRegisters() {
+    List<Register> used = new ArrayList<>();
+    used.add(new Register(Register.SpecialReg.sp));
+    return used;
+  }
+
+  @Override
+  public List<Register> getDefinedRegisters() {
+    List<Register> defined = new ArrayList<>(registers);
+    defined.add(new Register(Register.SpecialReg.sp));
+    return defined;
+  }
+
+  @Override
+  public int getStackAdjustment() {
+    return -4 * registers.size();
+  }
+
+  @Override
+  public void replaceRegisters(Map<Register, Register> uses,
+      Map<Register, Register> defs) {
+    registers = rename(registers, defs);
+  }
 }
@@ -1,15 +1,57 @@
 package smacc.arm;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Pushes one or more registers, the lowest numbered ending up at the lowest
+ * address
+ */
 public class ARMPushNode extends ARMNode {
 
-  Register reg;
+  List<Register> registers;
 
   public ARMPushNode(Register reg) {
-    this.reg = reg;
+    this(Collections.singletonList(reg));
+  }
+
+  public ARMPushNode(List<Register> registers) {
+    this.registers = new ArrayList<>(registers);
+  }
+
+  public List<Register> getRegisters() {
+    return registers;
   }
 
   public String toString() {
-    instruction = String.format("\tPUSH {%s}\n", reg);
+    instruction = String.format("\tPUSH %s\n", registerList(registers));
     return instruction;
   }
+
+  @Override
+  public List<Register> getUsedRegisters() {
+    List<Register> used = new ArrayList<>(registers);
+    used.add(new Register(Register.SpecialReg.sp));
+    return used;
+  }
+
+  @Override
+  public List<Register> getDefinedRegisters() {
+    List<Register> defined = new ArrayList<>();
+    defined.add(new Register(Register.SpecialReg.sp));
+    return defined;
+  }
+
+  @Override
+  public int getStackAdjustment() {
+    return 4 * registers.size();
+  }
+
+  @Override
+  public void replaceRegisters(Map<Register, Register> uses,
+      Map<Register, Register> defs) {
+    registers = rename(registers, uses);
+  }
 }
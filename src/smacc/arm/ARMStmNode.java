@@ -0,0 +1,67 @@
+package smacc.arm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Store multiple, writes the registers to consecutive words from the base
+ * register up with the lowest numbered register lowest. STMIA starts at the
+ * base and STMIB a word above it, and writing back leaves the base just past
+ * the last word stored.
+ */
+public class ARMStmNode extends ARMNode {
+  public enum StmComparator {
+    STMIA, STMIB
+  }
+
+  StmComparator comparator;
+  Register base;
+  List<Register> registers;
+  boolean changeBase;
+
+  public ARMStmNode(Register base, List<Register> registers,
+      boolean changeBase, StmComparator comparator) {
+    this.comparator = comparator;
+    this.base = base;
+    this.registers = new ArrayList<>(registers);
+    this.changeBase = changeBase;
+  }
+
+  public String toString() {
+    instruction = String.format("\t%s %s%s, %s\n", comparator.name(), base,
+        changeBase ? "!" : "", registerList(registers));
+    return instruction;
+  }
+
+  public Register getBase() {
+    return base;
+  }
+
+  public List<Register> getRegisters() {
+    return registers;
+  }
+
+  @Override
+  public List<Register> getUsedRegisters() {
+    List<Register> used = new ArrayList<>(registers);
+    used.add(base);
+    return used;
+  }
+
+  @Override
+  public List<Register> getDefinedRegisters() {
+    List<Register> defined = new ArrayList<>();
+    if (changeBase) {
+      defined.add(base);
+    }
+    return defined;
+  }
+
+  @Override
+  public void replaceRegisters(Map<Register, Register> uses,
+      Map<Register, Register> defs) {
+    registers = rename(registers, uses);
+    base = rename(base, changeBase ? defs : uses);
+  }
+}
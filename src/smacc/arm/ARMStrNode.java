@@ -1,5 +1,9 @@
 package smacc.arm;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 public class ARMStrNode extends ARMNode {
   public enum StrComparator {
     STR, STRB
@@ -27,4 +31,56 @@ public class ARMStrNode extends ARMNode {
         dst, (offset == 0) ? "" : ", #" + offset, changeDst ? "!" : "");
     return instruction;
   }
+
+  public Register getSrc() {
+    return src;
+  }
+
+  public Register getDst() {
+    return dst;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  public boolean changesDst() {
+    return changeDst;
+  }
+
+  public StrComparator getComparator() {
+    return comparator;
+  }
+
+  @Override
+  public List<Register> getUsedRegisters() {
+    List<Register> used = new ArrayList<>();
+    used.add(src);
+    used.add(dst);
+    return used;
+  }
+
+  @Override
+  public List<Register> getDefinedRegisters() {
+    List<Register> defined = new ArrayList<>();
+    // Pre-indexed stores write back to the base register
+    if (changeDst) {
+      defined.add(dst);
+    }
+    return defined;
+  }
+
+  // Pre-indexed stores to sp push a value
+  @Override
+  public int getStackAdjustment() {
+    boolean onStack = dst.equals(new Register(Register.SpecialReg.sp));
+    return (changeDst && onStack) ? -offset : 0;
+  }
+
+  @Override
+  public void replaceRegisters(Map<Register, Register> uses,
+      Map<Register, Register> defs) {
+    src = rename(src, uses);
+    dst = rename(dst, uses);
+  }
 }
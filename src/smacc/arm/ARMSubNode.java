@@ -1,9 +1,13 @@
 package smacc.arm;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 public class ARMSubNode extends ARMNode {
 
   public enum SubComparator {
-    SUB, SUBS, RSBS
+    SUB, SUBS, RSB, RSBS
   }
 
   SubComparator comparator;
@@ -25,4 +29,41 @@ public class ARMSubNode extends ARMNode {
     return instruction;
   }
 
+  public SubComparator getComparator() {
+    return comparator;
+  }
+
+  @Override
+  public List<Register> getUsedRegisters() {
+    List<Register> used = new ArrayList<>();
+    used.add(regOp1);
+    if (op2.getRegister() != null) {
+      used.add(op2.getRegister());
+    }
+    return used;
+  }
+
+  @Override
+  public List<Register> getDefinedRegisters() {
+    List<Register> defined = new ArrayList<>();
+    defined.add(destReg);
+    return defined;
+  }
+
+  @Override
+  public int getStackAdjustment() {
+    Register sp = new Register(Register.SpecialReg.sp);
+    if (destReg.equals(sp) && regOp1.equals(sp) && op2.getRegister() == null) {
+      return op2.getImmediate();
+    }
+    return 0;
+  }
+
+  @Override
+  public void replaceRegisters(Map<Register, Register> uses,
+      Map<Register, Register> defs) {
+    regOp1 = rename(regOp1, uses);
+    op2 = rename(op2, uses);
+    destReg = rename(destReg, defs);
+  }
 }
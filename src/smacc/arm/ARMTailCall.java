@@ -0,0 +1,55 @@
+package smacc.arm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Epilogue that hands the frame over to another function, the saved link
+ * register is restored into lr so the callee returns straight to our caller
+ */
+public class ARMTailCall extends ARMFunctionReturn {
+
+  private List<Register> savedRegisters;
+  private String callee;
+
+  public ARMTailCall(List<Register> savedRegisters, String callee) {
+    this(savedRegisters, callee, true);
+  }
+
+  public ARMTailCall(List<Register> savedRegisters, String callee,
+      boolean savesLinkRegister) {
+    super(savedRegisters, savesLinkRegister);
+    this.savedRegisters = savedRegisters;
+    this.callee = callee;
+  }
+
+  public String getCallee() {
+    return callee;
+  }
+
+  public String toString() {
+    return pop(savesLinkRegister() ? "lr" : null) + "\tB " + callee + "\n";
+  }
+
+  // Arguments are passed in r0 to r3 and the caller's own parameter slots
+  @Override
+  public List<Register> getUsedRegisters() {
+    List<Register> used = new ArrayList<>();
+    used.add(new Register(Register.SpecialReg.r0));
+    used.add(new Register(Register.SpecialReg.r1));
+    used.add(new Register(Register.SpecialReg.r2));
+    used.add(new Register(Register.SpecialReg.r3));
+    used.add(new Register(Register.SpecialReg.sp));
+    return used;
+  }
+
+  @Override
+  public List<Register> getDefinedRegisters() {
+    List<Register> defined = new ArrayList<>(savedRegisters);
+    defined.add(new Register(Register.SpecialReg.sp));
+    if (savesLinkRegister()) {
+      defined.add(new Register(Register.SpecialReg.lr));
+    }
+    return defined;
+  }
+}
@@ -0,0 +1,133 @@
+package smacc.arm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import smacc.arm.ARMAddNode.AddComparator;
+import smacc.arm.ARMMovNode.MovComparator;
+import smacc.arm.ARMMulNode.MulComparator;
+import smacc.arm.ARMSubNode.SubComparator;
+import smacc.arm.OperandTwo.ShiftType;
+
+/*
+ * ConstantDivision
+ * Divides by a constant without calling __aeabi_idiv or __aeabi_idivmod,
+ * and without a divide by zero check as the divisor is known.
+ *
+ * Powers of two are an arithmetic shift, after adding one less than the
+ * divisor to negative dividends so the quotient rounds towards zero. Other
+ * divisors multiply by a magic number close to 2^(32 + s) / divisor, keep
+ * the high word of the product shifted right by s and add one to negative
+ * results (Granlund and Montgomery, Hacker's Delight 10-1). A remainder is
+ * the dividend less the quotient times the divisor.
+ */
+public class ConstantDivision {
+
+  // Divisors other than these are done inline
+  public static boolean canDivideBy(int divisor) {
+    return divisor != 0 && divisor != -1;
+  }
+
+  /*
+   * Code putting the quotient or remainder of dividend by divisor into
+   * destination, which may be the dividend. The scratch registers are
+   * overwritten.
+   */
+  public static List<ARMNode> divide(boolean remainder, Register destination,
+      Register dividend, int divisor, Register scratch, Register scratch2) {
+    List<ARMNode> code = new ArrayList<>();
+    long size = Math.abs((long) divisor);
+    if (size == 1) {
+      code.add(remainder ? new ARMMovNode(destination, new OperandTwo(0,
+          false), MovComparator.MOV) : new ARMMovNode(destination,
+          new OperandTwo(dividend), MovComparator.MOV));
+      return code;
+    }
+
+    if (Long.bitCount(size) == 1) {
+      int shift = Long.numberOfTrailingZeros(size);
+      code.add(new ARMMovNode(scratch, new OperandTwo(dividend, ShiftType.ASR,
+          31), MovComparator.MOV));
+      code.add(new ARMAddNode(scratch, dividend, new OperandTwo(scratch,
+          ShiftType.LSR, 32 - shift), AddComparator.ADD));
+      if (remainder) {
+        // Sign of the dividend, whatever the sign of the divisor
+        code.add(new ARMMovNode(scratch, new OperandTwo(scratch,
+            ShiftType.ASR, shift), MovComparator.MOV));
+        code.add(new ARMSubNode(destination, dividend, new OperandTwo(scratch,
+            ShiftType.LSL, shift), SubComparator.SUB));
+      } else if (divisor < 0) {
+        code.add(new ARMMovNode(scratch, new OperandTwo(scratch,
+            ShiftType.ASR, shift), MovComparator.MOV));
+        code.add(new ARMSubNode(destination, scratch, new OperandTwo(0, false),
+            SubComparator.RSB));
+      } else {
+        code.add(new ARMMovNode(destination, new OperandTwo(scratch,
+            ShiftType.ASR, shift), MovComparator.MOV));
+      }
+      return code;
+    }
+
+    long[] magic = magic(divisor);
+    int multiplier = (int) magic[0];
+    int shift = (int) magic[1];
+    code.addAll(ConstantLoader.load(scratch, multiplier));
+    code.add(new ARMMulNode(MulComparator.SMULL, scratch2, scratch, dividend,
+        scratch));
+    if (divisor > 0 && multiplier < 0) {
+      code.add(new ARMAddNode(scratch, scratch, new OperandTwo(dividend),
+          AddComparator.ADD));
+    } else if (divisor < 0 && multiplier > 0) {
+      code.add(new ARMSubNode(scratch, scratch, new OperandTwo(dividend),
+          SubComparator.SUB));
+    }
+    if (shift > 0) {
+      code.add(new ARMMovNode(scratch, new OperandTwo(scratch, ShiftType.ASR,
+          shift), MovComparator.MOV));
+    }
+    Register quotient = remainder ? scratch : destination;
+    code.add(new ARMAddNode(quotient, scratch, new OperandTwo(scratch,
+        ShiftType.LSR, 31), AddComparator.ADD));
+    if (remainder) {
+      code.addAll(ConstantLoader.load(scratch2, divisor));
+      code.add(new ARMMulNode(MulComparator.MUL, scratch2, quotient,
+          scratch2));
+      code.add(new ARMSubNode(destination, dividend,
+          new OperandTwo(scratch2), SubComparator.SUB));
+    }
+    return code;
+  }
+
+  // Multiplier and shift for a divisor that is not a power of two in size
+  private static long[] magic(int divisor) {
+    final long twoTo31 = 1L << 31;
+    long size = Math.abs((long) divisor);
+    long t = twoTo31 + (divisor >>> 31);
+    long absNc = t - 1 - t % size;
+    int p = 31;
+    long q1 = twoTo31 / absNc;
+    long r1 = twoTo31 - q1 * absNc;
+    long q2 = twoTo31 / size;
+    long r2 = twoTo31 - q2 * size;
+    long delta;
+    do {
+      p++;
+      q1 *= 2;
+      r1 *= 2;
+      if (r1 >= absNc) {
+        q1++;
+        r1 -= absNc;
+      }
+      q2 *= 2;
+      r2 *= 2;
+      if (r2 >= size) {
+        q2++;
+        r2 -= size;
+      }
+      delta = size - r2;
+    } while (q1 < delta || (q1 == delta && r1 == 0));
+
+    long multiplier = (int) (q2 + 1);
+    return new long[] {(divisor < 0) ? -multiplier : multiplier, p - 32};
+  }
+}
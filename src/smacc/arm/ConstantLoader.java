@@ -0,0 +1,84 @@
+package smacc.arm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import smacc.arm.ARMLdrNode.LdrComparator;
+import smacc.arm.ARMLogicalNode.LogicalComparator;
+import smacc.arm.ARMMovNode.MovComparator;
+
+/*
+ * ConstantLoader
+ * Puts a constant in a register in as few instructions as possible, rather
+ * than always loading it from the literal pool.
+ *
+ * An immediate operand is any 8 bit value rotated right by an even amount,
+ * so most small and round values take a single MOV, or an MVN of their
+ * inverse. Other values are split into such pieces and built up with ORR,
+ * or built from their inverse with MVN and BIC. Needing more instructions
+ * than a load from the literal pool is worth, they are loaded from it.
+ */
+public class ConstantLoader {
+
+  // Instructions cheaper than one load from the literal pool
+  private static final int MAX_INSTRUCTIONS = 2;
+
+  // Loaded with a single MOV or MVN
+  public static boolean isSingleInstruction(int value) {
+    return OperandTwo.isValidImmediate(value)
+        || OperandTwo.isValidImmediate(~value);
+  }
+
+  public static List<ARMNode> load(Register destination, int value) {
+    List<ARMNode> code = new ArrayList<>();
+    List<Integer> pieces = pieces(value);
+    List<Integer> inverse = pieces(~value);
+    if (pieces.size() <= MAX_INSTRUCTIONS && pieces.size() <= inverse.size()) {
+      code.add(new ARMMovNode(destination, new OperandTwo(pieces.get(0),
+          false), MovComparator.MOV));
+      for (int piece : pieces.subList(1, pieces.size())) {
+        code.add(new ARMLogicalNode(LogicalComparator.ORR, destination,
+            destination, new OperandTwo(piece, false)));
+      }
+    } else if (inverse.size() <= MAX_INSTRUCTIONS) {
+      code.add(new ARMMvnNode(destination, new OperandTwo(inverse.get(0),
+          false)));
+      for (int piece : inverse.subList(1, inverse.size())) {
+        code.add(new ARMLogicalNode(LogicalComparator.BIC, destination,
+            destination, new OperandTwo(piece, false)));
+      }
+    } else {
+      code.add(new ARMLdrNode(destination, value, LdrComparator.LDR));
+    }
+    return code;
+  }
+
+  /*
+   * Fewest valid immediates with no bits in common adding up to value, a
+   * single zero for zero. Pieces are taken from the lowest set bit up, trying
+   * every even bit to start from.
+   */
+  public static List<Integer> pieces(int value) {
+    List<Integer> best = null;
+    for (int start = 0; start < 32; start += 2) {
+      List<Integer> pieces = new ArrayList<>();
+      int rest = value;
+      for (int bit = 0; bit < 32 && rest != 0; bit += 2) {
+        int position = (start + bit) % 32;
+        if ((Integer.rotateRight(rest, position) & 3) != 0) {
+          int mask = Integer.rotateLeft(0xFF, position);
+          pieces.add(rest & mask);
+          rest &= ~mask;
+          bit += 6;
+        }
+      }
+      if (best == null || pieces.size() < best.size()) {
+        best = pieces;
+      }
+    }
+    if (best.isEmpty()) {
+      best.add(0);
+    }
+    return best;
+  }
+}
@@ -0,0 +1,69 @@
+package smacc.arm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import smacc.arm.ARMAddNode.AddComparator;
+import smacc.arm.ARMMovNode.MovComparator;
+import smacc.arm.ARMSubNode.SubComparator;
+import smacc.arm.OperandTwo.ShiftType;
+
+/*
+ * ConstantMultiplication
+ * Multiplies by a constant with shifted operands instead of loading it and
+ * using SMULL.
+ *
+ * Checked products are only reduced for powers of two, where the product
+ * overflowed unless shifting it back gives the multiplicand. The code ends
+ * in a comparison that is not equal on overflow, as SMULL's does. Products
+ * known not to overflow also reduce one more or one less than a power of
+ * two to a single ADD or RSB.
+ */
+public class ConstantMultiplication {
+
+  public static boolean canMultiplyBy(int factor, boolean checked) {
+    if (checked) {
+      return factor > 1 && Integer.bitCount(factor) == 1;
+    }
+    return factor >= 0 && (factor <= 1 || Integer.bitCount(factor) == 1
+        || Integer.bitCount(factor - 1) == 1
+        || Integer.bitCount(factor + 1) == 1);
+  }
+
+  /*
+   * Code putting multiplicand times factor into destination, which may be
+   * the multiplicand. Checked products go through scratch.
+   */
+  public static List<ARMNode> multiply(Register destination,
+      Register multiplicand, int factor, boolean checked, Register scratch) {
+    List<ARMNode> code = new ArrayList<>();
+    if (checked) {
+      int shift = Integer.numberOfTrailingZeros(factor);
+      code.add(new ARMMovNode(scratch, new OperandTwo(multiplicand,
+          ShiftType.LSL, shift), MovComparator.MOV));
+      code.add(new ARMCmpNode(multiplicand, new OperandTwo(scratch,
+          ShiftType.ASR, shift)));
+      code.add(new ARMMovNode(destination, new OperandTwo(scratch),
+          MovComparator.MOV));
+    } else if (factor == 0) {
+      code.add(new ARMMovNode(destination, new OperandTwo(0, false),
+          MovComparator.MOV));
+    } else if (factor == 1) {
+      code.add(new ARMMovNode(destination, new OperandTwo(multiplicand),
+          MovComparator.MOV));
+    } else if (Integer.bitCount(factor) == 1) {
+      code.add(new ARMMovNode(destination, new OperandTwo(multiplicand,
+          ShiftType.LSL, Integer.numberOfTrailingZeros(factor)),
+          MovComparator.MOV));
+    } else if (Integer.bitCount(factor - 1) == 1) {
+      code.add(new ARMAddNode(destination, multiplicand, new OperandTwo(
+          multiplicand, ShiftType.LSL, Integer.numberOfTrailingZeros(
+              factor - 1)), AddComparator.ADD));
+    } else {
+      code.add(new ARMSubNode(destination, multiplicand, new OperandTwo(
+          multiplicand, ShiftType.LSL, Integer.numberOfTrailingZeros(
+              factor + 1)), SubComparator.RSB));
+    }
+    return code;
+  }
+}
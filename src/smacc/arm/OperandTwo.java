@@ -51,6 +51,24 @@ public class OperandTwo {
     return register;
   }
 
+  // Immediates are an 8 bit value rotated right by an even amount
+  public static boolean isValidImmediate(int value) {
+    for (int rotation = 0; rotation < 32; rotation += 2) {
+      if ((Integer.rotateLeft(value, rotation) & ~0xFF) == 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Same operand reading from a different register
+  public OperandTwo replaceRegister(Register register) {
+    if (shiftType == null) {
+      return new OperandTwo(register);
+    }
+    return new OperandTwo(register, shiftType, shiftValue);
+  }
+
   public boolean equals(Object o) {
     // If operand is just a register with no offset it should equals a register
     // object of the same type
@@ -0,0 +1,446 @@
+package smacc.arm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import smacc.arm.ARMAddNode.AddComparator;
+import smacc.arm.ARMBranchNode.BranchComparator;
+import smacc.arm.ARMLdmNode.LdmComparator;
+import smacc.arm.ARMLdrNode.LdrComparator;
+import smacc.arm.ARMMovNode.MovComparator;
+import smacc.arm.ARMStmNode.StmComparator;
+import smacc.arm.ARMStrNode.StrComparator;
+import smacc.arm.ARMSubNode.SubComparator;
+
+/*
+ * PeepholeOptimiser
+ * Rewrites small windows of the emitted program until none match:
+ *
+ * - moves of a register into itself are removed
+ * - a word loaded straight after being stored becomes a move of the stored
+ *   register
+ * - branches to a label that directly follows them are removed
+ * - consecutive adjustments of sp are merged while the total is still a
+ *   valid immediate
+ * - a bool built with a pair of moves, compared and branched on becomes one
+ *   conditional branch, as long as nothing reads the bool afterwards
+ * - consecutive pushes or pops become one, and runs of word stores or loads
+ *   at consecutive offsets from the same base become an STM or LDM, when
+ *   the registers already come in the order a block transfer uses
+ */
+public class PeepholeOptimiser {
+
+  private static final Register REG_SP = new Register(Register.SpecialReg.sp);
+
+  private List<ARMNode> code;
+  private Map<String, Integer> labels;
+
+  public static List<ARMNode> optimise(List<ARMNode> program) {
+    PeepholeOptimiser optimiser = new PeepholeOptimiser(program);
+    optimiser.optimise();
+    return optimiser.code;
+  }
+
+  private PeepholeOptimiser(List<ARMNode> program) {
+    code = new ArrayList<>(program);
+  }
+
+  private void optimise() {
+    boolean changed = true;
+    while (changed) {
+      findLabels();
+      changed = false;
+      for (int i = 0; i < code.size(); i++) {
+        if (removeSelfMove(i) || forwardStore(i) || removeBranchToNext(i)
+            || mergeStackAdjustments(i) || fuseConditionalBranch(i)
+            || mergePushes(i) || mergePops(i) || mergeStores(i)
+            || mergeLoads(i)) {
+          changed = true;
+          findLabels();
+        }
+      }
+    }
+  }
+
+  private void findLabels() {
+    labels = new HashMap<>();
+    for (int i = 0; i < code.size(); i++) {
+      if (code.get(i) instanceof ARMLabel) {
+        labels.put(((ARMLabel) code.get(i)).getLabel(), i);
+      }
+    }
+  }
+
+  private ARMNode node(int i) {
+    return (i < code.size()) ? code.get(i) : null;
+  }
+
+  // MOV rX, rX
+  private boolean removeSelfMove(int i) {
+    if (!(node(i) instanceof ARMMovNode)) {
+      return false;
+    }
+    ARMMovNode move = (ARMMovNode) node(i);
+    if (move.isRegisterCopy()
+        && move.getDestReg().equals(move.getOperandTwo().getRegister())) {
+      code.remove(i);
+      return true;
+    }
+    return false;
+  }
+
+  // STR rX, [rB, #n] then LDR rY, [rB, #n]
+  private boolean forwardStore(int i) {
+    if (!(node(i) instanceof ARMStrNode) || !(node(i + 1) instanceof ARMLdrNode)) {
+      return false;
+    }
+    ARMStrNode store = (ARMStrNode) node(i);
+    ARMLdrNode load = (ARMLdrNode) node(i + 1);
+    if (store.getComparator() != StrComparator.STR || store.changesDst()
+        || load.getComparator() != LdrComparator.LDR
+        || !store.getDst().equals(load.getMemReg())
+        || store.getOffset() != load.getOffset()) {
+      return false;
+    }
+    if (load.getDestReg().equals(store.getSrc())) {
+      code.remove(i + 1);
+    } else {
+      code.set(i + 1, new ARMMovNode(load.getDestReg(), new OperandTwo(store
+          .getSrc()), MovComparator.MOV));
+    }
+    return true;
+  }
+
+  // B L immediately followed by L:
+  private boolean removeBranchToNext(int i) {
+    if (!(node(i) instanceof ARMBranchNode)
+        || ((ARMBranchNode) node(i)).isCall()) {
+      return false;
+    }
+    String target = ((ARMBranchNode) node(i)).getLabel();
+    for (int j = i + 1; node(j) instanceof ARMLabel; j++) {
+      if (((ARMLabel) node(j)).getLabel().equals(target)) {
+        code.remove(i);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // ADD sp, sp, #a then ADD sp, sp, #b, as split up by the Translator
+  private boolean mergeStackAdjustments(int i) {
+    int first = spAdjustment(node(i));
+    int second = spAdjustment(node(i + 1));
+    if (first == 0 || second == 0 || (first > 0) != (second > 0)) {
+      return false;
+    }
+    int total = Math.abs(first + second);
+    if (!OperandTwo.isValidImmediate(total)) {
+      return false;
+    }
+    code.remove(i + 1);
+    if (first > 0) {
+      code.set(i, new ARMSubNode(REG_SP, REG_SP, new OperandTwo(total, false),
+          SubComparator.SUB));
+    } else {
+      code.set(i, new ARMAddNode(REG_SP, REG_SP, new OperandTwo(total, false),
+          AddComparator.ADD));
+    }
+    return true;
+  }
+
+  // Bytes a plain ADD or SUB moves sp down by, 0 for anything else
+  private static int spAdjustment(ARMNode node) {
+    if (node instanceof ARMAddNode
+        && ((ARMAddNode) node).getComparator() == AddComparator.ADD) {
+      return node.getStackAdjustment();
+    }
+    if (node instanceof ARMSubNode
+        && ((ARMSubNode) node).getComparator() == SubComparator.SUB) {
+      return node.getStackAdjustment();
+    }
+    return 0;
+  }
+
+  /*
+   * PUSH {rB} then PUSH {rA}, with rA below rB, as homed arguments are
+   * pushed. Arguments stored with STR rX, [sp, #-4]! are pushes too.
+   */
+  private boolean mergePushes(int i) {
+    List<Register> first = pushed(node(i));
+    List<Register> second = pushed(node(i + 1));
+    if (first == null || second == null
+        || highest(second) >= lowest(first)) {
+      return false;
+    }
+    List<Register> registers = new ArrayList<>(second);
+    registers.addAll(first);
+    code.set(i, new ARMPushNode(registers));
+    code.remove(i + 1);
+    return true;
+  }
+
+  // Registers a push or a word store pushing onto the stack pushes
+  private static List<Register> pushed(ARMNode node) {
+    if (node instanceof ARMPushNode) {
+      return ((ARMPushNode) node).getRegisters();
+    }
+    if (node instanceof ARMStrNode) {
+      ARMStrNode store = (ARMStrNode) node;
+      if (store.getComparator() == StrComparator.STR && store.changesDst()
+          && store.getDst().equals(REG_SP) && store.getOffset() == -4) {
+        return Collections.singletonList(store.getSrc());
+      }
+    }
+    return null;
+  }
+
+  // POP {rA} then POP {rB}, with rA below rB
+  private boolean mergePops(int i) {
+    if (!(node(i) instanceof ARMPopNode) || !(node(i + 1) instanceof ARMPopNode)) {
+      return false;
+    }
+    List<Register> first = ((ARMPopNode) node(i)).getRegisters();
+    List<Register> second = ((ARMPopNode) node(i + 1)).getRegisters();
+    if (highest(first) >= lowest(second)) {
+      return false;
+    }
+    List<Register> registers = new ArrayList<>(first);
+    registers.addAll(second);
+    code.set(i, new ARMPopNode(registers));
+    code.remove(i + 1);
+    return true;
+  }
+
+  private static int lowest(List<Register> registers) {
+    int lowest = Integer.MAX_VALUE;
+    for (Register register : registers) {
+      lowest = Math.min(lowest, register.getRegisterNumber());
+    }
+    return lowest;
+  }
+
+  private static int highest(List<Register> registers) {
+    int highest = Integer.MIN_VALUE;
+    for (Register register : registers) {
+      highest = Math.max(highest, register.getRegisterNumber());
+    }
+    return highest;
+  }
+
+  /*
+   * STR rA, [rN, #n]
+   * STR rB, [rN, #n + 4]
+   * ...
+   * with each register above the last and n 0 or 4 becomes STMIA or STMIB
+   * rN, as long as rN is not stored itself
+   */
+  private boolean mergeStores(int i) {
+    List<Register> registers = new ArrayList<>();
+    Register base = null;
+    int offset = 0;
+    for (int j = i; node(j) instanceof ARMStrNode; j++) {
+      ARMStrNode store = (ARMStrNode) node(j);
+      if (j == i) {
+        base = store.getDst();
+        offset = store.getOffset();
+      }
+      if (store.getComparator() != StrComparator.STR || store.changesDst()
+          || !store.getDst().equals(base)
+          || store.getOffset() != offset + 4 * registers.size()
+          || store.getSrc().equals(base) || !registers.isEmpty()
+          && store.getSrc().getRegisterNumber() <= highest(registers)) {
+        break;
+      }
+      registers.add(store.getSrc());
+    }
+    if (registers.size() < 2 || (offset != 0 && offset != 4)) {
+      return false;
+    }
+    code.subList(i + 1, i + registers.size()).clear();
+    code.set(i, new ARMStmNode(base, registers, false, (offset == 0)
+        ? StmComparator.STMIA : StmComparator.STMIB));
+    return true;
+  }
+
+  // LDR rA, [rN, #n] then LDR rB, [rN, #n + 4] and so on likewise
+  private boolean mergeLoads(int i) {
+    List<Register> registers = new ArrayList<>();
+    Register base = null;
+    int offset = 0;
+    for (int j = i; node(j) instanceof ARMLdrNode; j++) {
+      ARMLdrNode load = (ARMLdrNode) node(j);
+      if (j == i) {
+        base = load.getMemReg();
+        offset = load.getOffset();
+      }
+      if (load.getComparator() != LdrComparator.LDR || base == null
+          || !base.equals(load.getMemReg())
+          || load.getOffset() != offset + 4 * registers.size()
+          || load.getDestReg().equals(base) || !registers.isEmpty()
+          && load.getDestReg().getRegisterNumber() <= highest(registers)) {
+        break;
+      }
+      registers.add(load.getDestReg());
+    }
+    if (registers.size() < 2 || (offset != 0 && offset != 4)) {
+      return false;
+    }
+    code.subList(i + 1, i + registers.size()).clear();
+    code.set(i, new ARMLdmNode(base, registers, false, (offset == 0)
+        ? LdmComparator.LDMIA : LdmComparator.LDMIB));
+    return true;
+  }
+
+  /*
+   * MOVcc rX, #a
+   * MOVncc rX, #b (or MOV rX, #b first then MOVcc rX, #a)
+   * CMP rX, #k
+   * BEQ/BNE L
+   * becomes Bcc L or Bncc L when rX is not read again, since the moves leave
+   * the flags of the original comparison untouched.
+   */
+  private boolean fuseConditionalBranch(int i) {
+    if (!(node(i) instanceof ARMMovNode) || !(node(i + 1) instanceof ARMMovNode)
+        || !(node(i + 2) instanceof ARMCmpNode)
+        || !(node(i + 3) instanceof ARMBranchNode)) {
+      return false;
+    }
+    ARMMovNode first = (ARMMovNode) node(i);
+    ARMMovNode second = (ARMMovNode) node(i + 1);
+    ARMCmpNode compare = (ARMCmpNode) node(i + 2);
+    ARMBranchNode branch = (ARMBranchNode) node(i + 3);
+    Register flag = first.getDestReg();
+    if (!flag.equals(second.getDestReg()) || !flag.equals(compare.getRegister())
+        || first.getOperandTwo().getRegister() != null
+        || second.getOperandTwo().getRegister() != null
+        || compare.getOperandTwo().getRegister() != null) {
+      return false;
+    }
+    boolean branchOnEqual;
+    if (branch.getComparator() == BranchComparator.BEQ) {
+      branchOnEqual = true;
+    } else if (branch.getComparator() == BranchComparator.BNE) {
+      branchOnEqual = false;
+    } else {
+      return false;
+    }
+
+    // Value of the flag when the condition holds and when it does not
+    String condition;
+    int valueIfTrue;
+    int valueIfFalse;
+    String firstCondition = condition(first.getComparator());
+    String secondCondition = condition(second.getComparator());
+    if (firstCondition.isEmpty() && !secondCondition.isEmpty()) {
+      condition = secondCondition;
+      valueIfTrue = second.getOperandTwo().getImmediate();
+      valueIfFalse = first.getOperandTwo().getImmediate();
+    } else if (!firstCondition.isEmpty()
+        && secondCondition.equals(negate(firstCondition))) {
+      condition = firstCondition;
+      valueIfTrue = first.getOperandTwo().getImmediate();
+      valueIfFalse = second.getOperandTwo().getImmediate();
+    } else {
+      return false;
+    }
+
+    int k = compare.getOperandTwo().getImmediate();
+    boolean takenIfTrue = (valueIfTrue == k) == branchOnEqual;
+    boolean takenIfFalse = (valueIfFalse == k) == branchOnEqual;
+    if (takenIfTrue == takenIfFalse || isLiveAfter(i + 3, flag)) {
+      return false;
+    }
+
+    String taken = takenIfTrue ? condition : negate(condition);
+    code.set(i, new ARMBranchNode(branch.getLabel(), BranchComparator
+        .valueOf("B" + taken)));
+    code.subList(i + 1, i + 4).clear();
+    return true;
+  }
+
+  // Condition code of a move, empty when it is unconditional
+  private static String condition(MovComparator comparator) {
+    return comparator.name().substring(3);
+  }
+
+  private static String negate(String condition) {
+    switch (condition) {
+      case "EQ":
+        return "NE";
+      case "NE":
+        return "EQ";
+      case "LT":
+        return "GE";
+      case "GE":
+        return "LT";
+      case "GT":
+        return "LE";
+      case "LE":
+        return "GT";
+      default:
+        return "";
+    }
+  }
+
+  // Whether any path from after the instruction reads register before
+  // writing it, branches to unknown labels are assumed to read it
+  private boolean isLiveAfter(int index, Register register) {
+    Deque<Integer> worklist = new ArrayDeque<>();
+    Set<Integer> visited = new HashSet<>();
+    List<Integer> next = successors(index);
+    if (next == null) {
+      return true;
+    }
+    worklist.addAll(next);
+    while (!worklist.isEmpty()) {
+      int i = worklist.poll();
+      if (!visited.add(i) || i >= code.size()) {
+        continue;
+      }
+      ARMNode node = code.get(i);
+      if (node.getUsedRegisters().contains(register)) {
+        return true;
+      }
+      if (node.getDefinedRegisters().contains(register)
+          && !node.isConditional()) {
+        continue;
+      }
+      next = successors(i);
+      if (next == null) {
+        return true;
+      }
+      worklist.addAll(next);
+    }
+    return false;
+  }
+
+  private List<Integer> successors(int i) {
+    ARMNode node = code.get(i);
+    if (node instanceof ARMFunctionReturn || node instanceof ARMFunctionEnd
+        || node instanceof ARMFileEnd) {
+      return Collections.emptyList();
+    }
+    List<Integer> successors = new ArrayList<>();
+    if (node instanceof ARMBranchNode && !((ARMBranchNode) node).isCall()) {
+      ARMBranchNode branch = (ARMBranchNode) node;
+      Integer target = labels.get(branch.getLabel());
+      if (target == null) {
+        return null;
+      }
+      successors.add(target);
+      if (branch.getComparator() == BranchComparator.B) {
+        return successors;
+      }
+    }
+    successors.add(i + 1);
+    return successors;
+  }
+}
@@ -7,6 +7,9 @@ public class Register {
     pc, lr, sp, r0, r1, r2, r3, r10, r11
   }
 
+  // Registers from here on are virtual, standing for values to be allocated
+  public static final int FIRST_VIRTUAL = 16;
+
   private SpecialReg specialReg = null;
   private int register;
 
@@ -21,18 +24,43 @@ public class Register {
     this.register = 0;
   }
 
+  // Special registers are numbered as they are in the ARM register file
   public int getRegisterNumber() {
     if (specialReg != null) {
-      if (specialReg.equals(SpecialReg.r10)) {
-        return 10;
-      }
-      if (specialReg.equals(SpecialReg.r11)) {
-        return 11;
+      switch (specialReg) {
+        case r0:
+          return 0;
+        case r1:
+          return 1;
+        case r2:
+          return 2;
+        case r3:
+          return 3;
+        case r10:
+          return 10;
+        case r11:
+          return 11;
+        case sp:
+          return 13;
+        case lr:
+          return 14;
+        case pc:
+          return 15;
       }
     }
     return register;
   }
 
+  // Registers r4 to r11 must be preserved across a call
+  public boolean isCalleeSaved() {
+    int number = getRegisterNumber();
+    return number >= 4 && number <= 11;
+  }
+
+  public boolean isVirtual() {
+    return specialReg == null && register >= FIRST_VIRTUAL;
+  }
+
   public void nextReg() {
     register++;
   }
@@ -60,14 +88,15 @@ public class Register {
       OperandTwo other = (OperandTwo) o;
       return other.getShiftType() == null && this.equals(other.getRegister());
     } else if (o instanceof Register) {
+      // r10 may be constructed as either a special or a standard register
       Register reg = (Register) o;
-      return specialReg.equals(reg.specialReg) && register == reg.register;
+      return getRegisterNumber() == reg.getRegisterNumber();
     }
     return false;
   }
 
   public int hashCode() {
-    return register + 67452 * specialReg.ordinal();
+    return getRegisterNumber();
   }
 
   // If it has a special register it returns it's string representation
@@ -78,6 +107,9 @@ public class Register {
     if (specialReg != null) {
       return specialReg.name();
     }
+    if (isVirtual()) {
+      return "v" + (register - FIRST_VIRTUAL);
+    }
     return "r" + register;
   }
 }
@@ -0,0 +1,381 @@
+package smacc.arm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import smacc.arm.ARMAddNode.AddComparator;
+import smacc.arm.ARMBranchNode.BranchComparator;
+import smacc.arm.ARMSubNode.SubComparator;
+
+/*
+ * ShrinkWrapper
+ * Moves the prologue of a function off an early exit that does not need it,
+ * such as the base case of a recursive function, so that path saves nothing
+ * and returns with BX lr.
+ *
+ * The code from the prologue up to the first conditional branch, and one of
+ * the two paths out of that branch running straight to a return, may not
+ * call anything or touch the stack. Arguments the prologue copies into
+ * callee-saved registers are read from their argument registers there
+ * instead, and other callee-saved registers they write are renamed to
+ * scratch registers nothing else in the function uses. The push, the frame
+ * and the argument copies then move to the start of the other path, which
+ * must only be reached through the branch so the prologue still runs once on
+ * every path that needs it.
+ *
+ * Leaf functions that keep nothing on the stack first have the callee-saved
+ * registers they save renamed to scratch registers the function never names,
+ * as nothing they call can overwrite those, leaving less or nothing to save.
+ */
+public class ShrinkWrapper {
+
+  // One function, from its ARMFunctionStart up to its ARMFunctionEnd
+  private List<ARMNode> code;
+
+  private List<ARMNode> prologue = new ArrayList<>();
+  private int frame;
+  // Callee-saved registers the prologue copies arguments into
+  private Map<Register, Register> copies = new HashMap<>();
+  // Callee-saved registers written before the prologue and their renames
+  private Map<Register, Register> temporaries = new HashMap<>();
+  private List<Register> freeScratch = new ArrayList<>();
+  // Argument registers overwritten since the prologue
+  private Set<Register> clobbered = new HashSet<>();
+
+  public static List<ARMNode> run(List<ARMNode> program) {
+    List<ARMNode> wrapped = new ArrayList<>(program);
+    for (int i = 0; i < wrapped.size(); i++) {
+      if (!(wrapped.get(i) instanceof ARMFunctionStart)) {
+        continue;
+      }
+      int end = i;
+      while (!(wrapped.get(end) instanceof ARMFunctionEnd)) {
+        end++;
+      }
+      new ShrinkWrapper(wrapped.subList(i, end)).wrap();
+      while (!(wrapped.get(i) instanceof ARMFunctionEnd)) {
+        i++;
+      }
+    }
+    return wrapped;
+  }
+
+  private ShrinkWrapper(List<ARMNode> code) {
+    this.code = code;
+  }
+
+  private void wrap() {
+    renameLeafRegisters();
+    int index = 0;
+    do {
+      prologue.add(code.get(index++));
+    } while (index < code.size() && isPrologue(code.get(index)));
+    if (((ARMFunctionStart) prologue.get(0)).isEmpty() && frame == 0) {
+      return;
+    }
+    findFreeScratch();
+
+    // Straight line code up to the test
+    int test = index;
+    while (test < code.size() && !isBranch(code.get(test))) {
+      if (!isCheap(code.get(test))) {
+        return;
+      }
+      test++;
+    }
+    if (test == code.size() || !clobbered.isEmpty()) {
+      return;
+    }
+    ARMBranchNode branch = (ARMBranchNode) code.get(test);
+    int target = labelIndex(branch.getLabel());
+    if (branch.getComparator() == BranchComparator.B || target < 0
+        || afterLabels(target) == afterLabels(test + 1)
+        || !isOnlyReachedBy(test + 1, branch)
+        || !isOnlyReachedBy(target, branch)) {
+      return;
+    }
+
+    // Either way out of the test may be the early exit
+    Map<Register, Register> testTemporaries = new HashMap<>(temporaries);
+    List<Register> testScratch = new ArrayList<>(freeScratch);
+    Set<ARMNode> exit = earlyExit(test + 1);
+    int slowPath = afterLabels(target);
+    if (exit == null || !isDeadAt(slowPath, testTemporaries.keySet())) {
+      temporaries = testTemporaries;
+      freeScratch = testScratch;
+      clobbered.clear();
+      exit = earlyExit(target);
+      slowPath = afterLabels(test + 1);
+    }
+    if (exit == null || !isDeadAt(slowPath, testTemporaries.keySet())) {
+      return;
+    }
+
+    Map<Register, Register> uses = new HashMap<>(temporaries);
+    uses.putAll(copies);
+    List<ARMNode> wrapped = new ArrayList<>();
+    for (int i = prologue.size(); i < code.size(); i++) {
+      ARMNode node = code.get(i);
+      if (i == slowPath) {
+        wrapped.addAll(prologue);
+      }
+      if (i <= test || exit.contains(node)) {
+        if (node instanceof ARMFunctionReturn) {
+          node = new ARMFunctionReturn(new ArrayList<Register>(), false);
+        } else if (node.getStackAdjustment() != 0) {
+          continue;
+        }
+        node.replaceRegisters(uses, temporaries);
+      }
+      wrapped.add(node);
+    }
+    code.clear();
+    code.addAll(wrapped);
+  }
+
+  private void renameLeafRegisters() {
+    ARMFunctionStart start = (ARMFunctionStart) code.get(0);
+    if (start.savesLinkRegister() || start.getSavedRegisters().isEmpty()) {
+      return;
+    }
+    for (ARMNode node : code) {
+      if (!(node instanceof ARMFunctionStart)
+          && !(node instanceof ARMFunctionReturn)
+          && (node.getUsedRegisters().contains(new Register(
+              Register.SpecialReg.sp)) || node.getStackAdjustment() != 0)) {
+        return;
+      }
+    }
+
+    findFreeScratch();
+    Map<Register, Register> renames = new HashMap<>();
+    List<Register> saved = new ArrayList<>();
+    for (Register register : start.getSavedRegisters()) {
+      if (freeScratch.isEmpty()) {
+        saved.add(register);
+      } else {
+        renames.put(register, freeScratch.remove(0));
+      }
+    }
+    if (renames.isEmpty()) {
+      return;
+    }
+    for (int i = 0; i < code.size(); i++) {
+      ARMNode node = code.get(i);
+      if (node instanceof ARMFunctionStart) {
+        node = new ARMFunctionStart(saved, false);
+      } else if (node instanceof ARMTailCall) {
+        node = new ARMTailCall(saved, ((ARMTailCall) node).getCallee(), false);
+      } else if (node instanceof ARMFunctionReturn) {
+        node = new ARMFunctionReturn(saved, false);
+      }
+      node.replaceRegisters(renames, renames);
+      code.set(i, node);
+    }
+  }
+
+  // Frame allocation or an argument copied into a callee-saved register
+  private boolean isPrologue(ARMNode node) {
+    if (isPlainSub(node) && node.getStackAdjustment() > 0) {
+      frame += node.getStackAdjustment();
+      return true;
+    }
+    if (node instanceof ARMMovNode && ((ARMMovNode) node).isRegisterCopy()) {
+      Register destination = ((ARMMovNode) node).getDestReg();
+      Register source = ((ARMMovNode) node).getOperandTwo().getRegister();
+      if (destination.isCalleeSaved() && source.getRegisterNumber() < 4
+          && !copies.containsKey(destination)) {
+        copies.put(destination, source);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /*
+   * r1 to r3 and r12 when nothing names them, the registers calls and the
+   * prologue and epilogue stand for aside. Tail calls pass their arguments on.
+   */
+  private void findFreeScratch() {
+    freeScratch.clear();
+    Set<Register> named = new HashSet<>(copies.values());
+    for (ARMNode node : code) {
+      if (node instanceof ARMTailCall) {
+        named.addAll(node.getUsedRegisters());
+      } else if (!(node instanceof ARMBranchNode)
+          && !(node instanceof ARMFunctionStart)
+          && !(node instanceof ARMFunctionReturn)) {
+        named.addAll(node.getUsedRegisters());
+        named.addAll(node.getDefinedRegisters());
+      }
+    }
+    for (int number : new int[] {12, 3, 2, 1}) {
+      if (!named.contains(new Register(number))) {
+        freeScratch.add(new Register(number));
+      }
+    }
+  }
+
+  private static boolean isPlainSub(ARMNode node) {
+    return node instanceof ARMSubNode
+        && ((ARMSubNode) node).getComparator() == SubComparator.SUB;
+  }
+
+  private static boolean isPlainAdd(ARMNode node) {
+    return node instanceof ARMAddNode
+        && ((ARMAddNode) node).getComparator() == AddComparator.ADD;
+  }
+
+  private static boolean isBranch(ARMNode node) {
+    return node instanceof ARMBranchNode && !((ARMBranchNode) node).isCall();
+  }
+
+  /*
+   * Whether node can run before the prologue, reading the copied arguments
+   * from where they were passed. Records the argument registers it writes
+   * and renames the callee-saved ones.
+   */
+  private boolean isCheap(ARMNode node) {
+    if (node instanceof ARMLabel || node instanceof ARMBranchNode
+        || node instanceof ARMFunctionStart
+        || node instanceof ARMFunctionReturn
+        || node.getStackAdjustment() != 0) {
+      return false;
+    }
+    for (Register register : node.getUsedRegisters()) {
+      if (copies.containsKey(register)) {
+        register = copies.get(register);
+      } else if (temporaries.containsKey(register)) {
+        register = temporaries.get(register);
+      }
+      if (!isScratch(register) || clobbered.contains(register)) {
+        return false;
+      }
+    }
+    for (Register register : node.getDefinedRegisters()) {
+      if (register.isCalleeSaved() && !copies.containsKey(register)) {
+        if (!temporaries.containsKey(register)) {
+          if (freeScratch.isEmpty()) {
+            return false;
+          }
+          temporaries.put(register, freeScratch.remove(0));
+        }
+      } else if (!isScratch(register)) {
+        return false;
+      }
+      if (copies.containsValue(register)) {
+        clobbered.add(register);
+      }
+    }
+    return true;
+  }
+
+  /*
+   * Whether the registers are all written before they are read from index,
+   * on the straight line code there
+   */
+  private boolean isDeadAt(int index, Set<Register> registers) {
+    Set<Register> live = new HashSet<>(registers);
+    for (int i = index; i < code.size() && !live.isEmpty(); i++) {
+      ARMNode node = code.get(i);
+      if (node instanceof ARMLabel || isBranch(node)
+          || node instanceof ARMFunctionReturn) {
+        return false;
+      }
+      for (Register register : node.getUsedRegisters()) {
+        if (live.contains(register)) {
+          return false;
+        }
+      }
+      if (!node.isConditional()) {
+        live.removeAll(node.getDefinedRegisters());
+      }
+    }
+    return live.isEmpty();
+  }
+
+  // Registers the caller does not expect to be kept
+  private static boolean isScratch(Register register) {
+    int number = register.getRegisterNumber();
+    return number < 4 || number == 12;
+  }
+
+  /*
+   * Nodes from index up to and including a return that can all run without
+   * the prologue, with the frame released just before the return, null if
+   * there are none
+   */
+  private Set<ARMNode> earlyExit(int index) {
+    Set<ARMNode> exit = Collections.newSetFromMap(
+        new IdentityHashMap<ARMNode, Boolean>());
+    int released = 0;
+    for (int i = afterLabels(index); i < code.size(); i++) {
+      ARMNode node = code.get(i);
+      exit.add(node);
+      if (node.getClass() == ARMFunctionReturn.class) {
+        return (released == frame) ? exit : null;
+      }
+      if (isPlainAdd(node) && node.getStackAdjustment() < 0) {
+        released -= node.getStackAdjustment();
+      } else if (released != 0 || !isCheap(node)) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  private int afterLabels(int index) {
+    while (index < code.size() && code.get(index) instanceof ARMLabel) {
+      index++;
+    }
+    return index;
+  }
+
+  private int labelIndex(String label) {
+    for (int i = 0; i < code.size(); i++) {
+      if (code.get(i) instanceof ARMLabel
+          && ((ARMLabel) code.get(i)).getLabel().equals(label)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /*
+   * Whether the labels around index are only branched to by branch, and
+   * nothing before them falls through unless it is the branch itself.
+   * Branches straight after a return, as the Translator leaves at the end of
+   * a then branch, are never taken.
+   */
+  private boolean isOnlyReachedBy(int index, ARMBranchNode branch) {
+    int first = index;
+    while (first > 0 && code.get(first - 1) instanceof ARMLabel) {
+      first--;
+    }
+    Set<String> labels = new HashSet<>();
+    for (int i = first; i < afterLabels(index); i++) {
+      labels.add(((ARMLabel) code.get(i)).getLabel());
+    }
+    for (int i = 0; i < code.size(); i++) {
+      ARMNode node = code.get(i);
+      if (node != branch && isBranch(node) && !endsBlock(code.get(i - 1))
+          && labels.contains(((ARMBranchNode) node).getLabel())) {
+        return false;
+      }
+    }
+    ARMNode previous = code.get(first - 1);
+    return previous == branch || endsBlock(previous);
+  }
+
+  // Nothing after node runs unless it is branched to
+  private static boolean endsBlock(ARMNode node) {
+    return node instanceof ARMFunctionReturn || isBranch(node)
+        && ((ARMBranchNode) node).getComparator() == BranchComparator.B;
+  }
+}
@@ -6,19 +6,23 @@ import java.util.List;
 
 import smacc.Function;
 import smacc.SymbolTable;
+import smacc.Variable;
 import smacc.arm.PredefinedFunctionHandler.PredefinedFunction;
 import smacc.arm.ARMAddNode.AddComparator;
 import smacc.arm.ARMBranchNode.BranchComparator;
-import smacc.arm.ARMLogicalNode.LogicalComparator;
 import smacc.arm.ARMMovNode.MovComparator;
 import smacc.arm.ARMMulNode.MulComparator;
 import smacc.arm.ARMLdrNode.LdrComparator;
+import smacc.arm.ARMStmNode.StmComparator;
 import smacc.arm.ARMStrNode.StrComparator;
 import smacc.arm.ARMSubNode.SubComparator;
 import smacc.arm.OperandTwo.ShiftType;
 import smacc.arm.Register.SpecialReg;
 import smacc.ast.stat.*;
+import smacc.ast.DeadCodeEliminator;
 import smacc.ast.expr.*;
+import smacc.ast.expr.ExprNode.BinOp;
+import smacc.ast.expr.ExprNode.UnOp;
 import smacc.types.WACCType;
 
 /*
@@ -46,6 +50,7 @@ public class Translator {
     if (returnReg.getRegisterNumber() == 10) {
       program.add(new ARMPushNode(Reg10));
       stackCount++;
+      stackOffset += 4;
     } else {
       returnReg = returnReg.getNextReg();
     }
@@ -79,17 +84,26 @@ public class Translator {
    */
   private LinkedList<OperandTwo> separateIntoValidSizes(int operandTwo) {
     LinkedList<OperandTwo> splitValues = new LinkedList<>();
-    while (operandTwo > 1024) {
-      operandTwo -= 1024;
-      splitValues.add(new OperandTwo(1024, false));
+    for (int piece : ConstantLoader.pieces(operandTwo)) {
+      splitValues.add(new OperandTwo(piece, false));
     }
-    splitValues.add(new OperandTwo(operandTwo, false));
     return splitValues;
   }
 
+  // Fits an operand 2, negative values once the assembler turns CMP, ADD,
+  // SUB and MOV into CMN, SUB, ADD and MVN
+  private static boolean isImmediate(int value) {
+    return OperandTwo.isValidImmediate(value)
+        || OperandTwo.isValidImmediate(-value)
+        && OperandTwo.isValidImmediate(~value);
+  }
+
   int stackCount = 0;
-  // Set in translateIdentNode
+  // Bytes pushed below the frame, locals are this much further from sp
+  private int stackOffset = 0;
+  // Set in translateIdentNode, register is null for variables on the stack
   private int lastIdentOffset = 0;
+  private Register lastIdentRegister = null;
   private boolean translatingAssignLhs = false;
   private boolean translatingPrintOrFree = false;
   private boolean translatingRead = false;
@@ -118,19 +132,71 @@ public class Translator {
 
   public void translateFunction(Function function) {
     program.add(new ARMLabel(function.getId()));
-    program.add(new ARMFunctionStart());
+    program.add(new ARMFunctionStart(function.getSavedRegisters(),
+        function.savesLinkRegister()));
     currentFunction = function;
+    if (!function.isMain()) {
+      translateRegisterParameters(function);
+    }
+    // One frame holds the locals of every scope
+    if (function.getFrameSize() != 0) {
+      for (OperandTwo operandTwo : separateIntoValidSizes(function
+          .getFrameSize())) {
+        program.add(new ARMSubNode(new Register(SpecialReg.sp), new Register(
+            SpecialReg.sp), operandTwo, SubComparator.SUB));
+      }
+    }
     function.getBody().translate(this);
     program.add(new ARMFunctionEnd());
   }
 
+  // Arguments in r0 to r3 go to their own register or are pushed
+  private void translateRegisterParameters(Function function) {
+    int i = 0;
+    for (Variable parameter : function.getParameterScope().getVariables()) {
+      if (function.isPassedInRegister(i) && parameter.hasRegister()) {
+        program.add(new ARMMovNode(new Register(parameter.getRegister()),
+            new OperandTwo(new Register(i)), MovComparator.MOV));
+      }
+      i++;
+    }
+    List<Variable> homed = function.getHomedParameters();
+    List<Variable> parameters = new ArrayList<>(function.getParameterScope()
+        .getVariables());
+    for (int j = homed.size() - 1; j >= 0; j--) {
+      program.add(new ARMPushNode(new Register(parameters.indexOf(homed
+          .get(j)))));
+    }
+  }
+
   // Translating Stats
 
   public void translateCallNode(CallNode node) {
+    Function function = node.getFunction();
     int argCount = node.getArgCount();
+    int registerCount = 0;
+    while (registerCount < argCount
+        && function.isPassedInRegister(registerCount)) {
+      registerCount++;
+    }
+    // Register arguments are held from returnReg up until the call
+    boolean holdArguments = registerCount > 0
+        && returnReg.getRegisterNumber() + registerCount - 1 < 10;
     int totalArgByteSize = 0;
 
-    // For each param in reverse order
+    // Padding above the pushed arguments keeps the callee word aligned
+    int padding = 0;
+    for (int i = holdArguments ? registerCount : 0; i < argCount; i++) {
+      padding += node.getArg(i).getSizeInBytes();
+    }
+    padding = (4 - padding % 4) % 4;
+    if (padding != 0) {
+      program.add(new ARMSubNode(new Register(SpecialReg.sp), new Register(
+          SpecialReg.sp), new OperandTwo(padding, false), SubComparator.SUB));
+      stackOffset += padding;
+    }
+
+    // For each param in order
     for (int i = 0; i < argCount; i++) {
 
       ExprNode currentArg = node.getArg(i);
@@ -138,20 +204,42 @@ public class Translator {
       // Load into returnReg
       currentArg.translate(this);
 
+      if (holdArguments && i < registerCount) {
+        incReturnReg();
+        continue;
+      }
+
       StrComparator comparator = chooseStrComparator(currentArg);
       int currentArgSize = currentArg.getSizeInBytes();
 
       program.add(new ARMStrNode(returnReg, new Register(SpecialReg.sp),
           -currentArgSize, true, comparator));
       totalArgByteSize += currentArgSize;
-      currentScope.changeSPOffset(currentArgSize);
+      stackOffset += currentArgSize;
     }
-    program.add(new ARMBranchNode(node.getFunction().getId(),
-        BranchComparator.BL));
-    currentScope.setSPOffset(0);
-    if (argCount > 0) {
+
+    if (holdArguments) {
+      for (int i = registerCount - 1; i >= 0; i--) {
+        decReturnReg();
+        program.add(new ARMMovNode(new Register(i), new OperandTwo(
+            returnReg), MovComparator.MOV));
+      }
+    } else {
+      // Pushed like the rest, the callee ignores their slots
+      int offset = totalArgByteSize;
+      for (int i = 0; i < registerCount; i++) {
+        ExprNode currentArg = node.getArg(i);
+        offset -= currentArg.getSizeInBytes();
+        program.add(new ARMLdrNode(new Register(i), new Register(
+            SpecialReg.sp), offset, currentArg.getSizeInBytes() == 1
+            ? LdrComparator.LDRSB : LdrComparator.LDR));
+      }
+    }
+    program.add(new ARMBranchNode(function.getId(), BranchComparator.BL));
+    stackOffset -= totalArgByteSize + padding;
+    if (totalArgByteSize + padding > 0) {
       program.add(new ARMAddNode(new Register(SpecialReg.sp), new Register(
-          SpecialReg.sp), new OperandTwo(totalArgByteSize, false),
+          SpecialReg.sp), new OperandTwo(totalArgByteSize + padding, false),
           AddComparator.ADD));
     }
     program.add(new ARMMovNode(returnReg, new OperandTwo(new Register(
@@ -168,8 +256,8 @@ public class Translator {
 
     // Don't pop here, pop at end of translateScopeNode
     isReturning = true;
-    int numElemsInScope = currentScope.getSizeOfAllInBytes()
-        - currentFunction.totalParameterSizeInBytes();
+    int numElemsInScope = currentFunction.getFrameSize()
+        + 4 * currentFunction.getHomedParameters().size();
     if (numElemsInScope != 0) {
       LinkedList<OperandTwo> operands = separateIntoValidSizes(numElemsInScope);
       for (OperandTwo operandTwo : operands) {
@@ -181,13 +269,10 @@ public class Translator {
   }
 
   public void translateIfNode(IfNode node) {
-    node.getConditional().translate(this);
     ARMLabel label = new ARMLabel(false);
     ARMLabel label2 = new ARMLabel(false);
-    // Compare result of conditional with 0
-    program.add(new ARMCmpNode(returnReg, new OperandTwo(0, false)));
     // Jump to false body if false
-    program.add(new ARMBranchNode(label.getLabel(), BranchComparator.BEQ));
+    translateCondition(node.getConditional(), label, false);
     node.getTrueBody().translate(this);
     // Avoid executing false body after true body is executed
     program.add(new ARMBranchNode(label2.getLabel(), BranchComparator.B));
@@ -214,6 +299,9 @@ public class Translator {
         || node.getLHS() instanceof PairElemNode) {
       program.add(new ARMStrNode(returnReg, returnReg.getNextReg(), 0, false,
           comparator));
+    } else if (lastIdentRegister != null) {
+      program.add(new ARMMovNode(lastIdentRegister, new OperandTwo(returnReg),
+          MovComparator.MOV));
     } else {
       program.add(new ARMStrNode(returnReg, new Register(SpecialReg.sp),
           lastIdentOffset, false, comparator));
@@ -300,10 +388,62 @@ public class Translator {
     node.getBody().translate(this);
     // Add label with condition check followed by rest of code after loop
     program.add(label);
-    node.getConditional().translate(this);
     // If conditional evaluates to true, branch back up to loop body
-    program.add(new ARMCmpNode(returnReg, new OperandTwo(1, false)));
-    program.add(new ARMBranchNode(label2.getLabel(), BranchComparator.BEQ));
+    translateCondition(node.getConditional(), label2, true);
+  }
+
+  /*
+   * Jumps to target when the condition evaluates to jumpIfTrue and falls
+   * through otherwise. Comparisons branch on the flags they set instead of
+   * building a bool, and && and || only evaluate their right argument when
+   * the left one does not decide where to go.
+   */
+  private void translateCondition(ExprNode condition, ARMLabel target,
+      boolean jumpIfTrue) {
+    if (condition instanceof BoolLiteralNode) {
+      if (((BoolLiteralNode) condition).getValue() == jumpIfTrue) {
+        program.add(new ARMBranchNode(target.getLabel(), BranchComparator.B));
+      }
+      return;
+    }
+
+    if (condition instanceof UnaryOpNode
+        && ((UnaryOpNode) condition).getOp() == UnOp.LOGICAL_NOT) {
+      translateCondition(((UnaryOpNode) condition).getArg(), target,
+          !jumpIfTrue);
+      return;
+    }
+
+    if (condition instanceof BinaryOpNode) {
+      BinaryOpNode node = (BinaryOpNode) condition;
+      BinOp op = node.getOp();
+      if (op == BinOp.LOGICAL_AND || op == BinOp.LOGICAL_OR) {
+        // The left argument decides the result when it is false for && or
+        // true for ||, otherwise the right argument does
+        boolean decidingValue = (op == BinOp.LOGICAL_OR);
+        if (decidingValue == jumpIfTrue) {
+          translateCondition(node.getLeft(), target, jumpIfTrue);
+          translateCondition(node.getRight(), target, jumpIfTrue);
+        } else {
+          ARMLabel skip = new ARMLabel(false);
+          translateCondition(node.getLeft(), skip, decidingValue);
+          translateCondition(node.getRight(), target, jumpIfTrue);
+          program.add(skip);
+        }
+        return;
+      }
+
+      // Any other bool operator is a comparison, which sets the flags
+      BinOp comparison = translateOperation(node);
+      program.add(new ARMBranchNode(target.getLabel(), branchComparator(
+          jumpIfTrue ? comparison : negate(comparison))));
+      return;
+    }
+
+    condition.translate(this);
+    program.add(new ARMCmpNode(returnReg, new OperandTwo(0, false)));
+    program.add(new ARMBranchNode(target.getLabel(),
+        jumpIfTrue ? BranchComparator.BNE : BranchComparator.BEQ));
   }
 
   public void translateExitNode(ExitNode node) {
@@ -314,42 +454,21 @@ public class Translator {
   }
 
   /*
-   * Gets the number of items in a symboltable for the specific scope and makes
-   * space for it on the stack using a stack pointer register
+   * Locals of the scope already have a place in the frame of the function,
+   * so only the scope itself changes
    */
   public void translateScopeNode(ScopeNode node) {
 
     SymbolTable tempTable = currentScope;
     currentScope = node.getSymbolTable();
 
-    int numElemsInScope = currentScope.getSizeOfTableInBytes();
-    // Make new immediate operand 2
-    LinkedList<OperandTwo> operands = separateIntoValidSizes(numElemsInScope);
-
-    // Subtract from stack if there are local variables
-    if (numElemsInScope != 0) {
-      for (OperandTwo operandTwo : operands) {
-        program.add(new ARMSubNode(new Register(Register.SpecialReg.sp),
-            new Register(Register.SpecialReg.sp), operandTwo,
-            ARMSubNode.SubComparator.SUB));
-      }
-    }
-
     // Translate scope body
     node.getStat().translate(this);
 
-    // Add to stack if you subtracted
-    if (!isReturning && numElemsInScope != 0) {
-      for (OperandTwo operandTwo : operands) {
-        program.add(new ARMAddNode(new Register(Register.SpecialReg.sp),
-            new Register(Register.SpecialReg.sp), operandTwo,
-            ARMAddNode.AddComparator.ADD));
-      }
-    }
-
     currentScope = tempTable;
     if (isReturning) {
-      program.add(new ARMPopNode(new Register(SpecialReg.pc)));
+      program.add(new ARMFunctionReturn(currentFunction.getSavedRegisters(),
+          currentFunction.savesLinkRegister()));
     }
     isReturning = false;
   }
@@ -357,12 +476,19 @@ public class Translator {
   // Translating Exprs
 
   public void translateArrayElemNode(ArrayElemNode node) {
-    // Sets sp offset to array ident and loads into returnReg if
-    node.getIdent().translate(this);
-    // ADD returnReg, sp, offsetToArrayFromSp
-    // returnReg will hold pointer to position of array pointer on stack
-    program.add(new ARMAddNode(returnReg, new Register(SpecialReg.sp),
-        new OperandTwo(lastIdentOffset, false), AddComparator.ADD));
+    Variable array = node.getIdent().getVariable();
+    if (array.hasRegister()) {
+      // returnReg will hold the array pointer itself
+      program.add(new ARMMovNode(returnReg, new OperandTwo(new Register(
+          array.getRegister())), MovComparator.MOV));
+    } else {
+      // Sets sp offset to array ident and loads into returnReg if
+      node.getIdent().translate(this);
+      // ADD returnReg, sp, offsetToArrayFromSp
+      // returnReg will hold pointer to position of array pointer on stack
+      program.add(new ARMAddNode(returnReg, new Register(SpecialReg.sp),
+          new OperandTwo(lastIdentOffset, false), AddComparator.ADD));
+    }
     for (int i = 0; i < node.getIndexCount(); i++) {
       translatingArrayElemIndex = true;
       incReturnReg();
@@ -370,7 +496,9 @@ public class Translator {
       decReturnReg();
       translatingArrayElemIndex = false;
 
-      program.add(new ARMLdrNode(returnReg, returnReg, 0, LdrComparator.LDR));
+      if (i > 0 || !array.hasRegister()) {
+        program.add(new ARMLdrNode(returnReg, returnReg, 0, LdrComparator.LDR));
+      }
       program.add(new ARMMovNode(new Register(SpecialReg.r0), new OperandTwo(
           returnReg.getNextReg()), MovComparator.MOV));
       program.add(new ARMMovNode(new Register(SpecialReg.r1), new OperandTwo(
@@ -401,8 +529,8 @@ public class Translator {
       program.add(new ARMLdrNode(returnReg, fileStart.getMessageLabel(string),
           LdrComparator.LDR));
     } else {
-      program.add(new ARMLdrNode(new Register(SpecialReg.r0), node
-          .getSizeInBytes(), LdrComparator.LDR));
+      program.addAll(ConstantLoader.load(new Register(SpecialReg.r0), node
+          .getSizeInBytes()));
       // BL malloc (Calls C function malloc, and will use value in r0 as
       // parameter
       program.add(new ARMBranchNode("malloc", BranchComparator.BL));
@@ -410,6 +538,10 @@ public class Translator {
       // (from malloc) in returnReg
       program.add(new ARMMovNode(returnReg, new OperandTwo(new Register(
           SpecialReg.r0)), MovComparator.MOV));
+      if (isBlockStored(node)) {
+        translateBlockStoredElements(node);
+        return;
+      }
 
       int offset = 0;
       // Translate each element of array, then store it in the array at the
@@ -439,19 +571,116 @@ public class Translator {
     }
   }
 
+  // Words loaded without a call or a temporary, so r0 to r3 can hold them
+  private static boolean isBlockStored(ArrayLiteralNode node) {
+    for (int i = 0; i < node.getLength(); i++) {
+      ExprNode element = node.getElement(i);
+      boolean isString = element instanceof ArrayLiteralNode
+          && ArrayLiteralNode.isPureString((ArrayLiteralNode) element);
+      if (element.getSizeInBytes() != 4 || !(element instanceof IntLiteralNode
+          || element instanceof IdentNode || element instanceof NullNode
+          || isString)) {
+        return false;
+      }
+    }
+    return node.getLength() > 0;
+  }
+
+  /*
+   * Stores the length and elements of an array literal four words at a
+   * time, each group put in r0 to r3 and stored with one STM. Longer arrays
+   * are stored through r12, which the STMs move along the array.
+   */
+  private void translateBlockStoredElements(ArrayLiteralNode node) {
+    List<ExprNode> words = new ArrayList<>();
+    words.add(new IntLiteralNode(node.getLength()));
+    for (int i = 0; i < node.getLength(); i++) {
+      words.add(node.getElement(i));
+    }
+    Register array = returnReg;
+    Register base = array;
+    if (words.size() > Function.ARGUMENT_REGISTERS) {
+      base = new Register(12);
+      program.add(new ARMMovNode(base, new OperandTwo(array),
+          MovComparator.MOV));
+    }
+    for (int first = 0; first < words.size();
+        first += Function.ARGUMENT_REGISTERS) {
+      List<Register> group = new ArrayList<>();
+      int last = Math.min(first + Function.ARGUMENT_REGISTERS, words.size());
+      for (int i = first; i < last; i++) {
+        returnReg = new Register(i - first);
+        words.get(i).translate(this);
+        group.add(returnReg);
+      }
+      returnReg = array;
+      program.add(new ARMStmNode(base, group, last < words.size(),
+          StmComparator.STMIA));
+    }
+  }
+
   public void translateBinaryOpNode(BinaryOpNode node) {
 
-    // We know that at most one argument is an immediate
+    if (node.getOp() == BinOp.LOGICAL_AND || node.getOp() == BinOp.LOGICAL_OR) {
+      translateShortCircuit(node);
+      return;
+    }
+
+    BinOp comparison = translateOperation(node);
+    if (comparison != null) {
+      program.add(new ARMMovNode(returnReg, new OperandTwo(1, false),
+          movComparator(comparison)));
+      program.add(new ARMMovNode(returnReg, new OperandTwo(0, false),
+          movComparator(negate(comparison))));
+    }
+  }
+
+  /*
+   * Translates an arithmetic operator into returnReg, or a comparison into
+   * a CMP, returning the comparison its flags are to be tested for
+   */
+  private BinOp translateOperation(BinaryOpNode node) {
+    // Literals of commutative operators go on the right as immediates, and
+    // the argument needing more registers is evaluated first, so that only
+    // one register is held while the other argument is evaluated. Arguments
+    // that can both fail keep their order, so the same error is raised.
+    ExprNode left = node.getLeft();
+    ExprNode right = node.getRight();
+    int outerPushes = stackCount;
+    boolean rightFirst = false;
+    if (!(left instanceof ImmediateReplacable)
+        && !(right instanceof ImmediateReplacable)) {
+      rightFirst = registerNeed(right) > registerNeed(left)
+          && (DeadCodeEliminator.cannotFail(left) || DeadCodeEliminator
+              .cannotFail(right));
+    } else if (!(right instanceof ImmediateReplacable)) {
+      rightFirst = node.isCommutative();
+    }
+    if (rightFirst && node.isCommutative()) {
+      node.swapOperands();
+      rightFirst = false;
+    }
+
+    // At most one argument is treated as an immediate, both are literals
+    // only when folding them would fail at runtime
 
     int imm = -1;
     int immVal = 0;
     boolean immIsChar = false;
-    if (node.getLeft() instanceof ImmediateReplacable) {
+    if (node.getLeft() instanceof ImmediateReplacable
+        && !(node.getRight() instanceof ImmediateReplacable)
+        && (node.getOp() != BinOp.MINUS || OperandTwo.isValidImmediate(
+            ((ImmediateReplacable) node.getLeft()).getIntValue()))) {
       imm = 0;
       immVal = ((ImmediateReplacable) node.getLeft()).getIntValue();
       immIsChar = (node.getLeft().getType().equals(WACCType.TYPE_CHAR));
     }
-    if (immVal > 255 || immVal <= -255 || imm == -1) {
+    if (rightFirst) {
+      node.getRight().translate(this);
+      incReturnReg();
+      node.getLeft().translate(this);
+      decReturnReg();
+    } else if (!isImmediate(immVal) || imm == -1) {
       node.getLeft().translate(this);
     }
 
@@ -460,7 +689,7 @@ public class Translator {
       immVal = ((ImmediateReplacable) node.getRight()).getIntValue();
       immIsChar = (node.getRight().getType().equals(WACCType.TYPE_CHAR));
     }
-    if (immVal > 255 || immVal <= -255 || imm <= 0) {
+    if (!rightFirst && (!isImmediate(immVal) || imm <= 0)) {
       incReturnReg();
       node.getRight().translate(this);
       decReturnReg();
@@ -470,23 +699,56 @@ public class Translator {
     Register op1Reg;
     Register op2Reg;
 
-    if (stackCount > 0) {
+    // Only the push made for this operator is popped, not an enclosing one
+    boolean popped = stackCount > outerPushes;
+    if (popped) {
       program.add(new ARMPopNode(Reg11));
       stackCount--;
+      stackOffset -= 4;
       dstReg = returnReg; // R10
       op1Reg = (Reg11);
       op2Reg = returnReg; // R10
+      if (imm == 0 && isImmediate(immVal)) {
+        op1Reg = returnReg;
+      }
     } else {
       dstReg = returnReg;
       op1Reg = returnReg;
 
-      if (imm < 0 || immVal > 255 || immVal <= -255)
+      if (imm < 0 || !isImmediate(immVal))
         op2Reg = returnReg.getNextReg();
+      else if (imm == 0)
+        op1Reg = op2Reg = returnReg.getNextReg();
       else
         op2Reg = returnReg;
     }
+    if (rightFirst) {
+      Register swapped = op1Reg;
+      op1Reg = op2Reg;
+      op2Reg = swapped;
+    }
 
-    if ((imm >= 0) && (immVal <= 255) && (immVal > -255)) {
+    // A known divisor needs no zero check, r0 and r1 are free as for a call
+    if ((node.getOp() == BinOp.DIVIDE || node.getOp() == BinOp.MODULUS)
+        && imm == 1 && !(node.getLeft() instanceof ImmediateReplacable)
+        && ConstantDivision.canDivideBy(immVal)) {
+      program.addAll(ConstantDivision.divide(node.getOp() == BinOp.MODULUS,
+          dstReg, op1Reg, immVal, new Register(SpecialReg.r0), new Register(
+              SpecialReg.r1)));
+      return null;
+    }
+
+    if (node.getOp() == BinOp.MULTIPLY && imm == 1
+        && !(node.getLeft() instanceof ImmediateReplacable)
+        && ConstantMultiplication.canMultiplyBy(immVal, true)) {
+      program.addAll(ConstantMultiplication.multiply(dstReg, op1Reg, immVal,
+          true, new Register(SpecialReg.r0)));
+      predefinedFunctionHandler
+          .addfunction(PredefinedFunction.P_THROW_OVERFLOW_ERROR_NE);
+      return null;
+    }
+
+    if ((imm >= 0) && isImmediate(immVal)) {
       /*
        * Immediate value handling
        */
@@ -510,82 +772,16 @@ public class Translator {
               SpecialReg.r0)), MovComparator.MOV));
           break;
         case EQUALS:
-          // As one argument is an immediate we know that op1Reg = op2Reg
-          program
-              .add(new ARMCmpNode(op1Reg, new OperandTwo(immVal, immIsChar)));
-          program.add(new ARMMovNode(dstReg, new OperandTwo(1, false),
-              MovComparator.MOVEQ));
-          program.add(new ARMMovNode(dstReg, new OperandTwo(0, false),
-              MovComparator.MOVNE));
-          break;
         case GEQ:
-          program
-              .add(new ARMCmpNode(op1Reg, new OperandTwo(immVal, immIsChar)));
-          if (imm == 0) {
-            program.add(new ARMMovNode(dstReg, new OperandTwo(1, false),
-                MovComparator.MOVLT));
-            program.add(new ARMMovNode(dstReg, new OperandTwo(0, false),
-                MovComparator.MOVGE));
-          } else {
-            program.add(new ARMMovNode(dstReg, new OperandTwo(1, false),
-                MovComparator.MOVGE));
-            program.add(new ARMMovNode(dstReg, new OperandTwo(0, false),
-                MovComparator.MOVLT));
-          }
-          break;
         case GREATER:
-          program
-              .add(new ARMCmpNode(op1Reg, new OperandTwo(immVal, immIsChar)));
-          if (imm == 0) {
-            program.add(new ARMMovNode(dstReg, new OperandTwo(1, false),
-                MovComparator.MOVLE));
-            program.add(new ARMMovNode(dstReg, new OperandTwo(0, false),
-                MovComparator.MOVGT));
-          } else {
-            program.add(new ARMMovNode(dstReg, new OperandTwo(1, false),
-                MovComparator.MOVGT));
-            program.add(new ARMMovNode(dstReg, new OperandTwo(0, false),
-                MovComparator.MOVLE));
-          }
-          break;
         case LEQ:
-          program
-              .add(new ARMCmpNode(op1Reg, new OperandTwo(immVal, immIsChar)));
-          if (imm == 0) {
-            program.add(new ARMMovNode(dstReg, new OperandTwo(1, false),
-                MovComparator.MOVGT));
-            program.add(new ARMMovNode(dstReg, new OperandTwo(0, false),
-                MovComparator.MOVLE));
-          } else {
-            program.add(new ARMMovNode(dstReg, new OperandTwo(1, false),
-                MovComparator.MOVLE));
-            program.add(new ARMMovNode(dstReg, new OperandTwo(0, false),
-                MovComparator.MOVGT));
-          }
-          break;
         case LESS:
+        case NOTEQUALS:
+          // As one argument is an immediate we know that op1Reg = op2Reg,
+          // when the literal is on the left the comparison is mirrored
           program
               .add(new ARMCmpNode(op1Reg, new OperandTwo(immVal, immIsChar)));
-          if (imm == 0) {
-            program.add(new ARMMovNode(dstReg, new OperandTwo(1, false),
-                MovComparator.MOVGE));
-            program.add(new ARMMovNode(dstReg, new OperandTwo(0, false),
-                MovComparator.MOVLT));
-          } else {
-            program.add(new ARMMovNode(dstReg, new OperandTwo(1, false),
-                MovComparator.MOVLT));
-            program.add(new ARMMovNode(dstReg, new OperandTwo(0, false),
-                MovComparator.MOVGE));
-          }
-          break;
-        case LOGICAL_AND:
-          program.add(new ARMLogicalNode(LogicalComparator.AND, dstReg, op1Reg,
-              new OperandTwo(immVal, immIsChar)));
-          break;
-        case LOGICAL_OR:
-          program.add(new ARMLogicalNode(LogicalComparator.ORR, dstReg, op1Reg,
-              new OperandTwo(immVal, immIsChar)));
-          break;
+          return (imm == 0) ? mirror(node.getOp()) : node.getOp();
         case MINUS:
           if (imm == 0) {
             program.add(new ARMSubNode(dstReg, op2Reg, new OperandTwo(immVal,
@@ -617,31 +813,16 @@ public class Translator {
               SpecialReg.r1)), MovComparator.MOV));
           break;
         case MULTIPLY:
-          // DOES STACK COUNT STUFF NEED TO
-          if (stackCount > 0) {
-            program.add(new ARMMulNode(MulComparator.SMULL, Reg10, Reg11,
-                Reg11, Reg10));
-            program.add(new ARMCmpNode(Reg11, new OperandTwo(Reg10,
-                ShiftType.ASR, 31)));
-          } else {
-            program.add(new ARMLdrNode(returnReg.getNextReg(), immVal,
-                LdrComparator.LDR));
-            program.add(new ARMMulNode(MulComparator.SMULL, returnReg,
-                returnReg.getNextReg(), returnReg, returnReg.getNextReg()));
-            program.add(new ARMCmpNode(returnReg.getNextReg(), new OperandTwo(
-                returnReg, ShiftType.ASR, 31)));
-          }
+          // The high word goes in the next register, r11 after r10
+          program.addAll(ConstantLoader.load(new Register(SpecialReg.r0),
+              immVal));
+          program.add(new ARMMulNode(MulComparator.SMULL, dstReg, dstReg
+              .getNextReg(), new Register(SpecialReg.r0), op1Reg));
+          program.add(new ARMCmpNode(dstReg.getNextReg(), new OperandTwo(
+              dstReg, ShiftType.ASR, 31)));
           predefinedFunctionHandler
               .addfunction(PredefinedFunction.P_THROW_OVERFLOW_ERROR_NE);
           break;
-        case NOTEQUALS:
-          program
-              .add(new ARMCmpNode(op1Reg, new OperandTwo(immVal, immIsChar)));
-          program.add(new ARMMovNode(dstReg, new OperandTwo(1, false),
-              MovComparator.MOVNE));
-          program.add(new ARMMovNode(dstReg, new OperandTwo(0, false),
-              MovComparator.MOVEQ));
-          break;
         case PLUS:
           if (imm == 0) {
             program.add(new ARMAddNode(dstReg, op2Reg, new OperandTwo(immVal,
@@ -657,7 +838,7 @@ public class Translator {
           break;
 
       }
-      return;
+      return null;
     }
 
     switch (node.getOp()) {
@@ -673,48 +854,13 @@ public class Translator {
             SpecialReg.r0)), MovComparator.MOV));
         break;
       case EQUALS:
-        program.add(new ARMCmpNode(op1Reg, new OperandTwo(op2Reg)));
-        program.add(new ARMMovNode(dstReg, new OperandTwo(1, false),
-            MovComparator.MOVEQ));
-        program.add(new ARMMovNode(dstReg, new OperandTwo(0, false),
-            MovComparator.MOVNE));
-        break;
       case GEQ:
-        program.add(new ARMCmpNode(op1Reg, new OperandTwo(op2Reg)));
-        program.add(new ARMMovNode(dstReg, new OperandTwo(1, false),
-            MovComparator.MOVGE));
-        program.add(new ARMMovNode(dstReg, new OperandTwo(0, false),
-            MovComparator.MOVLT));
-        break;
       case GREATER:
-        program.add(new ARMCmpNode(op1Reg, new OperandTwo(op2Reg)));
-        program.add(new ARMMovNode(dstReg, new OperandTwo(1, false),
-            MovComparator.MOVGT));
-        program.add(new ARMMovNode(dstReg, new OperandTwo(0, false),
-            MovComparator.MOVLE));
-        break;
       case LEQ:
-        program.add(new ARMCmpNode(op1Reg, new OperandTwo(op2Reg)));
-        program.add(new ARMMovNode(dstReg, new OperandTwo(1, false),
-            MovComparator.MOVLE));
-        program.add(new ARMMovNode(dstReg, new OperandTwo(0, false),
-            MovComparator.MOVGT));
-        break;
       case LESS:
+      case NOTEQUALS:
         program.add(new ARMCmpNode(op1Reg, new OperandTwo(op2Reg)));
-        program.add(new ARMMovNode(dstReg, new OperandTwo(1, false),
-            MovComparator.MOVLT));
-        program.add(new ARMMovNode(dstReg, new OperandTwo(0, false),
-            MovComparator.MOVGE));
-        break;
-      case LOGICAL_AND:
-        program.add(new ARMLogicalNode(LogicalComparator.AND, dstReg, op1Reg,
-            new OperandTwo(op2Reg)));
-        break;
-      case LOGICAL_OR:
-        program.add(new ARMLogicalNode(LogicalComparator.ORR, dstReg, op1Reg,
-            new OperandTwo(op2Reg)));
-        break;
+        return node.getOp();
       case MINUS:
         program.add(new ARMSubNode(dstReg, op1Reg, new OperandTwo(op2Reg),
             SubComparator.SUBS));
@@ -733,7 +879,7 @@ public class Translator {
             SpecialReg.r1)), MovComparator.MOV));
         break;
       case MULTIPLY:
-        if (stackCount > 0) {
+        if (popped) {
           program.add(new ARMMulNode(MulComparator.SMULL, Reg10, Reg11, Reg11,
               Reg10));
           program.add(new ARMCmpNode(Reg11, new OperandTwo(Reg10,
@@ -747,13 +893,6 @@ public class Translator {
         predefinedFunctionHandler
             .addfunction(PredefinedFunction.P_THROW_OVERFLOW_ERROR_NE);
         break;
-      case NOTEQUALS:
-        program.add(new ARMCmpNode(op1Reg, new OperandTwo(op2Reg)));
-        program.add(new ARMMovNode(dstReg, new OperandTwo(1, false),
-            MovComparator.MOVNE));
-        program.add(new ARMMovNode(dstReg, new OperandTwo(0, false),
-            MovComparator.MOVEQ));
-        break;
       case PLUS:
         program.add(new ARMAddNode(dstReg, op1Reg, new OperandTwo(op2Reg),
             AddComparator.ADDS));
@@ -761,6 +900,126 @@ public class Translator {
             .addfunction(PredefinedFunction.P_THROW_OVERFLOW_ERROR);
         break;
     }
+    return null;
+  }
+
+  private static BinOp mirror(BinOp op) {
+    switch (op) {
+      case GEQ:
+        return BinOp.LEQ;
+      case GREATER:
+        return BinOp.LESS;
+      case LEQ:
+        return BinOp.GEQ;
+      case LESS:
+        return BinOp.GREATER;
+      default:
+        return op;
+    }
+  }
+
+  private static BinOp negate(BinOp comparison) {
+    switch (comparison) {
+      case EQUALS:
+        return BinOp.NOTEQUALS;
+      case NOTEQUALS:
+        return BinOp.EQUALS;
+      case GEQ:
+        return BinOp.LESS;
+      case GREATER:
+        return BinOp.LEQ;
+      case LEQ:
+        return BinOp.GREATER;
+      default:
+        return BinOp.GEQ;
+    }
+  }
+
+  private static MovComparator movComparator(BinOp comparison) {
+    switch (comparison) {
+      case EQUALS:
+        return MovComparator.MOVEQ;
+      case NOTEQUALS:
+        return MovComparator.MOVNE;
+      case GEQ:
+        return MovComparator.MOVGE;
+      case GREATER:
+        return MovComparator.MOVGT;
+      case LEQ:
+        return MovComparator.MOVLE;
+      default:
+        return MovComparator.MOVLT;
+    }
+  }
+
+  private static BranchComparator branchComparator(BinOp comparison) {
+    switch (comparison) {
+      case EQUALS:
+        return BranchComparator.BEQ;
+      case NOTEQUALS:
+        return BranchComparator.BNE;
+      case GEQ:
+        return BranchComparator.BGE;
+      case GREATER:
+        return BranchComparator.BGT;
+      case LEQ:
+        return BranchComparator.BLE;
+      default:
+        return BranchComparator.BLT;
+    }
+  }
+
+  /*
+   * Registers needed to evaluate expr without pushing (Ershov number). A
+   * binary operator holds its first argument while evaluating the second,
+   * so it needs one more when both need the same, an immediate needs none.
+   */
+  private static int registerNeed(ExprNode expr) {
+    if (expr instanceof BinaryOpNode) {
+      BinaryOpNode node = (BinaryOpNode) expr;
+      int left = registerNeed(node.getLeft());
+      if (node.getOp() == BinOp.LOGICAL_AND
+          || node.getOp() == BinOp.LOGICAL_OR) {
+        return Math.max(left, registerNeed(node.getRight()));
+      }
+      if (node.getRight() instanceof ImmediateReplacable && isImmediate(
+          ((ImmediateReplacable) node.getRight()).getIntValue())) {
+        return left;
+      }
+      int right = registerNeed(node.getRight());
+      return (left == right) ? left + 1 : Math.max(left, right);
+    }
+    if (expr instanceof UnaryOpNode) {
+      return registerNeed(((UnaryOpNode) expr).getArg());
+    }
+    if (expr instanceof PairElemNode) {
+      return registerNeed(((PairElemNode) expr).getExpr());
+    }
+    if (expr instanceof ArrayElemNode) {
+      // The array pointer is held while each index is evaluated
+      ArrayElemNode node = (ArrayElemNode) expr;
+      int need = 1;
+      for (int i = 0; i < node.getIndexCount(); i++) {
+        need = Math.max(need, 1 + registerNeed(node.getIndex(i)));
+      }
+      return need;
+    }
+    return 1;
+  }
+
+  /*
+   * The right argument of && and || is only evaluated when the left one does
+   * not decide the result, otherwise the left value is kept in returnReg
+   */
+  private void translateShortCircuit(BinaryOpNode node) {
+    ARMLabel end = new ARMLabel(false);
+    node.getLeft().translate(this);
+    program.add(new ARMCmpNode(returnReg, new OperandTwo(0, false)));
+    program.add(new ARMBranchNode(end.getLabel(),
+        (node.getOp() == BinOp.LOGICAL_AND) ? BranchComparator.BEQ
+            : BranchComparator.BNE));
+    node.getRight().translate(this);
+    program.add(end);
   }
 
   public void translateBoolLiteralNode(BoolLiteralNode node) {
@@ -776,10 +1035,25 @@ public class Translator {
   // Needs to find offset from the Variable,
   // which gets it from the symbol table, and set lastIdentOffset once found
   public void translateIdentNode(IdentNode node) {
-    lastIdentOffset = currentScope.getOffset(node.getVariable());
+    Variable var = node.getVariable();
+    if (var.hasRegister()) {
+      lastIdentRegister = new Register(var.getRegister());
+      if (translatingPrintOrFree || !translatingAssignLhs
+          || translatingArrayElemIndex) {
+        program.add(new ARMMovNode(returnReg,
+            new OperandTwo(lastIdentRegister), MovComparator.MOV));
+      }
+      return;
+    }
+
+    lastIdentRegister = null;
     if (!currentFunction.isMain()
         && currentFunction.isParam(node.toString(), currentScope)) {
-      lastIdentOffset += 4;
+      // Placed by the calling convention above the frame
+      lastIdentOffset = currentFunction.getFrameSize()
+          + currentFunction.getParameterOffset(var) + stackOffset;
+    } else {
+      lastIdentOffset = var.getFrameOffset() + stackOffset;
     }
     LdrComparator comparator = (node.getSizeInBytes() != 1) ? LdrComparator.LDR
         : LdrComparator.LDRSB;
@@ -802,7 +1076,7 @@ public class Translator {
   }
 
   public void translateIntLiteralNode(IntLiteralNode node) {
-    program.add(new ARMLdrNode(returnReg, node.getValue(), LdrComparator.LDR));
+    program.addAll(ConstantLoader.load(returnReg, node.getValue()));
   }
 
   /*
@@ -814,8 +1088,7 @@ public class Translator {
     // 8bytes)
     // and put the address of this space into returnReg
 
-    program.add(new ARMLdrNode(new Register(SpecialReg.r0), 8,
-        LdrComparator.LDR));
+    program.addAll(ConstantLoader.load(new Register(SpecialReg.r0), 8));
 
     program.add(new ARMBranchNode("malloc", BranchComparator.BL));
     program.add(new ARMMovNode(returnReg, new OperandTwo(new Register(
@@ -828,8 +1101,8 @@ public class Translator {
     // bytes malloc'd above)
     int sizeElem1 = (node.getLeft().getSizeInBytes());
 
-    program.add(new ARMLdrNode(new Register(SpecialReg.r0), sizeElem1,
-        LdrComparator.LDR));
+    program.addAll(ConstantLoader.load(new Register(SpecialReg.r0),
+        sizeElem1));
 
     program.add(new ARMBranchNode("malloc", BranchComparator.BL));
     // Put first element of pair in this most recently malloc'd space
@@ -846,8 +1119,8 @@ public class Translator {
     decReturnReg();
     int sizeElem2 = (node.getRight().getSizeInBytes());
 
-    program.add(new ARMLdrNode(new Register(SpecialReg.r0), sizeElem2,
-        LdrComparator.LDR));
+    program.addAll(ConstantLoader.load(new Register(SpecialReg.r0),
+        sizeElem2));
 
     program.add(new ARMBranchNode("malloc", BranchComparator.BL));
     StrComparator comparator2 = chooseStrComparator(node.getRight());
@@ -865,8 +1138,13 @@ public class Translator {
     node.getExpr().translate(this);
     decReturnReg();
 
-    program.add(new ARMLdrNode(returnReg, new Register(SpecialReg.sp),
-        lastIdentOffset, LdrComparator.LDR));
+    if (lastIdentRegister != null) {
+      program.add(new ARMMovNode(returnReg, new OperandTwo(lastIdentRegister),
+          MovComparator.MOV));
+    } else {
+      program.add(new ARMLdrNode(returnReg, new Register(SpecialReg.sp),
+          lastIdentOffset, LdrComparator.LDR));
+    }
     program.add(new ARMMovNode(new Register(SpecialReg.r0), new OperandTwo(
         returnReg), MovComparator.MOV));
     predefinedFunctionHandler
@@ -890,8 +1168,11 @@ public class Translator {
         // This case is handled by previous logic
         break;
       case LEN:
-        program.add(new ARMLdrNode(returnReg, new Register(SpecialReg.sp),
-            lastIdentOffset, LdrComparator.LDR));
+        // A register variable has already been moved into returnReg
+        if (lastIdentRegister == null) {
+          program.add(new ARMLdrNode(returnReg, new Register(SpecialReg.sp),
+              lastIdentOffset, LdrComparator.LDR));
+        }
         program.add(new ARMLdrNode(returnReg, returnReg, 0, LdrComparator.LDR));
         break;
       case LOGICAL_NOT:
@@ -915,6 +1196,6 @@ public class Translator {
 
   // Null pointer is just 0
   public void translateNullNode(NullNode node) {
-    program.add(new ARMLdrNode(returnReg, 0, LdrComparator.LDR));
+    program.addAll(ConstantLoader.load(returnReg, 0));
   }
 }
@@ -0,0 +1,677 @@
+package smacc.arm.smartalloc;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+import java.util.TreeSet;
+
+import smacc.arm.ARMBranchNode;
+import smacc.arm.ARMBranchNode.BranchComparator;
+import smacc.arm.ARMFunctionReturn;
+import smacc.arm.ARMFunctionStart;
+import smacc.arm.ARMLabel;
+import smacc.arm.ARMLdrNode;
+import smacc.arm.ARMLdrNode.LdrComparator;
+import smacc.arm.ARMMovNode;
+import smacc.arm.ARMNode;
+import smacc.arm.ARMStrNode;
+import smacc.arm.ARMStrNode.StrComparator;
+import smacc.arm.Register;
+
+/*
+ * GraphColouringAllocator
+ * Allocates the virtual registers of a function body with a Chaitin/Briggs
+ * style interference graph colouring.
+ *
+ * Every def-use web of a virtual register becomes a node of the graph, while
+ * r0 to r3 are precoloured nodes. Webs interfere when one is defined while
+ * the other is live, except across a register copy, so copies whose webs do
+ * not interfere are coalesced and deleted. This removes the moves into and
+ * out of argument registers as well as the copies between temps.
+ *
+ * Webs are coloured with r4 to r11, the callee-saved registers that end up
+ * used are reported so the prologue can save them. When the optimistic
+ * colouring fails the webs left without a colour are spilled to stack slots
+ * from spillOffset upwards, and the function is coloured again.
+ */
+public class GraphColouringAllocator {
+
+  // r0 to r3 are graph nodes 0 to 3, webs are numbered after them
+  private static final int PRECOLOURED = 4;
+  private static final int FIRST_COLOUR = 4;
+  private static final int LAST_COLOUR = 11;
+
+  private static final Register REG_SP = new Register(Register.SpecialReg.sp);
+
+  private List<ARMNode> code;
+  private List<Integer> colours = new ArrayList<>();
+  private Set<Integer> usedColours = new TreeSet<>();
+
+  private int spillOffset;
+  private int spillSlotCount = 0;
+  // Registers only live between a spill slot and a single instruction
+  private Set<Integer> spillTemps = new HashSet<>();
+
+  private List<List<Integer>> successors;
+  private List<List<Integer>> predecessors;
+
+  // Graph node of each register read and written by each instruction
+  private List<Map<Integer, Integer>> useNodes;
+  private List<Map<Integer, Integer>> defNodes;
+  private int nodeCount;
+  private List<Integer> originalRegister;
+
+  // Instructions copying one graph node into another
+  private Set<Integer> copies;
+
+  private List<Set<Integer>> adjacent;
+  private int[] alias;
+  private int[] colourOf;
+  private List<Integer> spilled;
+
+  public GraphColouringAllocator(List<ARMNode> code, int spillOffset) {
+    this.code = code;
+    this.spillOffset = spillOffset;
+    for (int colour = FIRST_COLOUR; colour <= LAST_COLOUR; colour++) {
+      colours.add(colour);
+    }
+  }
+
+  public void allocate() {
+    while (true) {
+      buildFlowGraph();
+      buildWebs();
+      findCopies();
+      buildInterference();
+      coalesce();
+      if (select()) {
+        rewrite();
+        return;
+      }
+      spill();
+    }
+  }
+
+  // Callee-saved registers written by the allocated code
+  public List<Register> getSavedRegisters() {
+    List<Register> saved = new ArrayList<>();
+    for (int colour : usedColours) {
+      saved.add(new Register(colour));
+    }
+    return saved;
+  }
+
+  public int getSpillSlotCount() {
+    return spillSlotCount;
+  }
+
+  private static boolean isCandidate(int register) {
+    return register >= Register.FIRST_VIRTUAL;
+  }
+
+  // The prologue and epilogue only save and restore the caller's values
+  private static boolean isFrameNode(ARMNode node) {
+    return node instanceof ARMFunctionStart
+        || node instanceof ARMFunctionReturn;
+  }
+
+  private static List<Integer> registerNumbers(List<Register> registers) {
+    List<Integer> numbers = new ArrayList<>();
+    for (Register register : registers) {
+      numbers.add(register.getRegisterNumber());
+    }
+    return numbers;
+  }
+
+  private void buildFlowGraph() {
+    successors = new ArrayList<>();
+    predecessors = new ArrayList<>();
+    Map<String, Integer> labels = new HashMap<>();
+    for (int i = 0; i < code.size(); i++) {
+      successors.add(new ArrayList<Integer>());
+      predecessors.add(new ArrayList<Integer>());
+      if (code.get(i) instanceof ARMLabel) {
+        labels.put(((ARMLabel) code.get(i)).getLabel(), i);
+      }
+    }
+
+    for (int i = 0; i < code.size(); i++) {
+      ARMNode node = code.get(i);
+      boolean fallsThrough = !(node instanceof ARMFunctionReturn);
+      if (node instanceof ARMBranchNode && !((ARMBranchNode) node).isCall()) {
+        ARMBranchNode branch = (ARMBranchNode) node;
+        Integer target = labels.get(branch.getLabel());
+        if (target != null) {
+          successors.get(i).add(target);
+        }
+        fallsThrough = branch.getComparator() != BranchComparator.B;
+      }
+      if (fallsThrough && i + 1 < code.size()) {
+        successors.get(i).add(i + 1);
+      }
+    }
+
+    for (int i = 0; i < code.size(); i++) {
+      for (int successor : successors.get(i)) {
+        predecessors.get(successor).add(i);
+      }
+    }
+  }
+
+  /*
+   * Webs are found with reaching definitions, every definition reaching a
+   * use is joined into the same web. Each register also has a definition
+   * standing for an undefined value, used only where no definition reaches.
+   */
+  private void buildWebs() {
+    List<Integer> defRegister = new ArrayList<>();
+    Map<Integer, BitSet> defsOfRegister = new HashMap<>();
+    Map<Integer, Integer> undefined = new HashMap<>();
+    List<Map<Integer, Integer>> defIds = new ArrayList<>();
+
+    for (ARMNode node : code) {
+      List<Integer> registers = registerNumbers(node.getUsedRegisters());
+      registers.addAll(registerNumbers(node.getDefinedRegisters()));
+      for (int r : registers) {
+        if (isCandidate(r) && !undefined.containsKey(r)) {
+          defsOfRegister.put(r, new BitSet());
+          undefined.put(r, defRegister.size());
+          defRegister.add(r);
+        }
+      }
+    }
+    for (int i = 0; i < code.size(); i++) {
+      Map<Integer, Integer> ids = new HashMap<>();
+      if (!isFrameNode(code.get(i))) {
+        for (int r : registerNumbers(code.get(i).getDefinedRegisters())) {
+          if (isCandidate(r) && !ids.containsKey(r)) {
+            ids.put(r, defRegister.size());
+            defsOfRegister.get(r).set(defRegister.size());
+            defRegister.add(r);
+          }
+        }
+      }
+      defIds.add(ids);
+    }
+
+    List<BitSet> reachingIn = new ArrayList<>();
+    List<BitSet> reachingOut = new ArrayList<>();
+    for (int i = 0; i < code.size(); i++) {
+      reachingIn.add(new BitSet());
+      reachingOut.add(new BitSet());
+    }
+
+    LinkedList<Integer> worklist = new LinkedList<>();
+    BitSet queued = new BitSet();
+    for (int i = 0; i < code.size(); i++) {
+      worklist.add(i);
+    }
+    queued.set(0, code.size());
+    while (!worklist.isEmpty()) {
+      int i = worklist.removeFirst();
+      queued.clear(i);
+      BitSet in = new BitSet();
+      for (int predecessor : predecessors.get(i)) {
+        in.or(reachingOut.get(predecessor));
+      }
+      BitSet out = (BitSet) in.clone();
+      for (Map.Entry<Integer, Integer> def : defIds.get(i).entrySet()) {
+        if (!code.get(i).isConditional()) {
+          out.andNot(defsOfRegister.get(def.getKey()));
+        }
+        out.set(def.getValue());
+      }
+      reachingIn.set(i, in);
+      if (!out.equals(reachingOut.get(i))) {
+        reachingOut.set(i, out);
+        for (int successor : successors.get(i)) {
+          if (!queued.get(successor)) {
+            queued.set(successor);
+            worklist.add(successor);
+          }
+        }
+      }
+    }
+
+    int[] web = new int[defRegister.size()];
+    for (int d = 0; d < web.length; d++) {
+      web[d] = d;
+    }
+    List<Map<Integer, Integer>> useDefs = new ArrayList<>();
+    for (int i = 0; i < code.size(); i++) {
+      ARMNode node = code.get(i);
+      Map<Integer, Integer> uses = new HashMap<>();
+      if (!isFrameNode(node)) {
+        for (int r : registerNumbers(node.getUsedRegisters())) {
+          if (!isCandidate(r) || uses.containsKey(r)) {
+            continue;
+          }
+          BitSet reaching = (BitSet) reachingIn.get(i).clone();
+          reaching.and(defsOfRegister.get(r));
+          int first = reaching.isEmpty() ? undefined.get(r) : reaching
+              .nextSetBit(0);
+          for (int d = reaching.nextSetBit(0); d >= 0; d = reaching
+              .nextSetBit(d + 1)) {
+            union(web, first, d);
+          }
+          // A conditional write keeps the old value around
+          Integer def = defIds.get(i).get(r);
+          if (def != null && node.isConditional()) {
+            union(web, first, def);
+          }
+          uses.put(r, first);
+        }
+      }
+      useDefs.add(uses);
+    }
+
+    nodeCount = PRECOLOURED;
+    originalRegister = new ArrayList<>();
+    for (int r = 0; r < PRECOLOURED; r++) {
+      originalRegister.add(r);
+    }
+    useNodes = new ArrayList<>();
+    defNodes = new ArrayList<>();
+    Map<Integer, Integer> webNodes = new HashMap<>();
+    for (int i = 0; i < code.size(); i++) {
+      Map<Integer, Integer> uses = new HashMap<>();
+      for (Map.Entry<Integer, Integer> use : useDefs.get(i).entrySet()) {
+        uses.put(use.getKey(), webNode(webNodes, web, use.getValue(),
+            defRegister));
+      }
+      Map<Integer, Integer> defs = new HashMap<>();
+      for (Map.Entry<Integer, Integer> def : defIds.get(i).entrySet()) {
+        defs.put(def.getKey(), webNode(webNodes, web, def.getValue(),
+            defRegister));
+      }
+      // r0 to r3 are graph nodes of their own
+      ARMNode node = code.get(i);
+      for (int r : registerNumbers(node.getUsedRegisters())) {
+        if (r < PRECOLOURED) {
+          uses.put(r, r);
+        }
+      }
+      for (int r : registerNumbers(node.getDefinedRegisters())) {
+        if (r < PRECOLOURED) {
+          defs.put(r, r);
+        }
+      }
+      useNodes.add(uses);
+      defNodes.add(defs);
+    }
+  }
+
+  private int webNode(Map<Integer, Integer> webNodes, int[] web, int def,
+      List<Integer> defRegister) {
+    int root = find(web, def);
+    if (!webNodes.containsKey(root)) {
+      webNodes.put(root, nodeCount++);
+      originalRegister.add(defRegister.get(root));
+    }
+    return webNodes.get(root);
+  }
+
+  private static int find(int[] parent, int x) {
+    while (parent[x] != x) {
+      parent[x] = parent[parent[x]];
+      x = parent[x];
+    }
+    return x;
+  }
+
+  private static void union(int[] parent, int a, int b) {
+    parent[find(parent, a)] = find(parent, b);
+  }
+
+  private boolean isCopy(int i) {
+    ARMNode node = code.get(i);
+    return node instanceof ARMMovNode && ((ARMMovNode) node).isRegisterCopy();
+  }
+
+  // Copies between sp and the like are not part of the graph
+  private void findCopies() {
+    copies = new LinkedHashSet<>();
+    for (int i = 0; i < code.size(); i++) {
+      if (isCopy(i) && !useNodes.get(i).isEmpty()
+          && !defNodes.get(i).isEmpty()) {
+        copies.add(i);
+      }
+    }
+  }
+
+  // Graph node read by a copy
+  private int copySource(int i) {
+    return useNodes.get(i).values().iterator().next();
+  }
+
+  private int copyDestination(int i) {
+    return defNodes.get(i).values().iterator().next();
+  }
+
+  private void buildInterference() {
+    adjacent = new ArrayList<>();
+    for (int n = 0; n < nodeCount; n++) {
+      adjacent.add(new HashSet<Integer>());
+    }
+
+    List<BitSet> liveOut = new ArrayList<>();
+    for (int i = 0; i < code.size(); i++) {
+      liveOut.add(new BitSet());
+    }
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int i = code.size() - 1; i >= 0; i--) {
+        BitSet out = new BitSet();
+        for (int successor : successors.get(i)) {
+          out.or(liveIn(successor, liveOut.get(successor)));
+        }
+        if (!out.equals(liveOut.get(i))) {
+          liveOut.set(i, out);
+          changed = true;
+        }
+      }
+    }
+
+    for (int i = 0; i < code.size(); i++) {
+      BitSet live = liveOut.get(i);
+      boolean copy = copies.contains(i);
+      for (int def : defNodes.get(i).values()) {
+        for (int l = live.nextSetBit(0); l >= 0; l = live.nextSetBit(l + 1)) {
+          if (!(copy && l == copySource(i))) {
+            addEdge(def, l);
+          }
+        }
+        for (int other : defNodes.get(i).values()) {
+          addEdge(def, other);
+        }
+      }
+    }
+  }
+
+  private BitSet liveIn(int i, BitSet out) {
+    BitSet in = (BitSet) out.clone();
+    if (!code.get(i).isConditional()) {
+      for (int def : defNodes.get(i).values()) {
+        in.clear(def);
+      }
+    }
+    for (int use : useNodes.get(i).values()) {
+      in.set(use);
+    }
+    return in;
+  }
+
+  private void addEdge(int a, int b) {
+    if (a == b || (a < PRECOLOURED && b < PRECOLOURED)) {
+      return;
+    }
+    adjacent.get(a).add(b);
+    adjacent.get(b).add(a);
+  }
+
+  // Number of neighbours competing for the same colours
+  private int degree(int node) {
+    int degree = 0;
+    for (int neighbour : adjacent.get(node)) {
+      if (neighbour >= PRECOLOURED) {
+        degree++;
+      }
+    }
+    return degree;
+  }
+
+  private int alias(int node) {
+    return find(alias, node);
+  }
+
+  private boolean isSpillTemp(int node) {
+    return spillTemps.contains(originalRegister.get(node));
+  }
+
+  /*
+   * Copies are coalesced when their webs do not interfere. Joining two webs
+   * must pass the Briggs test, so a colourable graph stays colourable. A web
+   * joined to one of r0 to r3 leaves the graph altogether, which can only
+   * make it easier to colour. Spill temps are kept short by never joining
+   * them to another web.
+   */
+  private void coalesce() {
+    alias = new int[nodeCount];
+    for (int n = 0; n < nodeCount; n++) {
+      alias[n] = n;
+    }
+
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int i : copies) {
+        int a = alias(copyDestination(i));
+        int b = alias(copySource(i));
+        if (a == b || adjacent.get(a).contains(b)
+            || (a < PRECOLOURED && b < PRECOLOURED)) {
+          continue;
+        }
+        if (a < PRECOLOURED) {
+          merge(b, a);
+        } else if (b < PRECOLOURED) {
+          merge(a, b);
+        } else if (!isSpillTemp(a) && !isSpillTemp(b) && briggs(a, b)) {
+          merge(a, b);
+        } else {
+          continue;
+        }
+        changed = true;
+      }
+    }
+  }
+
+  private boolean briggs(int a, int b) {
+    Set<Integer> neighbours = new HashSet<>(adjacent.get(a));
+    neighbours.addAll(adjacent.get(b));
+    int significant = 0;
+    for (int neighbour : neighbours) {
+      if (neighbour < PRECOLOURED) {
+        continue;
+      }
+      int degree = degree(neighbour);
+      if (adjacent.get(neighbour).contains(a)
+          && adjacent.get(neighbour).contains(b)) {
+        degree--;
+      }
+      if (degree >= colours.size()) {
+        significant++;
+      }
+    }
+    return significant < colours.size();
+  }
+
+  private void merge(int from, int into) {
+    alias[from] = into;
+    for (int neighbour : adjacent.get(from)) {
+      adjacent.get(neighbour).remove(from);
+      addEdge(into, neighbour);
+    }
+    adjacent.get(from).clear();
+  }
+
+  /*
+   * Simplify pushes nodes of insignificant degree first and otherwise the
+   * most constrained node, optimistically hoping it still finds a colour.
+   * Select prefers the colour of a copy partner, then the lowest colour
+   * free, and nodes left without a colour are spilled.
+   */
+  private boolean select() {
+    Set<Integer> remaining = new HashSet<>();
+    for (int n = PRECOLOURED; n < nodeCount; n++) {
+      if (alias(n) == n) {
+        remaining.add(n);
+      }
+    }
+    Map<Integer, Integer> degrees = new HashMap<>();
+    for (int n : remaining) {
+      degrees.put(n, degree(n));
+    }
+
+    Stack<Integer> stack = new Stack<>();
+    while (!remaining.isEmpty()) {
+      int chosen = -1;
+      for (int n : remaining) {
+        if (degrees.get(n) < colours.size()) {
+          chosen = n;
+          break;
+        }
+        if (chosen == -1 || degrees.get(n) > degrees.get(chosen)) {
+          chosen = n;
+        }
+      }
+      remaining.remove(chosen);
+      stack.push(chosen);
+      for (int neighbour : adjacent.get(chosen)) {
+        if (remaining.contains(neighbour)) {
+          degrees.put(neighbour, degrees.get(neighbour) - 1);
+        }
+      }
+    }
+
+    colourOf = new int[nodeCount];
+    for (int n = 0; n < nodeCount; n++) {
+      colourOf[n] = (n < PRECOLOURED) ? n : -1;
+    }
+    spilled = new ArrayList<>();
+    while (!stack.isEmpty()) {
+      int n = stack.pop();
+      Set<Integer> taken = new HashSet<>();
+      for (int neighbour : adjacent.get(n)) {
+        taken.add(colourOf[neighbour]);
+      }
+
+      List<Integer> preferred = new ArrayList<>();
+      for (int i : copies) {
+        int a = alias(copyDestination(i));
+        int b = alias(copySource(i));
+        if (a == n && colourOf[b] >= 0) {
+          preferred.add(colourOf[b]);
+        } else if (b == n && colourOf[a] >= 0) {
+          preferred.add(colourOf[a]);
+        }
+      }
+      preferred.addAll(colours);
+
+      for (int colour : preferred) {
+        if (colours.contains(colour) && !taken.contains(colour)) {
+          colourOf[n] = colour;
+          break;
+        }
+      }
+      if (colourOf[n] < 0) {
+        spilled.add(n);
+      }
+    }
+    return spilled.isEmpty();
+  }
+
+  /*
+   * Each spilled web gets a stack slot. Every instruction touching it reads
+   * the slot into a new temp beforehand and writes it back afterwards, with
+   * the slot offset corrected for arguments pushed before a call.
+   */
+  private void spill() {
+    Map<Integer, Integer> slots = new HashMap<>();
+    for (int n : spilled) {
+      slots.put(n, spillOffset + 4 * spillSlotCount++);
+    }
+    int nextRegister = Register.FIRST_VIRTUAL;
+    for (int r : originalRegister) {
+      nextRegister = Math.max(nextRegister, r + 1);
+    }
+
+    List<ARMNode> rewritten = new ArrayList<>();
+    int displacement = 0;
+    for (int i = 0; i < code.size(); i++) {
+      ARMNode node = code.get(i);
+      if (node instanceof ARMLabel) {
+        displacement = 0;
+      }
+      Map<Integer, Register> temps = new HashMap<>();
+      Map<Register, Register> uses = new HashMap<>();
+      Map<Register, Register> defs = new HashMap<>();
+      for (Map.Entry<Integer, Integer> use : useNodes.get(i).entrySet()) {
+        int n = alias(use.getValue());
+        if (isCandidate(use.getKey()) && slots.containsKey(n)) {
+          Register temp = new Register(nextRegister++);
+          spillTemps.add(temp.getRegisterNumber());
+          temps.put(n, temp);
+          uses.put(new Register(use.getKey()), temp);
+          rewritten.add(new ARMLdrNode(temp, REG_SP, slots.get(n)
+              + displacement, LdrComparator.LDR));
+        }
+      }
+      List<Register> stored = new ArrayList<>();
+      List<Integer> storedSlots = new ArrayList<>();
+      for (Map.Entry<Integer, Integer> def : defNodes.get(i).entrySet()) {
+        int n = alias(def.getValue());
+        if (isCandidate(def.getKey()) && slots.containsKey(n)) {
+          Register temp = temps.get(n);
+          if (temp == null) {
+            temp = new Register(nextRegister++);
+            spillTemps.add(temp.getRegisterNumber());
+          }
+          defs.put(new Register(def.getKey()), temp);
+          stored.add(temp);
+          storedSlots.add(slots.get(n));
+        }
+      }
+      node.replaceRegisters(uses, defs);
+      rewritten.add(node);
+      displacement += node.getStackAdjustment();
+      for (int s = 0; s < stored.size(); s++) {
+        rewritten.add(new ARMStrNode(stored.get(s), REG_SP, storedSlots.get(s)
+            + displacement, false, StrComparator.STR));
+      }
+    }
+    code.clear();
+    code.addAll(rewritten);
+  }
+
+  private void rewrite() {
+    List<ARMNode> rewritten = new ArrayList<>();
+    for (int i = 0; i < code.size(); i++) {
+      ARMNode node = code.get(i);
+      if (!isFrameNode(node)) {
+        node.replaceRegisters(renames(useNodes.get(i)),
+            renames(defNodes.get(i)));
+      }
+      // Coalesced copies move a register into itself
+      if (copies.contains(i)
+          && node.getUsedRegisters().get(0)
+              .equals(node.getDefinedRegisters().get(0))) {
+        continue;
+      }
+      rewritten.add(node);
+    }
+    code.clear();
+    code.addAll(rewritten);
+  }
+
+  private Map<Register, Register> renames(Map<Integer, Integer> nodes) {
+    Map<Register, Register> renames = new HashMap<>();
+    for (Map.Entry<Integer, Integer> entry : nodes.entrySet()) {
+      if (isCandidate(entry.getKey())) {
+        int colour = colourOf[alias(entry.getValue())];
+        if (colour >= FIRST_COLOUR) {
+          usedColours.add(colour);
+        }
+        renames.put(new Register(entry.getKey()), new Register(colour));
+      }
+    }
+    return renames;
+  }
+}
@@ -0,0 +1,101 @@
+package smacc.ast;
+
+import java.util.List;
+import java.util.ListIterator;
+
+import smacc.Function;
+import smacc.ast.expr.BinaryOpNode;
+import smacc.ast.expr.BoolLiteralNode;
+import smacc.ast.expr.CharLiteralNode;
+import smacc.ast.expr.ExprNode;
+import smacc.ast.expr.ImmediateReplacable;
+import smacc.ast.expr.IntLiteralNode;
+import smacc.ast.expr.UnaryOpNode;
+
+/*
+ * ConstantFolder
+ * Collapses operators whose arguments are all literals into a single
+ * literal, working bottom up so whole constant subtrees are folded.
+ *
+ * An operation that would overflow, divide by zero or give chr a value that
+ * is not a character is left in the tree, so that it still fails at runtime
+ * as WACC requires.
+ */
+public class ConstantFolder {
+
+  public void fold(Function function) {
+    function.getBody().fold(this);
+  }
+
+  // Folds each expression of the list in place
+  public void foldAll(List<ExprNode> exprs) {
+    ListIterator<ExprNode> iterator = exprs.listIterator();
+    while (iterator.hasNext()) {
+      iterator.set(iterator.next().fold(this));
+    }
+  }
+
+  public ExprNode foldBinaryOpNode(BinaryOpNode node) {
+    if (!(node.getLeft() instanceof ImmediateReplacable)
+        || !(node.getRight() instanceof ImmediateReplacable)) {
+      return node;
+    }
+    int left = ((ImmediateReplacable) node.getLeft()).getIntValue();
+    int right = ((ImmediateReplacable) node.getRight()).getIntValue();
+
+    try {
+      switch (node.getOp()) {
+        case PLUS:
+          return new IntLiteralNode(Math.addExact(left, right));
+        case MINUS:
+          return new IntLiteralNode(Math.subtractExact(left, right));
+        case MULTIPLY:
+          return new IntLiteralNode(Math.multiplyExact(left, right));
+        case DIVIDE:
+          return (right == 0) ? node : new IntLiteralNode(left / right);
+        case MODULUS:
+          return (right == 0) ? node : new IntLiteralNode(left % right);
+        case GREATER:
+          return new BoolLiteralNode(left > right);
+        case GEQ:
+          return new BoolLiteralNode(left >= right);
+        case LESS:
+          return new BoolLiteralNode(left < right);
+        case LEQ:
+          return new BoolLiteralNode(left <= right);
+        case EQUALS:
+          return new BoolLiteralNode(left == right);
+        case NOTEQUALS:
+          return new BoolLiteralNode(left != right);
+        case LOGICAL_AND:
+          return new BoolLiteralNode(left == 1 && right == 1);
+        case LOGICAL_OR:
+          return new BoolLiteralNode(left == 1 || right == 1);
+      }
+    } catch (ArithmeticException e) {
+      // Overflows are left to p_throw_overflow_error
+    }
+    return node;
+  }
+
+  public ExprNode foldUnaryOpNode(UnaryOpNode node) {
+    if (!(node.getArg() instanceof ImmediateReplacable)) {
+      return node;
+    }
+    int arg = ((ImmediateReplacable) node.getArg()).getIntValue();
+
+    switch (node.getOp()) {
+      case LOGICAL_NOT:
+        return new BoolLiteralNode(arg != 1);
+      case NEGATION:
+        return (arg == Integer.MIN_VALUE) ? node : new IntLiteralNode(-arg);
+      case ORD:
+        return new IntLiteralNode(arg);
+      case CHR:
+        return (arg < 0 || arg > 127) ? node : new CharLiteralNode((char) arg,
+            node.getType());
+      default:
+        return node;
+    }
+  }
+}
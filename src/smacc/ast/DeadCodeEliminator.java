@@ -0,0 +1,258 @@
+package smacc.ast;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import smacc.Function;
+import smacc.Variable;
+import smacc.ast.expr.ArrayElemNode;
+import smacc.ast.expr.ArrayLiteralNode;
+import smacc.ast.expr.BinaryOpNode;
+import smacc.ast.expr.BoolLiteralNode;
+import smacc.ast.expr.CallNode;
+import smacc.ast.expr.CharLiteralNode;
+import smacc.ast.expr.ExprNode;
+import smacc.ast.expr.IdentNode;
+import smacc.ast.expr.IntLiteralNode;
+import smacc.ast.expr.NewPairNode;
+import smacc.ast.expr.NullNode;
+import smacc.ast.expr.PairElemNode;
+import smacc.ast.expr.UnaryOpNode;
+import smacc.ast.stat.AssignmentNode;
+import smacc.ast.stat.ExitNode;
+import smacc.ast.stat.FreeNode;
+import smacc.ast.stat.IfNode;
+import smacc.ast.stat.PrintNode;
+import smacc.ast.stat.ReadNode;
+import smacc.ast.stat.ReturnNode;
+import smacc.ast.stat.ScopeNode;
+import smacc.ast.stat.SequenceNode;
+import smacc.ast.stat.SkipNode;
+import smacc.ast.stat.StatNode;
+import smacc.ast.stat.WhileNode;
+
+/*
+ * DeadCodeEliminator
+ * Removes statements that are never executed and assignments to locals
+ * whose value is never read.
+ *
+ * An if on a literal is replaced by the arm it takes, a while on false by
+ * skip, and statements following a return, an exit or a "while true" (which
+ * WACC can only leave by returning) are dropped from their sequence.
+ *
+ * The variables live after each statement are then found by walking the body
+ * backwards, repeating the walk of a loop body until its live set settles.
+ * An assignment to a variable that is not live is removed, as long as its
+ * right hand side cannot fail or call, since a runtime error must still be
+ * raised.
+ */
+public class DeadCodeEliminator {
+
+  // Dead stores are only removed once the live sets of every loop settle
+  private boolean removing;
+
+  public void eliminate(Function function) {
+    StatNode body = removeUnreachable(function.getBody());
+    removing = true;
+    removeDeadStores(body, new HashSet<Variable>());
+  }
+
+  private StatNode removeUnreachable(StatNode stat) {
+    if (stat instanceof ScopeNode) {
+      ScopeNode node = (ScopeNode) stat;
+      node.setStat(removeUnreachable(node.getStat()));
+    } else if (stat instanceof SequenceNode) {
+      SequenceNode node = (SequenceNode) stat;
+      for (int i = 0; i < node.getStatCount(); i++) {
+        node.setStat(i, removeUnreachable(node.getStat(i)));
+        if (neverFinishes(node.getStat(i))) {
+          while (node.getStatCount() > i + 1) {
+            node.removeStat(i + 1);
+          }
+        }
+      }
+    } else if (stat instanceof IfNode) {
+      IfNode node = (IfNode) stat;
+      if (node.getConditional() instanceof BoolLiteralNode) {
+        return removeUnreachable(((BoolLiteralNode) node.getConditional())
+            .getValue() ? node.getTrueBody() : node.getFalseBody());
+      }
+      return new IfNode(node.getConditional(), removeUnreachable(node
+          .getTrueBody()), removeUnreachable(node.getFalseBody()));
+    } else if (stat instanceof WhileNode) {
+      WhileNode node = (WhileNode) stat;
+      if (isLiteral(node.getConditional(), false)) {
+        return new SkipNode();
+      }
+      return new WhileNode(node.getConditional(), removeUnreachable(node
+          .getBody()));
+    }
+    return stat;
+  }
+
+  // Control never reaches the statement after stat
+  private static boolean neverFinishes(StatNode stat) {
+    if (stat instanceof ReturnNode || stat instanceof ExitNode) {
+      return true;
+    } else if (stat instanceof ScopeNode) {
+      return neverFinishes(((ScopeNode) stat).getStat());
+    } else if (stat instanceof SequenceNode) {
+      SequenceNode sequence = (SequenceNode) stat;
+      return neverFinishes(sequence.getStat(sequence.getStatCount() - 1));
+    } else if (stat instanceof IfNode) {
+      return neverFinishes(((IfNode) stat).getTrueBody())
+          && neverFinishes(((IfNode) stat).getFalseBody());
+    } else if (stat instanceof WhileNode) {
+      return isLiteral(((WhileNode) stat).getConditional(), true);
+    }
+    return false;
+  }
+
+  private static boolean isLiteral(ExprNode expr, boolean value) {
+    return expr instanceof BoolLiteralNode
+        && ((BoolLiteralNode) expr).getValue() == value;
+  }
+
+  // Turns the variables live after stat into those live before it
+  private StatNode removeDeadStores(StatNode stat, Set<Variable> live) {
+    if (stat instanceof ScopeNode) {
+      ScopeNode node = (ScopeNode) stat;
+      node.setStat(removeDeadStores(node.getStat(), live));
+    } else if (stat instanceof SequenceNode) {
+      SequenceNode node = (SequenceNode) stat;
+      for (int i = node.getStatCount() - 1; i >= 0; i--) {
+        StatNode kept = removeDeadStores(node.getStat(i), live);
+        if (kept instanceof SkipNode && node.getStatCount() > 1) {
+          node.removeStat(i);
+        } else {
+          node.setStat(i, kept);
+        }
+      }
+    } else if (stat instanceof IfNode) {
+      IfNode node = (IfNode) stat;
+      Set<Variable> falseLive = new HashSet<>(live);
+      removeDeadStores(node.getTrueBody(), live);
+      removeDeadStores(node.getFalseBody(), falseLive);
+      live.addAll(falseLive);
+      addUses(node.getConditional(), live);
+    } else if (stat instanceof WhileNode) {
+      // Live at the test is live after the body, which feeds back to itself
+      WhileNode node = (WhileNode) stat;
+      boolean outerRemoving = removing;
+      removing = false;
+      int size;
+      do {
+        size = live.size();
+        addUses(node.getConditional(), live);
+        Set<Variable> bodyLive = new HashSet<>(live);
+        removeDeadStores(node.getBody(), bodyLive);
+        live.addAll(bodyLive);
+      } while (live.size() != size);
+      removing = outerRemoving;
+      removeDeadStores(node.getBody(), new HashSet<>(live));
+    } else if (stat instanceof AssignmentNode) {
+      return removeDeadStore((AssignmentNode) stat, live);
+    } else if (stat instanceof ReturnNode) {
+      live.clear();
+      addUses(((ReturnNode) stat).getExpr(), live);
+    } else if (stat instanceof ExitNode) {
+      live.clear();
+      addUses(((ExitNode) stat).getExpr(), live);
+    } else if (stat instanceof ReadNode) {
+      // A failed read leaves the old value, so it is read as well
+      addUses(((ReadNode) stat).getExpr(), live);
+    } else if (stat instanceof PrintNode) {
+      addUses(((PrintNode) stat).getExpr(), live);
+    } else if (stat instanceof FreeNode) {
+      addUses(((FreeNode) stat).getExpr(), live);
+    }
+    return stat;
+  }
+
+  private StatNode removeDeadStore(AssignmentNode node, Set<Variable> live) {
+    if (!(node.getLHS() instanceof IdentNode)) {
+      // Stores to the heap may be read through another reference
+      addUses(node.getLHS(), live);
+      addUses(node.getRHS(), live);
+      return node;
+    }
+    Variable var = ((IdentNode) node.getLHS()).getVariable();
+    if (removing && !live.contains(var) && cannotFail(node.getRHS())) {
+      return new SkipNode();
+    }
+    live.remove(var);
+    addUses(node.getRHS(), live);
+    return node;
+  }
+
+  private static void addUses(ExprNode expr, Set<Variable> live) {
+    if (expr instanceof IdentNode) {
+      live.add(((IdentNode) expr).getVariable());
+    } else if (expr instanceof ArrayElemNode) {
+      ArrayElemNode node = (ArrayElemNode) expr;
+      addUses(node.getIdent(), live);
+      for (int i = 0; i < node.getIndexCount(); i++) {
+        addUses(node.getIndex(i), live);
+      }
+    } else if (expr instanceof ArrayLiteralNode) {
+      ArrayLiteralNode node = (ArrayLiteralNode) expr;
+      for (int i = 0; i < node.getLength(); i++) {
+        addUses(node.getElement(i), live);
+      }
+    } else if (expr instanceof BinaryOpNode) {
+      addUses(((BinaryOpNode) expr).getLeft(), live);
+      addUses(((BinaryOpNode) expr).getRight(), live);
+    } else if (expr instanceof UnaryOpNode) {
+      addUses(((UnaryOpNode) expr).getArg(), live);
+    } else if (expr instanceof NewPairNode) {
+      addUses(((NewPairNode) expr).getLeft(), live);
+      addUses(((NewPairNode) expr).getRight(), live);
+    } else if (expr instanceof PairElemNode) {
+      addUses(((PairElemNode) expr).getExpr(), live);
+    } else if (expr instanceof CallNode) {
+      CallNode node = (CallNode) expr;
+      for (int i = 0; i < node.getArgCount(); i++) {
+        addUses(node.getArg(i), live);
+      }
+    }
+  }
+
+  // Evaluating expr makes no call and raises no runtime error
+  public static boolean cannotFail(ExprNode expr) {
+    if (expr instanceof IdentNode || expr instanceof IntLiteralNode
+        || expr instanceof BoolLiteralNode || expr instanceof CharLiteralNode
+        || expr instanceof NullNode) {
+      return true;
+    } else if (expr instanceof ArrayLiteralNode) {
+      ArrayLiteralNode node = (ArrayLiteralNode) expr;
+      for (int i = 0; i < node.getLength(); i++) {
+        if (!cannotFail(node.getElement(i))) {
+          return false;
+        }
+      }
+      return true;
+    } else if (expr instanceof NewPairNode) {
+      return cannotFail(((NewPairNode) expr).getLeft())
+          && cannotFail(((NewPairNode) expr).getRight());
+    } else if (expr instanceof UnaryOpNode) {
+      // Negation can overflow, chr is not range checked
+      UnaryOpNode node = (UnaryOpNode) expr;
+      return node.getOp() != ExprNode.UnOp.NEGATION
+          && cannotFail(node.getArg());
+    } else if (expr instanceof BinaryOpNode) {
+      // Only arithmetic can overflow or divide by zero
+      BinaryOpNode node = (BinaryOpNode) expr;
+      switch (node.getOp()) {
+        case MULTIPLY:
+        case DIVIDE:
+        case MODULUS:
+        case PLUS:
+        case MINUS:
+          return false;
+        default:
+          return cannotFail(node.getLeft()) && cannotFail(node.getRight());
+      }
+    }
+    return false;
+  }
+}
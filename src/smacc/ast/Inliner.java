@@ -0,0 +1,343 @@
+package smacc.ast;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import smacc.Function;
+import smacc.SymbolTable;
+import smacc.Variable;
+import smacc.ast.expr.ArrayElemNode;
+import smacc.ast.expr.ArrayLiteralNode;
+import smacc.ast.expr.BinaryOpNode;
+import smacc.ast.expr.BoolLiteralNode;
+import smacc.ast.expr.CallNode;
+import smacc.ast.expr.CharLiteralNode;
+import smacc.ast.expr.ExprNode;
+import smacc.ast.expr.IdentNode;
+import smacc.ast.expr.IntLiteralNode;
+import smacc.ast.expr.NewPairNode;
+import smacc.ast.expr.PairElemNode;
+import smacc.ast.expr.UnaryOpNode;
+import smacc.ast.stat.AssignmentNode;
+import smacc.ast.stat.ExitNode;
+import smacc.ast.stat.FreeNode;
+import smacc.ast.stat.IfNode;
+import smacc.ast.stat.PrintNode;
+import smacc.ast.stat.ReadNode;
+import smacc.ast.stat.ReturnNode;
+import smacc.ast.stat.ScopeNode;
+import smacc.ast.stat.SequenceNode;
+import smacc.ast.stat.StatNode;
+import smacc.ast.stat.WhileNode;
+import smacc.exceptions.IdentifierDeclaredPreviouslyInCurrentScopeException;
+
+/*
+ * Inliner
+ * Replaces "x = call f(...)" by a copy of the body of f when f is small
+ * enough, saving the pushed arguments, the branch and the frame of the call.
+ *
+ * Only functions that make no calls themselves and only return from their
+ * tail are inlined. The parameters become locals of a new scope that are
+ * assigned the arguments, and each return becomes an assignment to whatever
+ * the call was assigned to. Every scope of the copy gets a fresh SymbolTable
+ * and fresh Variables, so the copy shares nothing with the callee.
+ *
+ * Calls in while loops are the ones made most often, so the size allowed
+ * for a callee doubles with each enclosing loop.
+ */
+public class Inliner {
+
+  // Largest callee, in AST nodes, inlined outside of any loop
+  public static final int DEFAULT_THRESHOLD = 32;
+
+  private static final int LOOP_WEIGHT = 2;
+  private static final int MAX_LOOP_WEIGHT_DEPTH = 3;
+
+  private static final int NOT_INLINABLE = -1;
+
+  private final int threshold;
+  private Map<Function, Integer> sizes = new HashMap<>();
+
+  // Where the statement being inlined into is
+  private SymbolTable currentScope;
+  private int loopDepth = 0;
+
+  // State of the copy being made
+  private Map<Variable, IdentNode> renames = new HashMap<>();
+  private ExprNode returnTarget;
+  private int inlineCount = 0;
+
+  public Inliner(int threshold) {
+    this.threshold = threshold;
+  }
+
+  public void inline(Function function) {
+    function.getBody().inline(this);
+  }
+
+  public void inWhileLoop() {
+    loopDepth++;
+  }
+
+  public void outWhileLoop() {
+    loopDepth--;
+  }
+
+  public StatNode inlineScopeNode(ScopeNode node) {
+    SymbolTable enclosing = currentScope;
+    currentScope = node.getSymbolTable();
+    node.setStat(node.getStat().inline(this));
+    currentScope = enclosing;
+    return node;
+  }
+
+  public StatNode inlineAssignmentNode(AssignmentNode node) {
+    if (!(node.getRHS() instanceof CallNode)) {
+      return node;
+    }
+    CallNode call = (CallNode) node.getRHS();
+    Function callee = call.getFunction();
+    int size = sizeOf(callee);
+    if (size == NOT_INLINABLE || size > allowance()) {
+      return node;
+    }
+
+    inlineCount++;
+    renames.clear();
+    returnTarget = node.getLHS();
+
+    // Arguments are evaluated in order into the copies of the parameters
+    SymbolTable paramScope = callee.getFuncScope().getPreviousTable();
+    SymbolTable params = new SymbolTable(currentScope);
+    SequenceNode body = new SequenceNode();
+    int i = 0;
+    for (String id : paramScope.getIdentifiers()) {
+      IdentNode param = declareCopy(id, paramScope.lookupInThisTable(id),
+          params);
+      body.addChild(new AssignmentNode(param, call.getArg(i++)));
+    }
+
+    SymbolTable enclosing = currentScope;
+    currentScope = params;
+    body.addChild(callee.getBody().copy(this));
+    currentScope = enclosing;
+    return new ScopeNode(body, params);
+  }
+
+  // Copying the callee
+
+  public List<ExprNode> copyAll(List<ExprNode> exprs) {
+    List<ExprNode> copies = new ArrayList<>();
+    for (ExprNode expr : exprs) {
+      copies.add(expr.copy(this));
+    }
+    return copies;
+  }
+
+  public ExprNode copyIdentNode(IdentNode node) {
+    IdentNode renamed = renames.get(node.getVariable());
+    if (renamed == null) {
+      // A variable of the caller, from the left hand side of the call
+      return new IdentNode(node.toString(), node.getVariable(), node.getType());
+    }
+    return new IdentNode(renamed.toString(), renamed.getVariable(),
+        node.getType());
+  }
+
+  public StatNode copyReturnNode(ReturnNode node) {
+    return new AssignmentNode(returnTarget.copy(this), node.getExpr()
+        .copy(this));
+  }
+
+  public StatNode copyScopeNode(ScopeNode node) {
+    SymbolTable original = node.getSymbolTable();
+    SymbolTable table = new SymbolTable(currentScope);
+    for (String id : original.getIdentifiers()) {
+      declareCopy(id, original.lookupInThisTable(id), table);
+    }
+
+    SymbolTable enclosing = currentScope;
+    currentScope = table;
+    StatNode stat = node.getStat().copy(this);
+    currentScope = enclosing;
+    return new ScopeNode(stat, table);
+  }
+
+  // '$' is not allowed in WACC identifiers, so copies never hide a variable
+  // of the caller from Function.isParam
+  private IdentNode declareCopy(String id, Variable var, SymbolTable table) {
+    String copyId = id + "$" + inlineCount;
+    Variable copy = new Variable(var.getType());
+    try {
+      table.declare(copy, copyId);
+    } catch (IdentifierDeclaredPreviouslyInCurrentScopeException e) {
+      // indicates compiler error
+      e.printStackTrace();
+    }
+    IdentNode ident = new IdentNode(copyId, copy, var.getType());
+    renames.put(var, ident);
+    return ident;
+  }
+
+  // Deciding what to inline
+
+  private int allowance() {
+    int allowance = threshold;
+    for (int i = 0; i < Math.min(loopDepth, MAX_LOOP_WEIGHT_DEPTH); i++) {
+      allowance *= LOOP_WEIGHT;
+    }
+    return allowance;
+  }
+
+  private int sizeOf(Function function) {
+    if (!sizes.containsKey(function)) {
+      sizes.put(function, measure(function));
+    }
+    return sizes.get(function);
+  }
+
+  // Number of AST nodes in the body of function, if it can be inlined
+  private static int measure(Function function) {
+    if (function.isMain()) {
+      return NOT_INLINABLE;
+    }
+    SizeCounter counter = new SizeCounter();
+    function.getBody().visit(counter);
+    if (counter.calls > 0
+        || counter.returns != tailReturnCount(function.getBody())) {
+      return NOT_INLINABLE;
+    }
+    return counter.nodes;
+  }
+
+  // Returns that end the function, after which nothing else is executed
+  private static int tailReturnCount(StatNode stat) {
+    if (stat instanceof ReturnNode) {
+      return 1;
+    } else if (stat instanceof ScopeNode) {
+      return tailReturnCount(((ScopeNode) stat).getStat());
+    } else if (stat instanceof SequenceNode) {
+      SequenceNode sequence = (SequenceNode) stat;
+      return tailReturnCount(sequence.getStat(sequence.getStatCount() - 1));
+    } else if (stat instanceof IfNode) {
+      return tailReturnCount(((IfNode) stat).getTrueBody())
+          + tailReturnCount(((IfNode) stat).getFalseBody());
+    }
+    return 0;
+  }
+
+  private static class SizeCounter implements ASTVisitorListener {
+
+    int nodes = 0;
+    int calls = 0;
+    int returns = 0;
+
+    @Override
+    public void visitFunction(Function function) {}
+
+    @Override
+    public void visitArrayElemNode(ArrayElemNode node) {
+      nodes++;
+    }
+
+    @Override
+    public void visitArrayLiteralNode(ArrayLiteralNode node) {
+      nodes++;
+    }
+
+    @Override
+    public void visitBinaryOpNode(BinaryOpNode node) {
+      nodes++;
+    }
+
+    @Override
+    public void visitBoolLiteralNode(BoolLiteralNode node) {
+      nodes++;
+    }
+
+    @Override
+    public void visitCallNode(CallNode node) {
+      nodes++;
+      calls++;
+    }
+
+    @Override
+    public void visitCharLiteralNode(CharLiteralNode node) {
+      nodes++;
+    }
+
+    @Override
+    public void visitIdentNode(IdentNode node) {
+      nodes++;
+    }
+
+    @Override
+    public void visitIntLiteralNode(IntLiteralNode node) {
+      nodes++;
+    }
+
+    @Override
+    public void visitNewPairNode(NewPairNode node) {
+      nodes++;
+    }
+
+    @Override
+    public void visitPairElemNode(PairElemNode node) {
+      nodes++;
+    }
+
+    @Override
+    public void visitUnaryOpNode(UnaryOpNode node) {
+      nodes++;
+    }
+
+    @Override
+    public void visitAssignmentNode(AssignmentNode node) {
+      nodes++;
+    }
+
+    @Override
+    public void visitIfNode(IfNode node) {
+      nodes++;
+    }
+
+    @Override
+    public void visitPrintNode(PrintNode node) {
+      nodes++;
+    }
+
+    @Override
+    public void visitReadNode(ReadNode node) {
+      nodes++;
+    }
+
+    @Override
+    public void visitFreeNode(FreeNode node) {
+      nodes++;
+    }
+
+    @Override
+    public void visitReturnNode(ReturnNode node) {
+      nodes++;
+      returns++;
+    }
+
+    @Override
+    public void visitScopeNode(ScopeNode node) {}
+
+    @Override
+    public void visitSequenceNode(SequenceNode node) {}
+
+    @Override
+    public void visitWhileNode(WhileNode node) {
+      nodes++;
+    }
+
+    @Override
+    public void visitExitNode(ExitNode exitNode) {
+      nodes++;
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package smacc.ast;
+
+import smacc.Function;
+import smacc.SymbolTable;
+import smacc.Variable;
+import smacc.ast.expr.BoolLiteralNode;
+import smacc.ast.expr.CallNode;
+import smacc.ast.expr.ExprNode;
+import smacc.ast.expr.IdentNode;
+import smacc.ast.stat.AssignmentNode;
+import smacc.ast.stat.IfNode;
+import smacc.ast.stat.ReturnNode;
+import smacc.ast.stat.ScopeNode;
+import smacc.ast.stat.SequenceNode;
+import smacc.ast.stat.StatNode;
+import smacc.ast.stat.WhileNode;
+import smacc.exceptions.IdentifierDeclaredPreviouslyInCurrentScopeException;
+
+/*
+ * TailCallEliminator
+ * Turns a function that ends by returning the result of calling itself,
+ * "int r = call f(n - 1, acc * n) ; return r", into a loop.
+ *
+ * The tail call becomes a rewrite of the parameters, through copies so that
+ * every argument sees the old values, after which control falls off the
+ * end of the body. The body is wrapped in "while true", so falling off the
+ * end goes back to the start with the new parameters and only real returns
+ * leave the function.
+ */
+public class TailCallEliminator {
+
+  private Function function;
+  private int eliminated;
+
+  public void eliminate(Function function) {
+    if (function.isMain()) {
+      return;
+    }
+    this.function = function;
+    eliminated = 0;
+
+    ScopeNode body = (ScopeNode) function.getBody();
+    StatNode stat = eliminate(body.getStat(), body.getSymbolTable());
+    if (eliminated == 0) {
+      return;
+    }
+    // An empty scope, the variables of the body stay in the function scope
+    body.setStat(new WhileNode(new BoolLiteralNode(true), new ScopeNode(stat,
+        new SymbolTable(body.getSymbolTable()))));
+  }
+
+  // Rewrites the tail calls in stat, which ends the function
+  private StatNode eliminate(StatNode stat, SymbolTable scope) {
+    if (stat instanceof ScopeNode) {
+      ScopeNode node = (ScopeNode) stat;
+      node.setStat(eliminate(node.getStat(), node.getSymbolTable()));
+    } else if (stat instanceof IfNode) {
+      IfNode node = (IfNode) stat;
+      eliminate(node.getTrueBody(), scope);
+      eliminate(node.getFalseBody(), scope);
+    } else if (stat instanceof SequenceNode) {
+      SequenceNode node = (SequenceNode) stat;
+      int last = node.getStatCount() - 1;
+      if (last > 0 && isSelfCall(node.getStat(last - 1), node.getStat(last))) {
+        node.removeStat(last);
+        node.setStat(last - 1, rewriteParameters((CallNode)
+            ((AssignmentNode) node.getStat(last - 1)).getRHS(), scope));
+        eliminated++;
+      } else {
+        eliminate(node.getStat(last), scope);
+      }
+    }
+    return stat;
+  }
+
+  // "r = call function(...)" followed by "return r"
+  private boolean isSelfCall(StatNode call, StatNode ret) {
+    if (!(call instanceof AssignmentNode) || !(ret instanceof ReturnNode)) {
+      return false;
+    }
+    ExprNode lhs = ((AssignmentNode) call).getLHS();
+    ExprNode rhs = ((AssignmentNode) call).getRHS();
+    ExprNode value = ((ReturnNode) ret).getExpr();
+    return rhs instanceof CallNode
+        && ((CallNode) rhs).getFunction() == function
+        && lhs instanceof IdentNode && value instanceof IdentNode
+        && ((IdentNode) lhs).getVariable() == ((IdentNode) value).getVariable();
+  }
+
+  private StatNode rewriteParameters(CallNode call, SymbolTable scope) {
+    SymbolTable paramScope = function.getFuncScope().getPreviousTable();
+    SymbolTable copies = new SymbolTable(scope);
+    SequenceNode copying = new SequenceNode();
+    SequenceNode assigning = new SequenceNode();
+
+    int i = 0;
+    for (String id : paramScope.getIdentifiers()) {
+      Variable param = paramScope.lookupInThisTable(id);
+      ExprNode arg = call.getArg(i++);
+      if (arg instanceof IdentNode
+          && ((IdentNode) arg).getVariable() == param) {
+        continue;
+      }
+      // '$' is not allowed in WACC identifiers, so the copy hides nothing
+      String copyId = id + "$tail";
+      Variable copy = new Variable(param.getType());
+      try {
+        copies.declare(copy, copyId);
+      } catch (IdentifierDeclaredPreviouslyInCurrentScopeException e) {
+        // indicates compiler error
+        e.printStackTrace();
+      }
+      copying.addChild(new AssignmentNode(new IdentNode(copyId, copy, param
+          .getType()), arg));
+      assigning.addChild(new AssignmentNode(new IdentNode(id, param, param
+          .getType()), new IdentNode(copyId, copy, param.getType())));
+    }
+
+    for (int j = 0; j < assigning.getStatCount(); j++) {
+      copying.addChild(assigning.getStat(j));
+    }
+    return new ScopeNode(copying, copies);
+  }
+}
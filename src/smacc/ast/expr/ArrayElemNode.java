@@ -3,7 +3,11 @@ package smacc.ast.expr;
 import java.util.List;
 
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
+import smacc.ir.Operand;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 import smacc.types.WACCType;
 
 //  Of form 'a[3][5]'
@@ -46,6 +50,10 @@ public class ArrayElemNode extends ExprNode {
     for (ASTVisitorListener listener : listeners) {
       listener.visitArrayElemNode(this);
     }
+    ident.visit(listeners);
+    for (ExprNode index : indices) {
+      index.visit(listeners);
+    }
   }
 
   @Override
@@ -53,4 +61,21 @@ public class ArrayElemNode extends ExprNode {
     translator.translateArrayElemNode(this);
 
   }
+
+  @Override
+  public Operand lower(Lowering lowering) {
+    return lowering.lowerArrayElemNode(this);
+  }
+
+  @Override
+  public ExprNode fold(ConstantFolder folder) {
+    folder.foldAll(indices);
+    return this;
+  }
+
+  @Override
+  public ExprNode copy(Inliner inliner) {
+    return new ArrayElemNode((IdentNode) ident.copy(inliner),
+        inliner.copyAll(indices), evaluatedType);
+  }
 }
@@ -3,7 +3,11 @@ package smacc.ast.expr;
 import java.util.List;
 
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
+import smacc.ir.Operand;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 import smacc.types.ArrayType;
 import smacc.types.WACCType;
 
@@ -102,10 +106,32 @@ public class ArrayLiteralNode extends ExprNode {
     for (ASTVisitorListener listener : listeners) {
       listener.visitArrayLiteralNode(this);
     }
+    for (ExprNode element : elements) {
+      element.visit(listeners);
+    }
   }
 
   @Override
   public void translate(Translator translator) {
     translator.translateArrayLiteralNode(this);
   }
+
+  @Override
+  public Operand lower(Lowering lowering) {
+    return lowering.lowerArrayLiteralNode(this);
+  }
+
+  @Override
+  public ExprNode fold(ConstantFolder folder) {
+    folder.foldAll(elements);
+    return this;
+  }
+
+  @Override
+  public ExprNode copy(Inliner inliner) {
+    if (pureString) {
+      return this;
+    }
+    return new ArrayLiteralNode(inliner.copyAll(elements), evaluatedType);
+  }
 }
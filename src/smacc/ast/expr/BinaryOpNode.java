@@ -1,7 +1,11 @@
 package smacc.ast.expr;
 
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
+import smacc.ir.Operand;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 import smacc.types.WACCType;
 
 //This node will hold a binary op enum and have two Expr children
@@ -59,6 +63,14 @@ public class BinaryOpNode extends ExprNode {
     this.right = right;
   }
 
+  public BinaryOpNode(BinOp op, ExprNode left, ExprNode right,
+      WACCType evaluatedType) {
+    super(evaluatedType);
+    this.op = op;
+    this.left = left;
+    this.right = right;
+  }
+
   public BinOp getOp() {
     return op;
   }
@@ -71,6 +83,18 @@ public class BinaryOpNode extends ExprNode {
     return right;
   }
 
+  public boolean isCommutative() {
+    return op == BinOp.MULTIPLY || op == BinOp.PLUS || op == BinOp.EQUALS
+        || op == BinOp.NOTEQUALS;
+  }
+
+  // Only for commutative operators, the value is unchanged
+  public void swapOperands() {
+    ExprNode swapped = left;
+    left = right;
+    right = swapped;
+  }
+
   @Override
   public String toString() {
     return op.name();
@@ -90,4 +114,21 @@ public class BinaryOpNode extends ExprNode {
     translator.translateBinaryOpNode(this);
   }
 
+  @Override
+  public Operand lower(Lowering lowering) {
+    return lowering.lowerBinaryOpNode(this);
+  }
+
+  @Override
+  public ExprNode fold(ConstantFolder folder) {
+    left = left.fold(folder);
+    right = right.fold(folder);
+    return folder.foldBinaryOpNode(this);
+  }
+
+  @Override
+  public ExprNode copy(Inliner inliner) {
+    return new BinaryOpNode(op, left.copy(inliner), right.copy(inliner),
+        evaluatedType);
+  }
 }
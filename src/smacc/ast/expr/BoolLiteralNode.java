@@ -1,7 +1,11 @@
 package smacc.ast.expr;
 
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
+import smacc.ir.Operand;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 import smacc.types.WACCType;
 
 //  Either true or false
@@ -43,4 +47,19 @@ public class BoolLiteralNode extends ExprNode implements ImmediateReplacable {
   public int getIntValue() {
     return value ? 1 : 0;
   }
+
+  @Override
+  public Operand lower(Lowering lowering) {
+    return lowering.lowerBoolLiteralNode(this);
+  }
+
+  @Override
+  public ExprNode fold(ConstantFolder folder) {
+    return this;
+  }
+
+  @Override
+  public ExprNode copy(Inliner inliner) {
+    return this;
+  }
 }
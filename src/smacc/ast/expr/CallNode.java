@@ -2,7 +2,11 @@ package smacc.ast.expr;
 
 import smacc.Function;
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
+import smacc.ir.Operand;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 import smacc.types.WACCType;
 
 import java.util.ArrayList;
@@ -60,4 +64,20 @@ public class CallNode extends ExprNode {
   public void translate(Translator translator) {
     translator.translateCallNode(this);
   }
+
+  @Override
+  public Operand lower(Lowering lowering) {
+    return lowering.lowerCallNode(this);
+  }
+
+  @Override
+  public ExprNode fold(ConstantFolder folder) {
+    folder.foldAll(args);
+    return this;
+  }
+
+  @Override
+  public ExprNode copy(Inliner inliner) {
+    return new CallNode(function, inliner.copyAll(args), evaluatedType);
+  }
 }
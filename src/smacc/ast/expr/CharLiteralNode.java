@@ -1,7 +1,11 @@
 package smacc.ast.expr;
 
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
+import smacc.ir.Operand;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 import smacc.types.WACCType;
 
 //  A character - 'a', etc.
@@ -38,4 +42,19 @@ public class CharLiteralNode extends ExprNode implements ImmediateReplacable {
   public int getIntValue() {
     return (int) value;
   }
+
+  @Override
+  public Operand lower(Lowering lowering) {
+    return lowering.lowerCharLiteralNode(this);
+  }
+
+  @Override
+  public ExprNode fold(ConstantFolder folder) {
+    return this;
+  }
+
+  @Override
+  public ExprNode copy(Inliner inliner) {
+    return this;
+  }
 }
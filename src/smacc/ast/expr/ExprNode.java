@@ -1,6 +1,10 @@
 package smacc.ast.expr;
 
 import smacc.ast.ASTNode;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
+import smacc.ir.Lowering;
+import smacc.ir.Operand;
 import smacc.types.WACCType;
 
 public abstract class ExprNode extends ASTNode {
@@ -34,4 +38,13 @@ public abstract class ExprNode extends ASTNode {
     return evaluatedType;
   }
 
+  // Emits the IR computing the expression and returns where its value is
+  public abstract Operand lower(Lowering lowering);
+
+  // Folds constant subexpressions, returning the node to replace this one by
+  public abstract ExprNode fold(ConstantFolder folder);
+
+  // Deep copy with the inlined callee's variables renamed
+  public abstract ExprNode copy(Inliner inliner);
+
 }
@@ -2,7 +2,11 @@ package smacc.ast.expr;
 
 import smacc.Variable;
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
+import smacc.ir.Operand;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 import smacc.types.WACCType;
 
 //  An identifier - "a" or "variable_id" or "ad123"
@@ -37,4 +41,19 @@ public class IdentNode extends ExprNode {
   public void translate(Translator translator) {
     translator.translateIdentNode(this);
   }
-}
\ No newline at end of file
+
+  @Override
+  public Operand lower(Lowering lowering) {
+    return lowering.lowerIdentNode(this);
+  }
+
+  @Override
+  public ExprNode fold(ConstantFolder folder) {
+    return this;
+  }
+
+  @Override
+  public ExprNode copy(Inliner inliner) {
+    return inliner.copyIdentNode(this);
+  }
+}
@@ -1,7 +1,11 @@
 package smacc.ast.expr;
 
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
+import smacc.ir.Operand;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 import smacc.types.WACCType;
 
 //  Rhs of an assignment - "newpair(x + 1, true)" for example
@@ -42,4 +46,22 @@ public class NewPairNode extends ExprNode {
   public void translate(Translator translator) {
     translator.translateNewPairNode(this);
   }
+
+  @Override
+  public Operand lower(Lowering lowering) {
+    return lowering.lowerNewPairNode(this);
+  }
+
+  @Override
+  public ExprNode fold(ConstantFolder folder) {
+    left = left.fold(folder);
+    right = right.fold(folder);
+    return this;
+  }
+
+  @Override
+  public ExprNode copy(Inliner inliner) {
+    return new NewPairNode(left.copy(inliner), right.copy(inliner),
+        evaluatedType);
+  }
 }
@@ -1,7 +1,11 @@
 package smacc.ast.expr;
 
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
+import smacc.ir.Operand;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 import smacc.types.WACCType;
 
 //  Used only for pair-literal
@@ -25,4 +29,19 @@ public class NullNode extends ExprNode {
   public void translate(Translator translator) {
     translator.translateNullNode(this);
   }
+
+  @Override
+  public Operand lower(Lowering lowering) {
+    return lowering.lowerNullNode(this);
+  }
+
+  @Override
+  public ExprNode fold(ConstantFolder folder) {
+    return this;
+  }
+
+  @Override
+  public ExprNode copy(Inliner inliner) {
+    return this;
+  }
 }
@@ -1,7 +1,11 @@
 package smacc.ast.expr;
 
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
+import smacc.ir.Operand;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 import smacc.types.WACCType;
 
 //  Looks like "fst p" or "snd pair_name"
@@ -34,10 +38,27 @@ public class PairElemNode extends ExprNode {
     for (ASTVisitorListener listener : listeners) {
       listener.visitPairElemNode(this);
     }
+    expr.visit(listeners);
   }
 
   @Override
   public void translate(Translator translator) {
     translator.translatePairElemNode(this);
   }
+
+  @Override
+  public Operand lower(Lowering lowering) {
+    return lowering.lowerPairElemNode(this);
+  }
+
+  @Override
+  public ExprNode fold(ConstantFolder folder) {
+    expr = expr.fold(folder);
+    return this;
+  }
+
+  @Override
+  public ExprNode copy(Inliner inliner) {
+    return new PairElemNode(expr.copy(inliner), isFst, evaluatedType);
+  }
 }
@@ -1,7 +1,11 @@
 package smacc.ast.expr;
 
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
+import smacc.ir.Operand;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 import smacc.types.WACCType;
 
 //  Of form "!true" or "chr 45"
@@ -36,6 +40,12 @@ public class UnaryOpNode extends ExprNode {
     this.arg = arg;
   }
 
+  public UnaryOpNode(UnOp op, ExprNode arg, WACCType evaluatedType) {
+    super(evaluatedType);
+    this.op = op;
+    this.arg = arg;
+  }
+
   public UnOp getOp() {
     return op;
   }
@@ -61,4 +71,20 @@ public class UnaryOpNode extends ExprNode {
   public void translate(Translator translator) {
     translator.translateUnaryOpNode(this);
   }
+
+  @Override
+  public Operand lower(Lowering lowering) {
+    return lowering.lowerUnaryOpNode(this);
+  }
+
+  @Override
+  public ExprNode fold(ConstantFolder folder) {
+    arg = arg.fold(folder);
+    return folder.foldUnaryOpNode(this);
+  }
+
+  @Override
+  public ExprNode copy(Inliner inliner) {
+    return new UnaryOpNode(op, arg.copy(inliner), evaluatedType);
+  }
 }
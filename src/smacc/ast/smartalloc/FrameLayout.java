@@ -0,0 +1,89 @@
+package smacc.ast.smartalloc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import smacc.Function;
+import smacc.Variable;
+
+/*
+ * FrameLayout
+ * Gives every local of a function that lives on the stack a fixed offset
+ * from the stack pointer in a single frame, so the prologue and epilogue are
+ * the only instructions that move the stack pointer for locals.
+ *
+ * Locals whose live ranges, as found by the LiveRangeAnalyser, do not
+ * overlap share a slot, scanning the ranges in order of birth and reusing
+ * the lowest slot that is free again. Words are kept at the bottom of the
+ * frame with bytes above them, and the frame is a whole number of words, so
+ * word sized loads and stores stay aligned.
+ */
+public class FrameLayout {
+
+  private static final int WORD = 4;
+
+  public static void layOut(Function function) {
+    LiveRangeAnalyser analyser = new LiveRangeAnalyser();
+    function.visit(analyser);
+
+    List<Variable> words = new ArrayList<>();
+    List<Variable> bytes = new ArrayList<>();
+    for (Variable var : analyser.getLocals()) {
+      // Never referenced, in a register or passed in one
+      if (analyser.getWeight(var) == 0 || var.hasRegister()
+          || isParameter(function, var)) {
+        continue;
+      }
+      if (var.getSizeInBytes() == WORD) {
+        words.add(var);
+      } else {
+        bytes.add(var);
+      }
+    }
+
+    int wordSlots = assignSlots(words);
+    int byteSlots = assignSlots(bytes);
+    for (Variable var : words) {
+      var.setFrameOffset(WORD * var.getFrameOffset());
+    }
+    for (Variable var : bytes) {
+      var.setFrameOffset(WORD * wordSlots + var.getFrameOffset());
+    }
+    int frameSize = WORD * wordSlots + byteSlots;
+    function.setFrameSize((frameSize + WORD - 1) / WORD * WORD);
+  }
+
+  private static boolean isParameter(Function function, Variable var) {
+    return !function.isMain()
+        && function.getParameterScope().getVariables().contains(var);
+  }
+
+  // Numbers the slot of each variable as its frame offset, returns the count
+  private static int assignSlots(List<Variable> vars) {
+    Collections.sort(vars, new Comparator<Variable>() {
+      @Override
+      public int compare(Variable a, Variable b) {
+        return Integer.compare(a.getBirthIndex(), b.getBirthIndex());
+      }
+    });
+
+    // Death of the latest variable given each slot
+    List<Integer> slotDeaths = new ArrayList<>();
+    for (Variable var : vars) {
+      int slot = 0;
+      while (slot < slotDeaths.size()
+          && slotDeaths.get(slot) >= var.getBirthIndex()) {
+        slot++;
+      }
+      if (slot == slotDeaths.size()) {
+        slotDeaths.add(var.getDeathIndex());
+      } else {
+        slotDeaths.set(slot, var.getDeathIndex());
+      }
+      var.setFrameOffset(slot);
+    }
+    return slotDeaths.size();
+  }
+}
@@ -0,0 +1,152 @@
+package smacc.ast.smartalloc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeSet;
+
+import smacc.Function;
+import smacc.Variable;
+import smacc.arm.ARMFunctionStart;
+import smacc.arm.ARMNode;
+import smacc.arm.Register;
+import smacc.arm.Translator;
+
+/*
+ * LinearScanAllocator
+ * Keeps the locals of a function, and the arguments it is passed in r0 to r3,
+ * in callee-saved registers rather than on the stack, using the live ranges
+ * found by the LiveRangeAnalyser.
+ *
+ * Expression temporaries are handed out upwards from r4 by the Translator, so
+ * the function is first translated into a scratch Translator to find the
+ * highest temporary it needs. Every register above that, up to r10, is free
+ * for variables (r11 is kept as the spill scratch register).
+ *
+ * Ranges are then scanned in order of birth (Poletto & Sarkar). When no
+ * register is free, the range with the lowest loop weighted use count among
+ * the active ones and the new one is spilled, so hot locals keep their
+ * registers and spilled variables simply stay on the stack. The scratch
+ * translation also shows whether the function is a leaf, which keeps its
+ * return address in lr.
+ */
+public class LinearScanAllocator {
+
+  private static final int FIRST_TEMPORARY = 4;
+  private static final int LAST_ALLOCATABLE = 10;
+
+  public static void allocate(Function function) {
+    LiveRangeAnalyser analyser = new LiveRangeAnalyser();
+    function.visit(analyser);
+
+    for (Variable var : analyser.getLocals()) {
+      var.setRegister(Variable.NO_REGISTER);
+    }
+    function.setSavedRegisters(new ArrayList<Register>());
+    function.setSavesLinkRegister(true);
+
+    // Registers the body touches with every variable on the stack
+    List<ARMNode> scratch = translateScratch(function);
+    TreeSet<Integer> usedRegisters = registersUsedBy(scratch);
+    int highestTemporary = FIRST_TEMPORARY - 1;
+    for (int register : usedRegisters) {
+      highestTemporary = Math.max(highestTemporary, register);
+    }
+
+    LinkedList<Integer> freeRegisters = new LinkedList<>();
+    for (int r = highestTemporary + 1; r <= LAST_ALLOCATABLE; r++) {
+      freeRegisters.add(r);
+    }
+
+    List<Variable> ranges = new ArrayList<>();
+    for (Variable var : analyser.getLocals()) {
+      // Never referenced or needs an address for read
+      if (analyser.getWeight(var) > 0 && !analyser.isAddressTaken(var)) {
+        ranges.add(var);
+      }
+    }
+    Collections.sort(ranges, new Comparator<Variable>() {
+      @Override
+      public int compare(Variable a, Variable b) {
+        return Integer.compare(a.getBirthIndex(), b.getBirthIndex());
+      }
+    });
+
+    List<Variable> active = new ArrayList<>();
+    for (Variable current : ranges) {
+      expireOldRanges(active, current, freeRegisters);
+
+      if (!freeRegisters.isEmpty()) {
+        current.setRegister(freeRegisters.removeFirst());
+        active.add(current);
+        continue;
+      }
+
+      // Spill whichever competing range is least used
+      Variable coldest = current;
+      for (Variable var : active) {
+        if (analyser.getWeight(var) < analyser.getWeight(coldest)) {
+          coldest = var;
+        }
+      }
+      if (coldest != current) {
+        current.setRegister(coldest.getRegister());
+        coldest.setRegister(Variable.NO_REGISTER);
+        active.remove(coldest);
+        active.add(current);
+      }
+    }
+
+    for (Variable var : ranges) {
+      if (var.hasRegister()) {
+        usedRegisters.add(var.getRegister());
+      }
+    }
+
+    List<Register> savedRegisters = new ArrayList<>();
+    for (int register : usedRegisters) {
+      savedRegisters.add(new Register(register));
+    }
+    function.setSavedRegisters(savedRegisters);
+    // Variables only change registers, never which functions are called
+    function.setSavesLinkRegister(!ARMFunctionStart.isLeaf(scratch));
+  }
+
+  // Ranges that died before current starts give their register back
+  private static void expireOldRanges(List<Variable> active, Variable current,
+      LinkedList<Integer> freeRegisters) {
+    List<Variable> expired = new ArrayList<>();
+    for (Variable var : active) {
+      if (var.getDeathIndex() < current.getBirthIndex()) {
+        expired.add(var);
+        freeRegisters.add(var.getRegister());
+      }
+    }
+    active.removeAll(expired);
+    Collections.sort(freeRegisters);
+  }
+
+  private static List<ARMNode> translateScratch(Function function) {
+    FrameLayout.layOut(function);
+    Translator scratch = new Translator();
+    function.translate(scratch);
+    return scratch.getARM();
+  }
+
+  // Callee-saved registers written or read by the translated function
+  private static TreeSet<Integer> registersUsedBy(List<ARMNode> code) {
+    TreeSet<Integer> used = new TreeSet<>();
+    for (ARMNode node : code) {
+      List<Register> registers = new ArrayList<>(node.getUsedRegisters());
+      registers.addAll(node.getDefinedRegisters());
+      for (Register register : registers) {
+        if (register.isCalleeSaved()) {
+          used.add(register.getRegisterNumber());
+        }
+      }
+    }
+    return used;
+  }
+}
@@ -1,5 +1,13 @@
 package smacc.ast.smartalloc;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+
 import smacc.Function;
 import smacc.Variable;
 import smacc.ast.ASTVisitorListener;
@@ -25,29 +33,113 @@ import smacc.ast.stat.ScopeNode;
 import smacc.ast.stat.SequenceNode;
 import smacc.ast.stat.WhileNode;
 
+/*
+ * LiveRangeAnalyser
+ * Walks a function body in evaluation order, numbering every reference to a
+ * variable, and records the first and last of these as the birth and death
+ * index of the variable.
+ *
+ * A variable that is referenced inside a while loop but born before it must
+ * survive every iteration, so its death is pushed to the end of the loop.
+ * Each reference is also weighted by how deeply nested in loops it is, which
+ * the allocator uses to decide who to spill.
+ */
 public class LiveRangeAnalyser implements ASTVisitorListener {
-  
-  int topWhileIndex = 0;
-  int whileCount = 0;
-  
+
+  // Weight of a reference multiplies by this for each enclosing loop
+  private static final int LOOP_WEIGHT = 10;
+  private static final int MAX_LOOP_WEIGHT_DEPTH = 4;
+
+  private int currentIndex = 0;
+
+  // Index at which each enclosing loop starts, with the variables used in it
+  private Stack<Integer> loopStarts = new Stack<>();
+  private Stack<Set<Variable>> loopVariables = new Stack<>();
+
+  // Locals in the order their scopes were entered
+  private List<Variable> locals = new ArrayList<>();
+  private Map<Variable, Integer> weights = new LinkedHashMap<>();
+  private Set<Variable> addressTaken = new HashSet<>();
+
+  private boolean inRead = false;
+
   public void inWhileLoop() {
-    whileCount++;
+    currentIndex++;
+    loopStarts.push(currentIndex);
+    loopVariables.push(new HashSet<Variable>());
   }
-  
+
   public void outWhileLoop() {
-    whileCount--;
+    currentIndex++;
+    int loopStart = loopStarts.pop();
+    Set<Variable> used = loopVariables.pop();
+    for (Variable var : used) {
+      if (var.getBirthIndex() < loopStart) {
+        var.setDeathIndex(Math.max(var.getDeathIndex(), currentIndex));
+      }
+    }
+    // Anything used in this loop is also used in the enclosing one
+    if (!loopVariables.isEmpty()) {
+      loopVariables.peek().addAll(used);
+    }
   }
-  
-  private boolean isInLoop() {
-    return whileCount > 0;
+
+  public List<Variable> getLocals() {
+    return locals;
+  }
+
+  // Sum of the loop weighted references to var
+  public int getWeight(Variable var) {
+    Integer weight = weights.get(var);
+    return (weight == null) ? 0 : weight;
+  }
+
+  // Variables that are read into need an address on the stack
+  public boolean isAddressTaken(Variable var) {
+    return addressTaken.contains(var);
   }
-  
-  //TESTING PURPOSES
+
+  private void reference(Variable var) {
+    currentIndex++;
+    if (!weights.containsKey(var)) {
+      var.setBirthIndex(currentIndex);
+      weights.put(var, 0);
+    }
+    var.setDeathIndex(Math.max(var.getDeathIndex(), currentIndex));
+
+    int weight = 1;
+    for (int i = 0; i < Math.min(loopStarts.size(), MAX_LOOP_WEIGHT_DEPTH); i++) {
+      weight *= LOOP_WEIGHT;
+    }
+    weights.put(var, weights.get(var) + weight);
+
+    if (!loopVariables.isEmpty()) {
+      loopVariables.peek().add(var);
+    }
+  }
+
+  // Arguments arriving in registers are live from the start, as locals
   @Override
-  public void visitFunction(Function function) {}
+  public void visitFunction(Function function) {
+    if (function.isMain()) {
+      return;
+    }
+    int i = 0;
+    for (Variable var : function.getParameterScope().getVariables()) {
+      if (function.isPassedInRegister(i++)) {
+        var.setBirthIndex(0);
+        var.setDeathIndex(0);
+        weights.put(var, 0);
+        locals.add(var);
+      }
+    }
+  }
 
   @Override
-  public void visitArrayElemNode(ArrayElemNode node) {}
+  public void visitArrayElemNode(ArrayElemNode node) {
+    // Reading into an array element only needs the array pointer
+    inRead = false;
+  }
 
   @Override
   public void visitArrayLiteralNode(ArrayLiteralNode node) {}
@@ -67,14 +159,11 @@ public class LiveRangeAnalyser implements ASTVisitorListener {
   @Override
   public void visitIdentNode(IdentNode node) {
     Variable var = node.getVariable();
-    if (var.getBirthIndex() == 0) {
-      var.setBirthIndex(node.getIndex());
-    }
-    if (isInLoop()) {
-      var.setDeathIndex(topWhileIndex);
-    } else {
-      var.setDeathIndex(node.getIndex());
+    if (inRead) {
+      addressTaken.add(var);
+      inRead = false;
     }
+    reference(var);
   }
 
   @Override
@@ -84,7 +173,9 @@ public class LiveRangeAnalyser implements ASTVisitorListener {
   public void visitNewPairNode(NewPairNode node) {}
 
   @Override
-  public void visitPairElemNode(PairElemNode node) {}
+  public void visitPairElemNode(PairElemNode node) {
+    inRead = false;
+  }
 
   @Override
   public void visitUnaryOpNode(UnaryOpNode node) {}
@@ -93,52 +184,37 @@ public class LiveRangeAnalyser implements ASTVisitorListener {
   public void visitAssignmentNode(AssignmentNode node) {}
 
   @Override
-  public void visitIfNode(IfNode node) {
-    // TODO Auto-generated method stub
-    
-  }
+  public void visitIfNode(IfNode node) {}
 
   @Override
-  public void visitPrintNode(PrintNode node) {
-    // TODO Auto-generated method stub
-    
-  }
+  public void visitPrintNode(PrintNode node) {}
 
   @Override
   public void visitReadNode(ReadNode node) {
-    // TODO Auto-generated method stub
-    
+    inRead = true;
   }
 
   @Override
-  public void visitFreeNode(FreeNode node) {
-    // TODO Auto-generated method stub
-    
-  }
+  public void visitFreeNode(FreeNode node) {}
 
   @Override
-  public void visitReturnNode(ReturnNode node) {
-    // TODO Auto-generated method stub
-    
-  }
+  public void visitReturnNode(ReturnNode node) {}
 
   @Override
   public void visitScopeNode(ScopeNode node) {
-   // node.getSymbolTable().printLiveRangesOfLocals();
+    for (Variable var : node.getSymbolTable().getVariables()) {
+      var.setBirthIndex(0);
+      var.setDeathIndex(0);
+      locals.add(var);
+    }
   }
 
   @Override
-  public void visitSequenceNode(SequenceNode node) {
-    // TODO Auto-generated method stub
-  }
+  public void visitSequenceNode(SequenceNode node) {}
 
   @Override
-  public void visitWhileNode(WhileNode node) {
-    topWhileIndex = Math.max(node.getIndex(), topWhileIndex);
-  }
+  public void visitWhileNode(WhileNode node) {}
 
   @Override
-  public void visitExitNode(ExitNode exitNode) {
-    // TODO Auto-generated method stub
-  }
+  public void visitExitNode(ExitNode exitNode) {}
 }
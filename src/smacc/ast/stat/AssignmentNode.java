@@ -1,7 +1,10 @@
 package smacc.ast.stat;
 
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 import smacc.ast.expr.ExprNode;
 
 /*
@@ -47,4 +50,25 @@ public class AssignmentNode extends StatNode {
   public void translate(Translator translator) {
     translator.translateAssignmentNode(this);
   }
+
+  @Override
+  public void lower(Lowering lowering) {
+    lowering.lowerAssignmentNode(this);
+  }
+
+  @Override
+  public void fold(ConstantFolder folder) {
+    lhs = lhs.fold(folder);
+    rhs = rhs.fold(folder);
+  }
+
+  @Override
+  public StatNode copy(Inliner inliner) {
+    return new AssignmentNode(lhs.copy(inliner), rhs.copy(inliner));
+  }
+
+  @Override
+  public StatNode inline(Inliner inliner) {
+    return inliner.inlineAssignmentNode(this);
+  }
 }
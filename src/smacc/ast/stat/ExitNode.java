@@ -1,7 +1,10 @@
 package smacc.ast.stat;
 
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 import smacc.ast.expr.ExprNode;
 
 public class ExitNode extends StatNode {
@@ -33,4 +36,23 @@ public class ExitNode extends StatNode {
     translator.translateExitNode(this);
   }
 
+  @Override
+  public void lower(Lowering lowering) {
+    lowering.lowerExitNode(this);
+  }
+
+  @Override
+  public void fold(ConstantFolder folder) {
+    expr = expr.fold(folder);
+  }
+
+  @Override
+  public StatNode copy(Inliner inliner) {
+    return new ExitNode(expr.copy(inliner));
+  }
+
+  @Override
+  public StatNode inline(Inliner inliner) {
+    return this;
+  }
 }
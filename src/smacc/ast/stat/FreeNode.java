@@ -1,7 +1,10 @@
 package smacc.ast.stat;
 
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 import smacc.ast.expr.ExprNode;
 
 public class FreeNode extends StatNode {
@@ -32,4 +35,24 @@ public class FreeNode extends StatNode {
   public void translate(Translator translator) {
     translator.translateFreeNode(this);
   }
+
+  @Override
+  public void lower(Lowering lowering) {
+    lowering.lowerFreeNode(this);
+  }
+
+  @Override
+  public void fold(ConstantFolder folder) {
+    expr = expr.fold(folder);
+  }
+
+  @Override
+  public StatNode copy(Inliner inliner) {
+    return new FreeNode(expr.copy(inliner));
+  }
+
+  @Override
+  public StatNode inline(Inliner inliner) {
+    return this;
+  }
 }
@@ -1,7 +1,10 @@
 package smacc.ast.stat;
 
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 import smacc.ast.expr.ExprNode;
 
 public class IfNode extends StatNode {
@@ -45,4 +48,29 @@ public class IfNode extends StatNode {
   public void translate(Translator translator) {
     translator.translateIfNode(this);
   }
+
+  @Override
+  public void lower(Lowering lowering) {
+    lowering.lowerIfNode(this);
+  }
+
+  @Override
+  public void fold(ConstantFolder folder) {
+    conditional = conditional.fold(folder);
+    trueBody.fold(folder);
+    falseBody.fold(folder);
+  }
+
+  @Override
+  public StatNode copy(Inliner inliner) {
+    return new IfNode(conditional.copy(inliner), trueBody.copy(inliner),
+        falseBody.copy(inliner));
+  }
+
+  @Override
+  public StatNode inline(Inliner inliner) {
+    trueBody = trueBody.inline(inliner);
+    falseBody = falseBody.inline(inliner);
+    return this;
+  }
 }
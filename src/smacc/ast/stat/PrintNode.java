@@ -1,7 +1,10 @@
 package smacc.ast.stat;
 
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 import smacc.ast.expr.ExprNode;
 
 public class PrintNode extends StatNode {
@@ -39,4 +42,24 @@ public class PrintNode extends StatNode {
   public void translate(Translator translator) {
     translator.translatePrintNode(this);
   }
+
+  @Override
+  public void lower(Lowering lowering) {
+    lowering.lowerPrintNode(this);
+  }
+
+  @Override
+  public void fold(ConstantFolder folder) {
+    expr = expr.fold(folder);
+  }
+
+  @Override
+  public StatNode copy(Inliner inliner) {
+    return new PrintNode(expr.copy(inliner), appendNewline);
+  }
+
+  @Override
+  public StatNode inline(Inliner inliner) {
+    return this;
+  }
 }
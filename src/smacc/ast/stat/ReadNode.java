@@ -1,7 +1,10 @@
 package smacc.ast.stat;
 
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 import smacc.ast.expr.ExprNode;
 
 public class ReadNode extends StatNode {
@@ -32,4 +35,24 @@ public class ReadNode extends StatNode {
   public void translate(Translator translator) {
     translator.translateReadNode(this);
   }
+
+  @Override
+  public void lower(Lowering lowering) {
+    lowering.lowerReadNode(this);
+  }
+
+  @Override
+  public void fold(ConstantFolder folder) {
+    expr = expr.fold(folder);
+  }
+
+  @Override
+  public StatNode copy(Inliner inliner) {
+    return new ReadNode(expr.copy(inliner));
+  }
+
+  @Override
+  public StatNode inline(Inliner inliner) {
+    return this;
+  }
 }
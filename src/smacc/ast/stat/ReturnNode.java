@@ -1,7 +1,10 @@
 package smacc.ast.stat;
 
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 import smacc.ast.expr.ExprNode;
 
 public class ReturnNode extends StatNode {
@@ -32,4 +35,24 @@ public class ReturnNode extends StatNode {
   public void translate(Translator translator) {
     translator.translateReturnNode(this);
   }
+
+  @Override
+  public void lower(Lowering lowering) {
+    lowering.lowerReturnNode(this);
+  }
+
+  @Override
+  public void fold(ConstantFolder folder) {
+    expr = expr.fold(folder);
+  }
+
+  @Override
+  public StatNode copy(Inliner inliner) {
+    return inliner.copyReturnNode(this);
+  }
+
+  @Override
+  public StatNode inline(Inliner inliner) {
+    return this;
+  }
 }
@@ -2,7 +2,10 @@ package smacc.ast.stat;
 
 import smacc.SymbolTable;
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 
 public class ScopeNode extends StatNode {
 
@@ -42,4 +45,24 @@ public class ScopeNode extends StatNode {
   public void translate(Translator translator) {
     translator.translateScopeNode(this);
   }
+
+  @Override
+  public void lower(Lowering lowering) {
+    lowering.lowerScopeNode(this);
+  }
+
+  @Override
+  public void fold(ConstantFolder folder) {
+    stat.fold(folder);
+  }
+
+  @Override
+  public StatNode copy(Inliner inliner) {
+    return inliner.copyScopeNode(this);
+  }
+
+  @Override
+  public StatNode inline(Inliner inliner) {
+    return inliner.inlineScopeNode(this);
+  }
 }
@@ -2,9 +2,13 @@ package smacc.ast.stat;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.ListIterator;
 
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 
 //  Simply holds a block of statements that are sequentially composed.
 //  Each statement is a child.
@@ -37,6 +41,14 @@ public class SequenceNode extends StatNode {
     return stmts.get(i);
   }
 
+  public void setStat(int i, StatNode stat) {
+    stmts.set(i, stat);
+  }
+
+  public void removeStat(int i) {
+    stmts.remove(i);
+  }
+
   public int getStatCount() {
     return stmts.size();
   }
@@ -59,4 +71,34 @@ public class SequenceNode extends StatNode {
   public void translate(Translator translator) {
     translator.translateSequenceNode(this);
   }
+
+  @Override
+  public void lower(Lowering lowering) {
+    lowering.lowerSequenceNode(this);
+  }
+
+  @Override
+  public void fold(ConstantFolder folder) {
+    for (StatNode stat : stmts) {
+      stat.fold(folder);
+    }
+  }
+
+  @Override
+  public StatNode copy(Inliner inliner) {
+    SequenceNode copy = new SequenceNode();
+    for (StatNode stat : stmts) {
+      copy.addChild(stat.copy(inliner));
+    }
+    return copy;
+  }
+
+  @Override
+  public StatNode inline(Inliner inliner) {
+    ListIterator<StatNode> iterator = stmts.listIterator();
+    while (iterator.hasNext()) {
+      iterator.set(iterator.next().inline(inliner));
+    }
+    return this;
+  }
 }
@@ -1,7 +1,10 @@
 package smacc.ast.stat;
 
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 
 /**
  * Created by tgg14 on 29/11/15.
@@ -21,4 +24,23 @@ public class SkipNode extends StatNode {
   public void translate(Translator translator) {
     translator.translateSkipNode(this);
   }
+
+  @Override
+  public void lower(Lowering lowering) {
+    lowering.lowerSkipNode(this);
+  }
+
+  @Override
+  public void fold(ConstantFolder folder) {
+  }
+
+  @Override
+  public StatNode copy(Inliner inliner) {
+    return this;
+  }
+
+  @Override
+  public StatNode inline(Inliner inliner) {
+    return this;
+  }
 }
@@ -2,9 +2,22 @@ package smacc.ast.stat;
 
 import smacc.ast.ASTNode;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
+import smacc.ir.Lowering;
 
 public abstract class StatNode extends ASTNode {
 
   public abstract void visit(ASTVisitorListener... listener);
 
+  public abstract void lower(Lowering lowering);
+
+  public abstract void fold(ConstantFolder folder);
+
+  // Deep copy with the inlined callee's variables renamed
+  public abstract StatNode copy(Inliner inliner);
+
+  // Inlines calls made in this statement, returning its replacement
+  public abstract StatNode inline(Inliner inliner);
+
 }
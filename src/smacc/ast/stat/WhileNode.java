@@ -1,7 +1,10 @@
 package smacc.ast.stat;
 
 import smacc.arm.Translator;
+import smacc.ir.Lowering;
 import smacc.ast.ASTVisitorListener;
+import smacc.ast.ConstantFolder;
+import smacc.ast.Inliner;
 import smacc.ast.expr.ExprNode;
 import smacc.ast.smartalloc.LiveRangeAnalyser;
 
@@ -31,17 +34,10 @@ public class WhileNode extends StatNode {
   @Override
   public void visit(ASTVisitorListener... listeners) {
     for (ASTVisitorListener listener : listeners) {
-      boolean analysing = false;
-      LiveRangeAnalyser analyser = null;
-      if (listener instanceof LiveRangeAnalyser) {
-        analysing = true;
-        analyser = (LiveRangeAnalyser) listener;
-        analyser.inWhileLoop();
-      }
       listener.visitWhileNode(this);
-
-      if (analysing) {
-        analyser.outWhileLoop();
+      // Live ranges must know which uses are inside the loop
+      if (listener instanceof LiveRangeAnalyser) {
+        ((LiveRangeAnalyser) listener).inWhileLoop();
       }
     }
 
@@ -53,11 +49,34 @@ public class WhileNode extends StatNode {
         ((LiveRangeAnalyser) listener).outWhileLoop();
       }
     }
-
   }
 
   @Override
   public void translate(Translator translator) {
     translator.translateWhileNode(this);
   }
+
+  @Override
+  public void lower(Lowering lowering) {
+    lowering.lowerWhileNode(this);
+  }
+
+  @Override
+  public void fold(ConstantFolder folder) {
+    conditional = conditional.fold(folder);
+    body.fold(folder);
+  }
+
+  @Override
+  public StatNode copy(Inliner inliner) {
+    return new WhileNode(conditional.copy(inliner), body.copy(inliner));
+  }
+
+  @Override
+  public StatNode inline(Inliner inliner) {
+    inliner.inWhileLoop();
+    body = body.inline(inliner);
+    inliner.outWhileLoop();
+    return this;
+  }
 }
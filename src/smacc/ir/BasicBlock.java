@@ -0,0 +1,64 @@
+package smacc.ir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * BasicBlock
+ * A straight-line run of instructions ending in a single terminator
+ */
+public class BasicBlock {
+
+  private final int id;
+  private final List<Instruction> instructions = new ArrayList<>();
+  private final List<BasicBlock> predecessors = new ArrayList<>();
+
+  public BasicBlock(int id) {
+    this.id = id;
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  public String getName() {
+    return "B" + id;
+  }
+
+  public List<Instruction> getInstructions() {
+    return instructions;
+  }
+
+  public void add(Instruction instruction) {
+    instructions.add(instruction);
+  }
+
+  public boolean isTerminated() {
+    return !instructions.isEmpty()
+        && instructions.get(instructions.size() - 1).isTerminator();
+  }
+
+  public Instruction getTerminator() {
+    return isTerminated() ? instructions.get(instructions.size() - 1) : null;
+  }
+
+  public List<BasicBlock> getSuccessors() {
+    Instruction terminator = getTerminator();
+    return (terminator == null) ? Collections.<BasicBlock>emptyList()
+        : terminator.getSuccessors();
+  }
+
+  public List<BasicBlock> getPredecessors() {
+    return predecessors;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder(getName() + ":\n");
+    for (Instruction instruction : instructions) {
+      builder.append("  ").append(instruction).append("\n");
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,138 @@
+package smacc.ir;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * BinaryOperation
+ * Arithmetic, logical and comparison operators, comparisons give a bool.
+ * Checked additions, subtractions and multiplications throw an overflow
+ * error at runtime, division by zero is guarded by a separate Check.
+ */
+public class BinaryOperation extends Definition {
+
+  public enum Operator {
+    ADD, SUB, MUL, DIV, MOD, AND, OR, XOR, SHL, EQ, NE, LT, LE, GT, GE;
+
+    public boolean isComparison() {
+      return this == EQ || this == NE || this == LT || this == LE
+          || this == GT || this == GE;
+    }
+
+    public boolean isCommutative() {
+      return this == ADD || this == MUL || this == AND || this == OR
+          || this == XOR || this == EQ || this == NE;
+    }
+
+    // Comparison with its operands swapped
+    public Operator swap() {
+      switch (this) {
+        case LT:
+          return GT;
+        case LE:
+          return GE;
+        case GT:
+          return LT;
+        case GE:
+          return LE;
+        default:
+          return this;
+      }
+    }
+
+    // Comparison that holds exactly when this one does not, as in swap
+    // other operators are left as they are
+    public Operator negate() {
+      switch (this) {
+        case EQ:
+          return NE;
+        case NE:
+          return EQ;
+        case LT:
+          return GE;
+        case LE:
+          return GT;
+        case GT:
+          return LE;
+        case GE:
+          return LT;
+        default:
+          return this;
+      }
+    }
+  }
+
+  private Operator operator;
+  private Temp destination;
+  private Operand left;
+  private Operand right;
+  private boolean checked;
+
+  public BinaryOperation(Operator operator, Temp destination, Operand left,
+      Operand right, boolean checked) {
+    this.operator = operator;
+    this.destination = destination;
+    this.left = left;
+    this.right = right;
+    this.checked = checked;
+  }
+
+  public Operator getOperator() {
+    return operator;
+  }
+
+  public Operand getLeft() {
+    return left;
+  }
+
+  public Operand getRight() {
+    return right;
+  }
+
+  public boolean isChecked() {
+    return checked;
+  }
+
+  public void setChecked(boolean checked) {
+    this.checked = checked;
+  }
+
+  @Override
+  public Temp getDefined() {
+    return destination;
+  }
+
+  @Override
+  public void setDefined(Temp temp) {
+    destination = temp;
+  }
+
+  @Override
+  public List<Operand> getUsed() {
+    return Arrays.asList(left, right);
+  }
+
+  @Override
+  public void replaceUses(Map<Operand, Operand> replacements) {
+    left = replace(left, replacements);
+    right = replace(right, replacements);
+  }
+
+  // An overflow check stops the instruction being removed
+  @Override
+  public boolean hasSideEffects() {
+    return checked;
+  }
+
+  @Override
+  public Instruction copy() {
+    return new BinaryOperation(operator, destination, left, right, checked);
+  }
+
+  @Override
+  public String toString() {
+    return destination + " = " + operator.name() + (checked ? "S " : " ")
+        + left + ", " + right;
+  }
+}
@@ -0,0 +1,506 @@
+package smacc.ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import smacc.ir.BinaryOperation.Operator;
+import smacc.ir.RangeAnalysis.Range;
+
+/*
+ * BoundsCheckElimination
+ * Removes array bounds checks that can never fail, on a function in SSA
+ * form. An index is in bounds when its range is non-negative and it is
+ * below the length of the array, either by a dominating "i < len a" or
+ * "i <= len a - 1", or by its range when the array is a literal of known
+ * length.
+ *
+ * A counter running up to a limit the array length cannot be compared with
+ * at compile time, "while i < n do ... a[i] ...", is handled by versioning
+ * the loop. The preheader tests "i0 >= 0 && n <= len a" once and enters a
+ * copy of the loop without those checks when it holds, and the original loop
+ * otherwise, so a program that would fail still fails at the same point.
+ */
+public class BoundsCheckElimination {
+
+  // Largest loop, in instructions, copied to take its checks out
+  private static final int MAX_VERSIONED_SIZE = 100;
+
+  private IRFunction function;
+  private DominatorTree dominators;
+  private RangeAnalysis ranges;
+  private Map<Temp, Integer> lengths = new HashMap<>();
+
+  public static void run(IRFunction function) {
+    new BoundsCheckElimination(function).run();
+  }
+
+  private BoundsCheckElimination(IRFunction function) {
+    this.function = function;
+  }
+
+  private void run() {
+    NaturalLoops loops = analyse();
+    for (BasicBlock block : function.getBlocks()) {
+      Iterator<Instruction> iterator = block.getInstructions().iterator();
+      while (iterator.hasNext()) {
+        Instruction instruction = iterator.next();
+        if (isBoundsCheck(instruction)
+            && isInBounds((Check) instruction, block)) {
+          iterator.remove();
+        }
+      }
+    }
+
+    // Loops are versioned one at a time, each changing the control flow
+    // the next is planned on, and neither copy is versioned again
+    Set<BasicBlock> planned = new HashSet<>();
+    VersionedLoop loop;
+    do {
+      loop = null;
+      for (BasicBlock header : loops.getHeaders()) {
+        if (planned.add(header)) {
+          loop = planVersion(loops, header);
+          if (loop != null) {
+            planned.add(version(loops, loop));
+            loops = analyse();
+            break;
+          }
+        }
+      }
+    } while (loop != null);
+  }
+
+  private NaturalLoops analyse() {
+    NaturalLoops loops = new NaturalLoops(function);
+    dominators = loops.getDominators();
+    ranges = new RangeAnalysis(function, dominators);
+    lengths.clear();
+    // Array literals store their length once they are allocated
+    for (BasicBlock block : function.getBlocks()) {
+      for (Instruction instruction : block.getInstructions()) {
+        if (!(instruction instanceof Store)) {
+          continue;
+        }
+        Store store = (Store) instruction;
+        Operand base = resolve(store.getBase());
+        Operand value = resolve(store.getValue());
+        Instruction allocation = ranges.getDefinition(base);
+        if (store.getOffset() == 0 && value.isConstant()
+            && allocation instanceof RuntimeCall
+            && "malloc".equals(((RuntimeCall) allocation).getLabel())) {
+          lengths.put((Temp) base, ((Constant) value).getValue());
+        }
+      }
+    }
+    return loops;
+  }
+
+  private static boolean isBoundsCheck(Instruction instruction) {
+    return instruction instanceof Check
+        && ((Check) instruction).getKind() == Check.Kind.ARRAY_BOUNDS;
+  }
+
+  private Operand resolve(Operand operand) {
+    return ranges.resolve(operand);
+  }
+
+  // Proving checks
+
+  private boolean isInBounds(Check check, BasicBlock block) {
+    Operand array = resolve(check.getUsed().get(0));
+    Operand index = resolve(check.getUsed().get(1));
+    Range range = ranges.getRange(index, block);
+    if (range == null || range.getMin() < 0) {
+      return false;
+    }
+    Integer length = lengths.get(array);
+    if (length != null && range.getMax() < length) {
+      return true;
+    }
+    for (Comparison fact : ranges.getFacts(block)) {
+      Comparison oriented = fact.orient(index);
+      if (oriented != null && (oriented.getOperator() == Operator.LT
+          && isLengthOf(oriented.getRight(), array)
+          || oriented.getOperator() == Operator.LE
+          && isLengthMinusOne(oriented.getRight(), array))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isLengthOf(Operand operand, Operand array) {
+    Instruction definition = ranges.getDefinition(operand);
+    return definition instanceof Load && ((Load) definition).isImmutable()
+        && resolve(((Load) definition).getBase()).equals(array);
+  }
+
+  // "len a - c" for a positive c
+  private boolean isLengthMinusOne(Operand operand, Operand array) {
+    Instruction definition = ranges.getDefinition(operand);
+    if (!(definition instanceof BinaryOperation)) {
+      return false;
+    }
+    BinaryOperation operation = (BinaryOperation) definition;
+    Operand right = resolve(operation.getRight());
+    return operation.getOperator() == Operator.SUB && right.isConstant()
+        && ((Constant) right).getValue() > 0
+        && isLengthOf(resolve(operation.getLeft()), array);
+  }
+
+  // Versioning loops
+
+  /*
+   * The checks of an innermost loop indexed by a counter, running up from
+   * i0 by a positive step while it is below a limit n the loop does not
+   * change, and the tests that keep every one of them in bounds
+   */
+  private VersionedLoop planVersion(NaturalLoops loops, BasicBlock header) {
+    Set<BasicBlock> body = loops.getBody(header);
+    if (loops.hasInnerLoop(header) || size(body) > MAX_VERSIONED_SIZE
+        || !(header.getTerminator() instanceof Branch)) {
+      return null;
+    }
+    BasicBlock exit = exit(body);
+    Branch test = (Branch) header.getTerminator();
+    if (body.contains(test.getIfTrue()) == body.contains(test.getIfFalse())) {
+      return null;
+    }
+    BasicBlock inside = body.contains(test.getIfTrue()) ? test.getIfTrue()
+        : test.getIfFalse();
+    if (exit == null || inside.getPredecessors().size() != 1
+        || !isUsedOnlyThroughExit(body, exit)) {
+      return null;
+    }
+    Instruction condition = ranges.getDefinition(resolve(test.getCondition()));
+    if (!(condition instanceof BinaryOperation)
+        || !((BinaryOperation) condition).getOperator().isComparison()) {
+      return null;
+    }
+    BinaryOperation comparison = (BinaryOperation) condition;
+    Comparison limit = new Comparison(inside == test.getIfTrue()
+        ? comparison.getOperator() : comparison.getOperator().negate(),
+        resolve(comparison.getLeft()), resolve(comparison.getRight()));
+
+    VersionedLoop loop = new VersionedLoop(header, body, exit);
+    for (BasicBlock block : body) {
+      if (!dominators.dominates(inside, block)) {
+        continue;
+      }
+      for (Instruction instruction : block.getInstructions()) {
+        if (!isBoundsCheck(instruction)) {
+          continue;
+        }
+        Operand array = resolve(instruction.getUsed().get(0));
+        Operand index = resolve(instruction.getUsed().get(1));
+        Comparison oriented = limit.orient(index);
+        Operand start = counterStart(index, header, body);
+        if (oriented == null || start == null || isInLoop(array, body)
+            || isInLoop(oriented.getRight(), body)
+            || oriented.getOperator() != Operator.LT
+            && oriented.getOperator() != Operator.LE
+            || start.isConstant() && ((Constant) start).getValue() < 0) {
+          continue;
+        }
+        loop.checks.add((Check) instruction);
+        if (!start.isConstant()) {
+          loop.guards.add(new Comparison(Operator.GE, start, new Constant(0,
+              IRType.INT)));
+        }
+        loop.guards.add(new Comparison(oriented.getOperator() == Operator.LT
+            ? Operator.LE : Operator.LT, oriented.getRight(), array));
+      }
+    }
+    return loop.checks.isEmpty() ? null : loop;
+  }
+
+  private static int size(Set<BasicBlock> body) {
+    int size = 0;
+    for (BasicBlock block : body) {
+      size += block.getInstructions().size();
+    }
+    return size;
+  }
+
+  // The block every edge out of the loop goes to, if it is only entered so
+  private static BasicBlock exit(Set<BasicBlock> body) {
+    BasicBlock exit = null;
+    for (BasicBlock block : body) {
+      for (BasicBlock successor : block.getSuccessors()) {
+        if (body.contains(successor)) {
+          continue;
+        }
+        if (exit != null && exit != successor) {
+          return null;
+        }
+        exit = successor;
+      }
+    }
+    if (exit == null || !body.containsAll(exit.getPredecessors())) {
+      return null;
+    }
+    return exit;
+  }
+
+  // Values of the loop used after it can be merged at the exit
+  private boolean isUsedOnlyThroughExit(Set<BasicBlock> body,
+      BasicBlock exit) {
+    for (BasicBlock block : body) {
+      for (Instruction instruction : block.getInstructions()) {
+        Temp defined = instruction.getDefined();
+        if (defined != null && !dominators.dominates(block, exit)
+            && isUsedOutside(defined, body)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private boolean isUsedOutside(Temp temp, Set<BasicBlock> body) {
+    for (BasicBlock block : function.getBlocks()) {
+      if (body.contains(block)) {
+        continue;
+      }
+      for (Instruction instruction : block.getInstructions()) {
+        if (instruction.getUsed().contains(temp)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private boolean isInLoop(Operand operand, Set<BasicBlock> body) {
+    if (operand.isConstant()) {
+      return false;
+    }
+    for (BasicBlock block : body) {
+      if (block.getInstructions().contains(ranges.getDefinition(operand))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // The first value of a phi of the header only ever increased in the loop
+  private Operand counterStart(Operand counter, BasicBlock header,
+      Set<BasicBlock> body) {
+    Instruction definition = ranges.getDefinition(counter);
+    if (!(definition instanceof Phi)
+        || !header.getInstructions().contains(definition)) {
+      return null;
+    }
+    Operand start = null;
+    for (Map.Entry<BasicBlock, Operand> incoming : ((Phi) definition)
+        .getOperands().entrySet()) {
+      Operand value = resolve(incoming.getValue());
+      if (!body.contains(incoming.getKey())) {
+        start = value;
+        continue;
+      }
+      Instruction step = ranges.getDefinition(value);
+      if (!(step instanceof BinaryOperation)) {
+        return null;
+      }
+      BinaryOperation operation = (BinaryOperation) step;
+      Operand left = resolve(operation.getLeft());
+      Operand right = resolve(operation.getRight());
+      if (operation.getOperator() != Operator.ADD || !operation.isChecked()) {
+        return null;
+      }
+      if (!(left.equals(counter) && isPositive(right)
+          || right.equals(counter) && isPositive(left))) {
+        return null;
+      }
+    }
+    return start;
+  }
+
+  private static boolean isPositive(Operand operand) {
+    return operand.isConstant() && ((Constant) operand).getValue() > 0;
+  }
+
+  /*
+   * Tests the guards in the preheader and enters a copy of the loop with the
+   * checks they cover taken out when all of them hold
+   */
+  private BasicBlock version(NaturalLoops loops, VersionedLoop loop) {
+    BasicBlock preheader = loops.preheader(loop.header);
+    if (preheader == null) {
+      return null;
+    }
+    List<Instruction> instructions = preheader.getInstructions();
+    // The jump into the loop becomes a branch into one of the two
+    instructions.remove(instructions.size() - 1);
+
+    Operand passes = null;
+    for (Comparison guard : loop.guards) {
+      Operand right = guard.getRight();
+      if (guard.getOperator() != Operator.GE) {
+        Temp length = function.newTemp(IRType.INT);
+        instructions.add(new Load(length, right, 0, true));
+        right = length;
+      }
+      Temp holds = function.newTemp(IRType.BOOL);
+      instructions.add(new BinaryOperation(guard.getOperator(), holds, guard.getLeft(),
+          right, false));
+      if (passes == null) {
+        passes = holds;
+      } else {
+        Temp both = function.newTemp(IRType.BOOL);
+        instructions.add(new BinaryOperation(Operator.AND, both, passes,
+            holds, false));
+        passes = both;
+      }
+    }
+
+    Map<BasicBlock, BasicBlock> blocks = copyLoop(loop);
+    instructions.add(new Branch(passes, blocks.get(loop.header),
+        loop.header));
+    function.computePredecessors();
+    return blocks.get(loop.header);
+  }
+
+  private Map<BasicBlock, BasicBlock> copyLoop(VersionedLoop loop) {
+    Set<Operand> usedAfter = new HashSet<>();
+    for (BasicBlock block : function.getBlocks()) {
+      if (loop.body.contains(block)) {
+        continue;
+      }
+      for (Instruction instruction : block.getInstructions()) {
+        if (!(block == loop.exit && instruction instanceof Phi)) {
+          usedAfter.addAll(instruction.getUsed());
+        }
+      }
+    }
+
+    Map<BasicBlock, BasicBlock> blocks = new LinkedHashMap<>();
+    Map<Operand, Operand> temps = new HashMap<>();
+    int end = 0;
+    for (BasicBlock block : function.getBlocks()) {
+      if (loop.body.contains(block)) {
+        blocks.put(block, function.newBlock());
+        end = function.getBlocks().indexOf(block) + 1;
+        for (Instruction instruction : block.getInstructions()) {
+          Temp defined = instruction.getDefined();
+          if (defined != null) {
+            temps.put(defined, function.newTemp(defined.getType()));
+          }
+        }
+      }
+    }
+
+    for (Map.Entry<BasicBlock, BasicBlock> entry : blocks.entrySet()) {
+      for (Instruction instruction : entry.getKey().getInstructions()) {
+        if (loop.checks.contains(instruction)) {
+          continue;
+        }
+        Instruction copy = instruction.copy();
+        copy.replaceUses(temps);
+        if (copy.getDefined() != null) {
+          ((Definition) copy).setDefined((Temp) temps.get(copy
+              .getDefined()));
+        }
+        retarget(copy, blocks);
+        entry.getValue().add(copy);
+      }
+    }
+    function.getBlocks().addAll(end, blocks.values());
+
+    // Phis at the exit choose between the values of the two loops
+    Map<Operand, Operand> merged = new HashMap<>();
+    List<Instruction> exit = loop.exit.getInstructions();
+    int phis = 0;
+    while (exit.get(phis) instanceof Phi) {
+      Phi phi = (Phi) exit.get(phis++);
+      for (BasicBlock predecessor : new ArrayList<>(phi.getOperands()
+          .keySet())) {
+        phi.setOperand(blocks.get(predecessor), replace(phi.getOperands().get(
+            predecessor), temps));
+      }
+    }
+    for (Map.Entry<Operand, Operand> entry : temps.entrySet()) {
+      if (!usedAfter.contains(entry.getKey())) {
+        continue;
+      }
+      Phi phi = new Phi(function.newTemp(entry.getKey().getType()));
+      for (BasicBlock predecessor : loop.exit.getPredecessors()) {
+        phi.setOperand(predecessor, entry.getKey());
+        phi.setOperand(blocks.get(predecessor), entry.getValue());
+      }
+      exit.add(0, phi);
+      phis++;
+      merged.put(entry.getKey(), phi.getDefined());
+    }
+    for (BasicBlock block : function.getBlocks()) {
+      if (loop.body.contains(block) || blocks.containsValue(block)) {
+        continue;
+      }
+      List<Instruction> instructions = block.getInstructions();
+      for (int i = (block == loop.exit) ? phis : 0; i < instructions.size();
+          i++) {
+        instructions.get(i).replaceUses(merged);
+      }
+    }
+    return blocks;
+  }
+
+  private static Operand replace(Operand operand,
+      Map<Operand, Operand> replacements) {
+    Operand replacement = replacements.get(operand);
+    return (replacement == null) ? operand : replacement;
+  }
+
+  // Points the jumps of a copied block at the copies of their targets
+  private static void retarget(Instruction instruction,
+      Map<BasicBlock, BasicBlock> blocks) {
+    if (instruction instanceof Jump) {
+      Jump jump = (Jump) instruction;
+      if (blocks.containsKey(jump.getTarget())) {
+        jump.setTarget(blocks.get(jump.getTarget()));
+      }
+    } else if (instruction instanceof Branch) {
+      Branch branch = (Branch) instruction;
+      for (BasicBlock target : Arrays.asList(branch.getIfTrue(),
+          branch.getIfFalse())) {
+        if (blocks.containsKey(target)) {
+          branch.replaceTarget(target, blocks.get(target));
+        }
+      }
+    } else if (instruction instanceof Phi) {
+      Map<BasicBlock, Operand> operands = ((Phi) instruction).getOperands();
+      Map<BasicBlock, Operand> copied = new LinkedHashMap<>(operands);
+      operands.clear();
+      for (Map.Entry<BasicBlock, Operand> operand : copied.entrySet()) {
+        BasicBlock predecessor = operand.getKey();
+        operands.put(blocks.containsKey(predecessor) ? blocks
+            .get(predecessor) : predecessor, operand.getValue());
+      }
+    }
+  }
+
+  private static class VersionedLoop {
+
+    final BasicBlock header;
+    final Set<BasicBlock> body;
+    final BasicBlock exit;
+    final List<Check> checks = new ArrayList<>();
+    // Compared with an array, the right operand stands for its length
+    final Set<Comparison> guards = new LinkedHashSet<>();
+
+    VersionedLoop(BasicBlock header, Set<BasicBlock> body, BasicBlock exit) {
+      this.header = header;
+      this.body = body;
+      this.exit = exit;
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package smacc.ir;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// Goes to ifTrue when the condition is non-zero and ifFalse otherwise
+public class Branch extends Instruction {
+
+  private Operand condition;
+  private BasicBlock ifTrue;
+  private BasicBlock ifFalse;
+
+  public Branch(Operand condition, BasicBlock ifTrue, BasicBlock ifFalse) {
+    this.condition = condition;
+    this.ifTrue = ifTrue;
+    this.ifFalse = ifFalse;
+  }
+
+  public Operand getCondition() {
+    return condition;
+  }
+
+  public BasicBlock getIfTrue() {
+    return ifTrue;
+  }
+
+  public BasicBlock getIfFalse() {
+    return ifFalse;
+  }
+
+  public void replaceTarget(BasicBlock target, BasicBlock replacement) {
+    if (ifTrue == target) {
+      ifTrue = replacement;
+    }
+    if (ifFalse == target) {
+      ifFalse = replacement;
+    }
+  }
+
+  @Override
+  public List<Operand> getUsed() {
+    return Collections.singletonList(condition);
+  }
+
+  @Override
+  public void replaceUses(Map<Operand, Operand> replacements) {
+    condition = replace(condition, replacements);
+  }
+
+  @Override
+  public boolean isTerminator() {
+    return true;
+  }
+
+  @Override
+  public List<BasicBlock> getSuccessors() {
+    return Arrays.asList(ifTrue, ifFalse);
+  }
+
+  @Override
+  public Instruction copy() {
+    return new Branch(condition, ifTrue, ifFalse);
+  }
+
+  @Override
+  public String toString() {
+    return "BRANCH " + condition + ", " + ifTrue.getName() + ", "
+        + ifFalse.getName();
+  }
+}
@@ -0,0 +1,73 @@
+package smacc.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import smacc.Function;
+
+// Calls a function of the program, which may have any side effect
+public class Call extends Definition {
+
+  private Temp destination;
+  private Function function;
+  private List<Operand> arguments;
+
+  public Call(Temp destination, Function function, List<Operand> arguments) {
+    this.destination = destination;
+    this.function = function;
+    this.arguments = arguments;
+  }
+
+  public Function getFunction() {
+    return function;
+  }
+
+  public List<Operand> getArguments() {
+    return arguments;
+  }
+
+  @Override
+  public Temp getDefined() {
+    return destination;
+  }
+
+  @Override
+  public void setDefined(Temp temp) {
+    destination = temp;
+  }
+
+  @Override
+  public List<Operand> getUsed() {
+    return arguments;
+  }
+
+  @Override
+  public void replaceUses(Map<Operand, Operand> replacements) {
+    List<Operand> replaced = new ArrayList<>();
+    for (Operand argument : arguments) {
+      replaced.add(replace(argument, replacements));
+    }
+    arguments = replaced;
+  }
+
+  @Override
+  public boolean hasSideEffects() {
+    return true;
+  }
+
+  @Override
+  public boolean writesMemory() {
+    return true;
+  }
+
+  @Override
+  public Instruction copy() {
+    return new Call(destination, function, new ArrayList<>(arguments));
+  }
+
+  @Override
+  public String toString() {
+    return destination + " = CALL " + function.getId() + arguments;
+  }
+}
@@ -0,0 +1,58 @@
+package smacc.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Check
+ * A runtime check that exits with an error when it fails. Array bounds
+ * checks take the array and the index, the others a single value.
+ */
+public class Check extends Instruction {
+
+  public enum Kind {
+    ARRAY_BOUNDS, NULL_POINTER, DIVIDE_BY_ZERO
+  }
+
+  private Kind kind;
+  private List<Operand> operands;
+
+  public Check(Kind kind, List<Operand> operands) {
+    this.kind = kind;
+    this.operands = operands;
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  @Override
+  public List<Operand> getUsed() {
+    return operands;
+  }
+
+  @Override
+  public void replaceUses(Map<Operand, Operand> replacements) {
+    List<Operand> replaced = new ArrayList<>();
+    for (Operand operand : operands) {
+      replaced.add(replace(operand, replacements));
+    }
+    operands = replaced;
+  }
+
+  @Override
+  public boolean hasSideEffects() {
+    return true;
+  }
+
+  @Override
+  public Instruction copy() {
+    return new Check(kind, new ArrayList<>(operands));
+  }
+
+  @Override
+  public String toString() {
+    return "CHECK " + kind.name() + operands;
+  }
+}
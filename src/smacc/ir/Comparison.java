@@ -0,0 +1,64 @@
+package smacc.ir;
+
+import smacc.ir.BinaryOperation.Operator;
+
+/*
+ * Comparison
+ * A relation known to hold between two operands, such as the condition of
+ * a branch on the edge it was taken along
+ */
+public class Comparison {
+
+  private final Operator operator;
+  private final Operand left;
+  private final Operand right;
+
+  public Comparison(Operator operator, Operand left, Operand right) {
+    this.operator = operator;
+    this.left = left;
+    this.right = right;
+  }
+
+  public Operator getOperator() {
+    return operator;
+  }
+
+  public Operand getLeft() {
+    return left;
+  }
+
+  public Operand getRight() {
+    return right;
+  }
+
+  // The same comparison with operand on the left, null if not about it
+  public Comparison orient(Operand operand) {
+    if (left.equals(operand)) {
+      return this;
+    }
+    if (right.equals(operand)) {
+      return new Comparison(operator.swap(), right, left);
+    }
+    return null;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof Comparison)) {
+      return false;
+    }
+    Comparison other = (Comparison) o;
+    return other.operator == operator && other.left.equals(left)
+        && other.right.equals(right);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * left.hashCode() + right.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return left + " " + operator.name() + " " + right;
+  }
+}
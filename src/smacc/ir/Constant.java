@@ -0,0 +1,43 @@
+package smacc.ir;
+
+/*
+ * Constant
+ * An integer, char or bool literal, null is the reference constant 0
+ */
+public class Constant extends Operand {
+
+  private int value;
+
+  public Constant(int value, IRType type) {
+    super(type);
+    this.value = value;
+  }
+
+  public int getValue() {
+    return value;
+  }
+
+  @Override
+  public boolean isConstant() {
+    return true;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof Constant)) {
+      return false;
+    }
+    Constant other = (Constant) o;
+    return other.value == value && other.type == type;
+  }
+
+  @Override
+  public int hashCode() {
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    return "#" + value;
+  }
+}
@@ -0,0 +1,296 @@
+package smacc.ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import smacc.ir.BinaryOperation.Operator;
+
+/*
+ * ConstantPropagation
+ * Sparse conditional constant propagation (Wegman and Zadeck) over a
+ * function in SSA form.
+ *
+ * Temps start out undefined and are only ever lowered to a constant and
+ * then to varying, while blocks are only evaluated once an edge into them is
+ * found to be executable. Temps left constant are replaced by their value,
+ * branches on a constant become jumps and blocks never found executable are
+ * deleted. Operations whose folding would overflow or divide by zero are
+ * left alone so the runtime error is still raised.
+ */
+public class ConstantPropagation {
+
+  // Lattice value of temps that may hold more than one value
+  private static final Constant VARYING = new Constant(0, IRType.INT);
+
+  private IRFunction function;
+  private Map<Temp, Constant> values = new HashMap<>();
+  private Map<Temp, List<Instruction>> users = new HashMap<>();
+  private Map<Instruction, BasicBlock> blockOf = new HashMap<>();
+
+  private Set<BasicBlock> executable = new HashSet<>();
+  private Map<BasicBlock, Set<BasicBlock>> executableEdges = new HashMap<>();
+  private Deque<BasicBlock[]> edgeWorklist = new ArrayDeque<>();
+  private Deque<Instruction> instructionWorklist = new ArrayDeque<>();
+
+  public static void run(IRFunction function) {
+    new ConstantPropagation(function).run();
+  }
+
+  private ConstantPropagation(IRFunction function) {
+    this.function = function;
+  }
+
+  private void run() {
+    for (BasicBlock block : function.getBlocks()) {
+      executableEdges.put(block, new HashSet<BasicBlock>());
+      for (Instruction instruction : block.getInstructions()) {
+        blockOf.put(instruction, block);
+        for (Operand operand : instruction.getUsed()) {
+          if (!operand.isConstant()) {
+            if (!users.containsKey(operand)) {
+              users.put((Temp) operand, new ArrayList<Instruction>());
+            }
+            users.get(operand).add(instruction);
+          }
+        }
+      }
+    }
+
+    edgeWorklist.add(new BasicBlock[] { null, function.getEntry() });
+    while (!edgeWorklist.isEmpty() || !instructionWorklist.isEmpty()) {
+      while (!edgeWorklist.isEmpty()) {
+        BasicBlock[] edge = edgeWorklist.poll();
+        BasicBlock target = edge[1];
+        if (edge[0] != null && !executableEdges.get(target).add(edge[0])) {
+          continue;
+        }
+        boolean firstVisit = executable.add(target);
+        for (Instruction instruction : target.getInstructions()) {
+          if (firstVisit || instruction instanceof Phi) {
+            visit(instruction);
+          }
+        }
+      }
+      while (!instructionWorklist.isEmpty()) {
+        Instruction instruction = instructionWorklist.poll();
+        if (executable.contains(blockOf.get(instruction))) {
+          visit(instruction);
+        }
+      }
+    }
+
+    rewrite();
+  }
+
+  // Null while undefined, VARYING once the temp may take several values
+  private Constant valueOf(Operand operand) {
+    if (operand.isConstant()) {
+      return (Constant) operand;
+    }
+    return values.get(operand);
+  }
+
+  private void lower(Temp temp, Constant value) {
+    Constant old = values.get(temp);
+    if (old == VARYING || (old != null && value != VARYING
+        && old.getValue() == value.getValue())) {
+      return;
+    }
+    values.put(temp, (old == null) ? value : VARYING);
+    if (users.containsKey(temp)) {
+      instructionWorklist.addAll(users.get(temp));
+    }
+  }
+
+  private void addEdge(BasicBlock from, BasicBlock to) {
+    edgeWorklist.add(new BasicBlock[] { from, to });
+  }
+
+  private void visit(Instruction instruction) {
+    BasicBlock block = blockOf.get(instruction);
+    if (instruction instanceof Jump) {
+      addEdge(block, ((Jump) instruction).getTarget());
+    } else if (instruction instanceof Branch) {
+      Branch branch = (Branch) instruction;
+      Constant condition = valueOf(branch.getCondition());
+      if (condition == VARYING) {
+        addEdge(block, branch.getIfTrue());
+        addEdge(block, branch.getIfFalse());
+      } else if (condition != null) {
+        addEdge(block, (condition.getValue() != 0) ? branch.getIfTrue()
+            : branch.getIfFalse());
+      }
+    } else if (instruction.getDefined() != null) {
+      Temp defined = instruction.getDefined();
+      Constant value = evaluate(instruction);
+      if (value != null) {
+        lower(defined, (value == VARYING) ? VARYING : new Constant(
+            value.getValue(), defined.getType()));
+      }
+    }
+  }
+
+  private Constant evaluate(Instruction instruction) {
+    if (instruction instanceof Move) {
+      return valueOf(((Move) instruction).getSource());
+    }
+    if (instruction instanceof Phi) {
+      Phi phi = (Phi) instruction;
+      Constant value = null;
+      Set<BasicBlock> edges = executableEdges.get(blockOf.get(phi));
+      for (Map.Entry<BasicBlock, Operand> operand : phi.getOperands()
+          .entrySet()) {
+        if (!edges.contains(operand.getKey())) {
+          continue;
+        }
+        Constant incoming = valueOf(operand.getValue());
+        if (incoming == VARYING || (value != null && incoming != null
+            && value.getValue() != incoming.getValue())) {
+          return VARYING;
+        }
+        if (incoming != null) {
+          value = incoming;
+        }
+      }
+      return value;
+    }
+    if (instruction instanceof BinaryOperation) {
+      return evaluate((BinaryOperation) instruction);
+    }
+    return VARYING;
+  }
+
+  private Constant evaluate(BinaryOperation operation) {
+    Constant left = valueOf(operation.getLeft());
+    Constant right = valueOf(operation.getRight());
+    Operator operator = operation.getOperator();
+
+    // One known operand is enough to decide these
+    if (isValue(left, 0) || isValue(right, 0)) {
+      if (operator == Operator.AND || operator == Operator.MUL) {
+        return new Constant(0, IRType.INT);
+      }
+    }
+    if (operator == Operator.OR && (isValue(left, 1) || isValue(right, 1))) {
+      return new Constant(1, IRType.INT);
+    }
+
+    if (left == VARYING || right == VARYING) {
+      return VARYING;
+    }
+    if (left == null || right == null) {
+      return null;
+    }
+    Integer value = fold(operator, left.getValue(), right.getValue(),
+        operation.isChecked());
+    return (value == null) ? VARYING : new Constant(value, IRType.INT);
+  }
+
+  private static boolean isValue(Constant constant, int value) {
+    return constant != null && constant != VARYING
+        && constant.getValue() == value;
+  }
+
+  // Null when the operation raises a runtime error instead
+  static Integer fold(Operator operator, int left, int right, boolean checked) {
+    try {
+      switch (operator) {
+        case ADD:
+          return checked ? Math.addExact(left, right) : left + right;
+        case SUB:
+          return checked ? Math.subtractExact(left, right) : left - right;
+        case MUL:
+          return checked ? Math.multiplyExact(left, right) : left * right;
+        case DIV:
+          return (right == 0) ? null : left / right;
+        case MOD:
+          return (right == 0) ? null : left % right;
+        case AND:
+          return left & right;
+        case OR:
+          return left | right;
+        case XOR:
+          return left ^ right;
+        case SHL:
+          return left << right;
+        case EQ:
+          return (left == right) ? 1 : 0;
+        case NE:
+          return (left != right) ? 1 : 0;
+        case LT:
+          return (left < right) ? 1 : 0;
+        case LE:
+          return (left <= right) ? 1 : 0;
+        case GT:
+          return (left > right) ? 1 : 0;
+        default:
+          return (left >= right) ? 1 : 0;
+      }
+    } catch (ArithmeticException e) {
+      return null;
+    }
+  }
+
+  private void rewrite() {
+    Map<Operand, Operand> constants = new HashMap<>();
+    for (Map.Entry<Temp, Constant> value : values.entrySet()) {
+      if (value.getValue() != VARYING) {
+        constants.put(value.getKey(), value.getValue());
+      }
+    }
+
+    for (BasicBlock block : function.getBlocks()) {
+      if (!executable.contains(block)) {
+        continue;
+      }
+      List<Instruction> instructions = block.getInstructions();
+      for (int i = 0; i < instructions.size(); i++) {
+        Instruction instruction = instructions.get(i);
+        instruction.replaceUses(constants);
+        if (instruction instanceof Phi) {
+          Phi phi = (Phi) instruction;
+          phi.getOperands().keySet().retainAll(executableEdges.get(block));
+          if (phi.getOperands().size() == 1) {
+            instructions.set(i, new Move(phi.getDefined(), phi.getOperands()
+                .values().iterator().next()));
+          }
+        } else if (instruction instanceof Branch) {
+          Branch branch = (Branch) instruction;
+          if (branch.getCondition().isConstant()) {
+            instructions.set(i, new Jump(((Constant) branch.getCondition())
+                .getValue() != 0 ? branch.getIfTrue() : branch.getIfFalse()));
+          }
+        }
+      }
+
+      // A constant result means a checked operation cannot have failed
+      Iterator<Instruction> iterator = instructions.iterator();
+      while (iterator.hasNext()) {
+        Instruction instruction = iterator.next();
+        if (constants.containsKey(instruction.getDefined())
+            || isPassingCheck(instruction)) {
+          iterator.remove();
+        }
+      }
+    }
+
+    function.getBlocks().retainAll(executable);
+    function.computePredecessors();
+  }
+
+  private static boolean isPassingCheck(Instruction instruction) {
+    if (!(instruction instanceof Check)
+        || ((Check) instruction).getKind() != Check.Kind.DIVIDE_BY_ZERO) {
+      return false;
+    }
+    Operand divisor = instruction.getUsed().get(0);
+    return divisor.isConstant() && ((Constant) divisor).getValue() != 0;
+  }
+}
@@ -0,0 +1,55 @@
+package smacc.ir;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * DeadCodeElimination
+ * Removes the instructions of a function in SSA form whose results are never
+ * needed. Terminators and instructions with side effects are live, as is the
+ * single definition of every temp a live instruction reads. Anything not
+ * found live this way is deleted, including cycles of phis and arithmetic
+ * only feeding each other around a loop.
+ */
+public class DeadCodeElimination {
+
+  public static void run(IRFunction function) {
+    Map<Operand, Instruction> definitions = new HashMap<>();
+    Set<Instruction> live = new HashSet<>();
+    Deque<Instruction> worklist = new ArrayDeque<>();
+    for (BasicBlock block : function.getBlocks()) {
+      for (Instruction instruction : block.getInstructions()) {
+        if (instruction.getDefined() != null) {
+          definitions.put(instruction.getDefined(), instruction);
+        }
+        if (instruction.isTerminator() || instruction.hasSideEffects()) {
+          live.add(instruction);
+          worklist.add(instruction);
+        }
+      }
+    }
+
+    while (!worklist.isEmpty()) {
+      for (Operand operand : worklist.poll().getUsed()) {
+        Instruction definition = definitions.get(operand);
+        if (definition != null && live.add(definition)) {
+          worklist.add(definition);
+        }
+      }
+    }
+
+    for (BasicBlock block : function.getBlocks()) {
+      Iterator<Instruction> iterator = block.getInstructions().iterator();
+      while (iterator.hasNext()) {
+        if (!live.contains(iterator.next())) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+}
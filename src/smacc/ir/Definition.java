@@ -0,0 +1,10 @@
+package smacc.ir;
+
+/*
+ * Definition
+ * An instruction able to write a temp, which is renamed in SSA form
+ */
+public abstract class Definition extends Instruction {
+
+  public abstract void setDefined(Temp temp);
+}
@@ -0,0 +1,132 @@
+package smacc.ir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * DominatorTree
+ * Immediate dominators of the blocks of a function, found with the
+ * iterative algorithm of Cooper, Harvey and Kennedy over reverse postorder,
+ * together with the dominance frontier of every block.
+ *
+ * Predecessors must be up to date and every block reachable.
+ */
+public class DominatorTree {
+
+  private List<BasicBlock> reversePostorder = new ArrayList<>();
+  private Map<BasicBlock, Integer> order = new HashMap<>();
+  private Map<BasicBlock, BasicBlock> immediateDominator = new HashMap<>();
+  private Map<BasicBlock, List<BasicBlock>> children = new HashMap<>();
+  private Map<BasicBlock, Set<BasicBlock>> frontiers = new HashMap<>();
+
+  public DominatorTree(IRFunction function) {
+    BasicBlock entry = function.getEntry();
+    postorder(entry, new HashSet<BasicBlock>());
+    Collections.reverse(reversePostorder);
+    for (int i = 0; i < reversePostorder.size(); i++) {
+      order.put(reversePostorder.get(i), i);
+      children.put(reversePostorder.get(i), new ArrayList<BasicBlock>());
+      frontiers.put(reversePostorder.get(i), new HashSet<BasicBlock>());
+    }
+
+    immediateDominator.put(entry, entry);
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (BasicBlock block : reversePostorder) {
+        if (block == entry) {
+          continue;
+        }
+        BasicBlock dominator = null;
+        for (BasicBlock predecessor : block.getPredecessors()) {
+          if (!immediateDominator.containsKey(predecessor)) {
+            continue;
+          }
+          dominator = (dominator == null) ? predecessor : intersect(
+              predecessor, dominator);
+        }
+        if (immediateDominator.get(block) != dominator) {
+          immediateDominator.put(block, dominator);
+          changed = true;
+        }
+      }
+    }
+    immediateDominator.remove(entry);
+
+    for (BasicBlock block : reversePostorder) {
+      BasicBlock dominator = immediateDominator.get(block);
+      if (dominator != null) {
+        children.get(dominator).add(block);
+      }
+    }
+
+    // A join is in the frontier of every block between its predecessors
+    // and its immediate dominator
+    for (BasicBlock block : reversePostorder) {
+      if (block.getPredecessors().size() < 2) {
+        continue;
+      }
+      for (BasicBlock predecessor : block.getPredecessors()) {
+        BasicBlock runner = predecessor;
+        while (runner != null && runner != immediateDominator.get(block)) {
+          frontiers.get(runner).add(block);
+          runner = immediateDominator.get(runner);
+        }
+      }
+    }
+  }
+
+  private void postorder(BasicBlock block, Set<BasicBlock> visited) {
+    visited.add(block);
+    for (BasicBlock successor : block.getSuccessors()) {
+      if (!visited.contains(successor)) {
+        postorder(successor, visited);
+      }
+    }
+    reversePostorder.add(block);
+  }
+
+  private BasicBlock intersect(BasicBlock first, BasicBlock second) {
+    while (first != second) {
+      while (order.get(first) > order.get(second)) {
+        first = immediateDominator.get(first);
+      }
+      while (order.get(second) > order.get(first)) {
+        second = immediateDominator.get(second);
+      }
+    }
+    return first;
+  }
+
+  public List<BasicBlock> getReversePostorder() {
+    return reversePostorder;
+  }
+
+  // Null for the entry block
+  public BasicBlock getImmediateDominator(BasicBlock block) {
+    return immediateDominator.get(block);
+  }
+
+  public List<BasicBlock> getChildren(BasicBlock block) {
+    return children.get(block);
+  }
+
+  public Set<BasicBlock> getFrontier(BasicBlock block) {
+    return frontiers.get(block);
+  }
+
+  public boolean dominates(BasicBlock dominator, BasicBlock block) {
+    while (block != null) {
+      if (block == dominator) {
+        return true;
+      }
+      block = immediateDominator.get(block);
+    }
+    return false;
+  }
+}
@@ -0,0 +1,140 @@
+package smacc.ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * GlobalValueNumbering
+ * Dominator based value numbering with copy propagation, on a function in
+ * SSA form. A temp holds the same value wherever it is read, so an
+ * operation on the same operands as one in a dominating block gives the
+ * same result and is replaced by it. Moves are removed and their
+ * destination replaced by their source, so copies share a value number.
+ *
+ * Checks identical to a dominating one always pass. Loads are only reused
+ * within a run of blocks entered from the previous one alone, and only up
+ * to the next instruction writing memory. A store is forwarded to the
+ * loads of the word it wrote. The lengths of arrays are never written again
+ * and are reused anywhere they are dominated.
+ */
+public class GlobalValueNumbering {
+
+  private IRFunction function;
+  private DominatorTree dominators;
+  private Map<Operand, Operand> replacements = new HashMap<>();
+
+  public static void run(IRFunction function) {
+    new GlobalValueNumbering(function).run();
+  }
+
+  private GlobalValueNumbering(IRFunction function) {
+    this.function = function;
+  }
+
+  private void run() {
+    function.computePredecessors();
+    dominators = new DominatorTree(function);
+    visit(function.getEntry(), new HashMap<List<Object>, Operand>(),
+        new HashMap<List<Object>, Operand>());
+
+    // Phis read values from blocks visited after them
+    for (BasicBlock block : function.getBlocks()) {
+      for (Instruction instruction : block.getInstructions()) {
+        instruction.replaceUses(replacements);
+      }
+    }
+  }
+
+  private void visit(BasicBlock block, Map<List<Object>, Operand> available,
+      Map<List<Object>, Operand> loads) {
+    Iterator<Instruction> iterator = block.getInstructions().iterator();
+    while (iterator.hasNext()) {
+      Instruction instruction = iterator.next();
+      instruction.replaceUses(replacements);
+      Temp defined = instruction.getDefined();
+
+      if (instruction instanceof Move) {
+        replacements.put(defined, ((Move) instruction).getSource());
+        iterator.remove();
+        continue;
+      }
+      if (instruction.writesMemory()) {
+        loads.clear();
+      }
+      if (instruction instanceof Store) {
+        Store store = (Store) instruction;
+        if (!store.getType().isByte()) {
+          loads.put(Arrays.<Object>asList(store.getBase(), store.getOffset(),
+              false), store.getValue());
+        }
+        continue;
+      }
+
+      List<Object> key = key(instruction);
+      if (key == null) {
+        continue;
+      }
+      Map<List<Object>, Operand> table = isMemoryRead(instruction) ? loads
+          : available;
+      Operand value = table.get(key);
+      if (value == null) {
+        table.put(key, defined);
+      } else {
+        if (defined != null) {
+          replacements.put(defined, value);
+        }
+        iterator.remove();
+      }
+    }
+
+    for (BasicBlock child : dominators.getChildren(block)) {
+      // Memory may have been written on another way into a join
+      boolean onlyFromBlock = child.getPredecessors().size() == 1;
+      visit(child, new HashMap<>(available), onlyFromBlock
+          ? new HashMap<>(loads) : new HashMap<List<Object>, Operand>());
+    }
+  }
+
+  private static boolean isMemoryRead(Instruction instruction) {
+    return instruction instanceof Load
+        && !((Load) instruction).isImmutable();
+  }
+
+  // What the value of an instruction depends on, null if it is not reused
+  private static List<Object> key(Instruction instruction) {
+    if (instruction instanceof BinaryOperation) {
+      // Both operations fail or neither does, so checking makes no odds
+      BinaryOperation operation = (BinaryOperation) instruction;
+      Operand left = operation.getLeft();
+      Operand right = operation.getRight();
+      if (operation.getOperator().isCommutative()
+          && order(left) > order(right)) {
+        Operand swapped = left;
+        left = right;
+        right = swapped;
+      }
+      return Arrays.<Object>asList(operation.getOperator(), left, right);
+    }
+    if (instruction instanceof Load) {
+      Load load = (Load) instruction;
+      return Arrays.<Object>asList(load.getBase(), load.getOffset(), load
+          .getDefined().getType().isByte());
+    }
+    if (instruction instanceof Check) {
+      List<Object> key = new ArrayList<Object>(instruction.getUsed());
+      key.add(((Check) instruction).getKind());
+      return key;
+    }
+    return null;
+  }
+
+  // Constants go last, so commutative operations are written one way
+  private static int order(Operand operand) {
+    return operand.isConstant() ? Integer.MAX_VALUE : ((Temp) operand)
+        .getId();
+  }
+}
@@ -0,0 +1,95 @@
+package smacc.ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import smacc.Function;
+
+/*
+ * IRFunction
+ * The control flow graph of a function, the first block is the entry and
+ * blocks are kept in the order they will be laid out in
+ */
+public class IRFunction {
+
+  private final Function function;
+  private final List<BasicBlock> blocks = new ArrayList<>();
+  private int tempCount = 0;
+  private int blockCount = 0;
+
+  public IRFunction(Function function) {
+    this.function = function;
+  }
+
+  public Function getFunction() {
+    return function;
+  }
+
+  public String getName() {
+    return function.getId();
+  }
+
+  public List<BasicBlock> getBlocks() {
+    return blocks;
+  }
+
+  public BasicBlock getEntry() {
+    return blocks.get(0);
+  }
+
+  public Temp newTemp(IRType type) {
+    return new Temp(tempCount++, type);
+  }
+
+  public int getTempCount() {
+    return tempCount;
+  }
+
+  // Creates a block without placing it in the layout
+  public BasicBlock newBlock() {
+    return new BasicBlock(blockCount++);
+  }
+
+  public void computePredecessors() {
+    for (BasicBlock block : blocks) {
+      block.getPredecessors().clear();
+    }
+    for (BasicBlock block : blocks) {
+      for (BasicBlock successor : block.getSuccessors()) {
+        if (!successor.getPredecessors().contains(block)) {
+          successor.getPredecessors().add(block);
+        }
+      }
+    }
+  }
+
+  // Drops blocks that cannot be reached from the entry
+  public void removeUnreachableBlocks() {
+    Set<BasicBlock> reached = new HashSet<>();
+    Deque<BasicBlock> worklist = new ArrayDeque<>();
+    reached.add(getEntry());
+    worklist.add(getEntry());
+    while (!worklist.isEmpty()) {
+      for (BasicBlock successor : worklist.poll().getSuccessors()) {
+        if (reached.add(successor)) {
+          worklist.add(successor);
+        }
+      }
+    }
+    blocks.retainAll(reached);
+    computePredecessors();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder(getName() + ":\n");
+    for (BasicBlock block : blocks) {
+      builder.append(block);
+    }
+    return builder.toString();
+  }
+}
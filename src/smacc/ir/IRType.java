@@ -0,0 +1,35 @@
+package smacc.ir;
+
+import smacc.types.BoolType;
+import smacc.types.CharType;
+import smacc.types.IntType;
+import smacc.types.WACCType;
+
+/*
+ * IRType
+ * The machine level type of an IR value, chars and bools are stored in a
+ * single byte while ints and references to arrays, strings and pairs take a
+ * whole word
+ */
+public enum IRType {
+  INT, BOOL, CHAR, REFERENCE;
+
+  public static IRType of(WACCType type) {
+    if (type instanceof BoolType) {
+      return BOOL;
+    } else if (type instanceof CharType) {
+      return CHAR;
+    } else if (type instanceof IntType) {
+      return INT;
+    }
+    return REFERENCE;
+  }
+
+  public int getSizeInBytes() {
+    return isByte() ? 1 : 4;
+  }
+
+  public boolean isByte() {
+    return this == BOOL || this == CHAR;
+  }
+}
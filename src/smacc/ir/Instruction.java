@@ -0,0 +1,52 @@
+package smacc.ir;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Instruction
+ * A three-address IR instruction, writing at most one temp
+ */
+public abstract class Instruction {
+
+  // Temp written by the instruction, null if it writes none
+  public Temp getDefined() {
+    return null;
+  }
+
+  public List<Operand> getUsed() {
+    return Collections.emptyList();
+  }
+
+  // Replaces every read of an operand in replacements, constants included
+  public void replaceUses(Map<Operand, Operand> replacements) {
+  }
+
+  // Instructions that may not be removed even when their result is unused
+  public boolean hasSideEffects() {
+    return false;
+  }
+
+  // Instructions that may change what a load from the heap reads
+  public boolean writesMemory() {
+    return false;
+  }
+
+  public boolean isTerminator() {
+    return false;
+  }
+
+  public List<BasicBlock> getSuccessors() {
+    return Collections.emptyList();
+  }
+
+  // A new instruction reading and writing the same operands
+  public abstract Instruction copy();
+
+  protected static Operand replace(Operand operand,
+      Map<Operand, Operand> replacements) {
+    Operand replacement = replacements.get(operand);
+    return (replacement == null) ? operand : replacement;
+  }
+}
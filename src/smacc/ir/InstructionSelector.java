@@ -0,0 +1,598 @@
+package smacc.ir;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import smacc.Function;
+import smacc.arm.*;
+import smacc.arm.ARMAddNode.AddComparator;
+import smacc.arm.ARMBranchNode.BranchComparator;
+import smacc.arm.ARMLdrNode.LdrComparator;
+import smacc.arm.ARMLogicalNode.LogicalComparator;
+import smacc.arm.ARMMovNode.MovComparator;
+import smacc.arm.ARMMulNode.MulComparator;
+import smacc.arm.ARMStrNode.StrComparator;
+import smacc.arm.ARMSubNode.SubComparator;
+import smacc.arm.OperandTwo.ShiftType;
+import smacc.arm.PredefinedFunctionHandler.PredefinedFunction;
+import smacc.arm.Register.SpecialReg;
+import smacc.arm.smartalloc.GraphColouringAllocator;
+
+/*
+ * InstructionSelector
+ * Turns IR functions into ARM nodes. Temps become virtual registers, which
+ * the graph colouring allocator maps onto r4 to r11 once a whole function
+ * has been selected, before the prologue and epilogue are known.
+ *
+ * The frame below the saved registers holds a scratch word for reads
+ * followed by any spill slots.
+ */
+public class InstructionSelector {
+
+  private static final Register REG_R0 = new Register(SpecialReg.r0);
+  private static final Register REG_R1 = new Register(SpecialReg.r1);
+  private static final Register REG_SP = new Register(SpecialReg.sp);
+
+  private ARMFileStart fileStart;
+  private PredefinedFunctionHandler predefinedFunctionHandler;
+  private List<ARMNode> program = new ArrayList<>();
+
+  // Body of the function being selected, the handler adds its calls here
+  private List<ARMNode> code = new ArrayList<>();
+
+  private Map<BasicBlock, ARMLabel> labels;
+  private BasicBlock nextBlock;
+  private int nextRegister;
+  private boolean usesScratch;
+  private List<Register> savedRegisters;
+  private Map<Temp, Integer> useCounts;
+
+  // Placeholder loads of the parameters, fixed once the frame is known
+  private Map<ARMNode, Param> parameters;
+  // Placeholder stores of tail call arguments, with their parameter offsets
+  private Map<ARMNode, Integer> tailArguments;
+
+  public InstructionSelector() {
+    fileStart = new ARMFileStart();
+    predefinedFunctionHandler = new PredefinedFunctionHandler(fileStart, code);
+    program.add(fileStart);
+  }
+
+  public List<ARMNode> getARM() {
+    program.add(new ARMFileEnd(predefinedFunctionHandler));
+    return program;
+  }
+
+  public void select(IRFunction function) {
+    code.clear();
+    labels = new HashMap<>();
+    nextRegister = Register.FIRST_VIRTUAL + function.getTempCount();
+    usesScratch = false;
+    savedRegisters = new ArrayList<>();
+    parameters = new IdentityHashMap<>();
+    tailArguments = new IdentityHashMap<>();
+
+    List<BasicBlock> blocks = function.getBlocks();
+    for (BasicBlock block : blocks) {
+      labels.put(block, new ARMLabel(false));
+    }
+    useCounts = new HashMap<>();
+    for (BasicBlock block : blocks) {
+      for (Instruction instruction : block.getInstructions()) {
+        for (Operand operand : instruction.getUsed()) {
+          if (!operand.isConstant()) {
+            Integer count = useCounts.get(operand);
+            useCounts.put((Temp) operand, (count == null) ? 1 : count + 1);
+          }
+        }
+      }
+    }
+    for (int i = 0; i < blocks.size(); i++) {
+      BasicBlock block = blocks.get(i);
+      nextBlock = (i + 1 < blocks.size()) ? blocks.get(i + 1) : null;
+      if (!block.getPredecessors().isEmpty()) {
+        code.add(labels.get(block));
+      }
+      List<Instruction> instructions = block.getInstructions();
+      for (int j = 0; j < instructions.size(); j++) {
+        Instruction instruction = instructions.get(j);
+        Instruction next = (j + 1 < instructions.size()) ? instructions
+            .get(j + 1) : null;
+        if (isBranchOnComparison(instruction, next)) {
+          selectComparisonBranch((BinaryOperation) instruction, (Branch) next);
+          j++;
+        } else if (isTailCall(function, instructions, j)) {
+          selectTailCall((Call) instruction);
+          break;
+        } else {
+          selectInstruction(instruction);
+        }
+      }
+    }
+
+    int scratch = usesScratch ? 4 : 0;
+    GraphColouringAllocator allocator = new GraphColouringAllocator(code,
+        scratch);
+    allocator.allocate();
+    savedRegisters.addAll(allocator.getSavedRegisters());
+    int frame = scratch + 4 * allocator.getSpillSlotCount();
+
+    // Leaf functions leave the return address in lr
+    boolean savesLinkRegister = !ARMFunctionStart.isLeaf(code);
+    int saved = 4 * (savedRegisters.size() + (savesLinkRegister ? 1 : 0));
+
+    program.add(new ARMLabel(function.getName()));
+    program.add(new ARMFunctionStart(savedRegisters, savesLinkRegister));
+    if (frame != 0) {
+      program.add(new ARMSubNode(REG_SP, REG_SP, new OperandTwo(frame, false),
+          SubComparator.SUB));
+    }
+    for (ARMNode node : code) {
+      Param param = parameters.get(node);
+      if (param != null) {
+        int offset = frame + saved + param.getOffset();
+        node = new ARMLdrNode(node.getDefinedRegisters().get(0), REG_SP,
+            offset, param.getDefined().getType().isByte() ? LdrComparator.LDRSB
+                : LdrComparator.LDR);
+      }
+      Integer argumentOffset = tailArguments.get(node);
+      if (argumentOffset != null) {
+        ARMStrNode store = (ARMStrNode) node;
+        node = new ARMStrNode(store.getSrc(), REG_SP, frame + saved
+            + argumentOffset, false, store.getComparator());
+      }
+      if (node instanceof ARMTailCall) {
+        node = new ARMTailCall(savedRegisters,
+            ((ARMTailCall) node).getCallee(), savesLinkRegister);
+      } else if (node instanceof ARMFunctionReturn) {
+        node = new ARMFunctionReturn(savedRegisters, savesLinkRegister);
+      }
+      if (node instanceof ARMFunctionReturn && frame != 0) {
+        program.add(new ARMAddNode(REG_SP, REG_SP,
+            new OperandTwo(frame, false), AddComparator.ADD));
+      }
+      program.add(node);
+    }
+    program.add(new ARMFunctionEnd());
+  }
+
+  private Register newRegister() {
+    return new Register(nextRegister++);
+  }
+
+  private static Register register(Temp temp) {
+    return new Register(Register.FIRST_VIRTUAL + temp.getId());
+  }
+
+  private static boolean isImmediate(Operand operand) {
+    return operand.isConstant()
+        && OperandTwo.isValidImmediate(value(operand));
+  }
+
+  // Constants a single MOV or MVN can load, others take more instructions
+  static boolean isCheapConstant(int value) {
+    return ConstantLoader.isSingleInstruction(value);
+  }
+
+  private static int value(Operand operand) {
+    return ((Constant) operand).getValue();
+  }
+
+  private void loadConstant(Register destination, int value) {
+    code.addAll(ConstantLoader.load(destination, value));
+  }
+
+  // Register holding the operand, constants are loaded into a new one
+  private Register use(Operand operand) {
+    if (!operand.isConstant()) {
+      return register((Temp) operand);
+    }
+    Register constant = newRegister();
+    loadConstant(constant, value(operand));
+    return constant;
+  }
+
+  private OperandTwo operandTwo(Operand operand) {
+    if (isImmediate(operand)) {
+      return new OperandTwo(value(operand), false);
+    }
+    return new OperandTwo(use(operand));
+  }
+
+  private void move(Register destination, Operand source) {
+    if (source.isConstant()) {
+      loadConstant(destination, value(source));
+    } else {
+      code.add(new ARMMovNode(destination, new OperandTwo(use(source)),
+          MovComparator.MOV));
+    }
+  }
+
+  private void branch(BasicBlock target, BranchComparator comparator) {
+    code.add(new ARMBranchNode(labels.get(target).getLabel(), comparator));
+  }
+
+  private void selectInstruction(Instruction instruction) {
+    if (instruction instanceof Move) {
+      Move move = (Move) instruction;
+      move(register(move.getDefined()), move.getSource());
+    } else if (instruction instanceof BinaryOperation) {
+      selectBinaryOperation((BinaryOperation) instruction);
+    } else if (instruction instanceof Load) {
+      Load load = (Load) instruction;
+      code.add(new ARMLdrNode(register(load.getDefined()), use(load.getBase()),
+          load.getOffset(), load.getDefined().getType().isByte()
+              ? LdrComparator.LDRSB : LdrComparator.LDR));
+    } else if (instruction instanceof Store) {
+      Store store = (Store) instruction;
+      code.add(new ARMStrNode(use(store.getValue()), use(store.getBase()),
+          store.getOffset(), false, store.getType().isByte() ? StrComparator.STRB
+              : StrComparator.STR));
+    } else if (instruction instanceof Call) {
+      selectCall((Call) instruction);
+    } else if (instruction instanceof RuntimeCall) {
+      selectRuntimeCall((RuntimeCall) instruction);
+    } else if (instruction instanceof Check) {
+      selectCheck((Check) instruction);
+    } else if (instruction instanceof Param) {
+      Param param = (Param) instruction;
+      if (param.isInRegister()) {
+        code.add(new ARMMovNode(register(param.getDefined()), new OperandTwo(
+            new Register(param.getRegister())), MovComparator.MOV));
+        return;
+      }
+      ARMLdrNode placeholder = new ARMLdrNode(register(param.getDefined()),
+          REG_SP, 0, param.getDefined().getType().isByte() ? LdrComparator.LDRSB
+              : LdrComparator.LDR);
+      parameters.put(placeholder, param);
+      code.add(placeholder);
+    } else if (instruction instanceof StringConstant) {
+      ArmMessage string = new ArmMessage(
+          ((StringConstant) instruction).getText(), true);
+      fileStart.addMessage(string);
+      code.add(new ARMLdrNode(register(instruction.getDefined()), fileStart
+          .getMessageLabel(string), LdrComparator.LDR));
+    } else if (instruction instanceof Read) {
+      selectRead((Read) instruction);
+    } else if (instruction instanceof Jump) {
+      BasicBlock target = ((Jump) instruction).getTarget();
+      if (target != nextBlock) {
+        branch(target, BranchComparator.B);
+      }
+    } else if (instruction instanceof Branch) {
+      selectBranch((Branch) instruction);
+    } else if (instruction instanceof Return) {
+      move(REG_R0, ((Return) instruction).getValue());
+      code.add(new ARMFunctionReturn(savedRegisters));
+    }
+  }
+
+  private void selectBinaryOperation(BinaryOperation operation) {
+    Register destination = register(operation.getDefined());
+    Operand left = operation.getLeft();
+    Operand right = operation.getRight();
+    BinaryOperation.Operator operator = operation.getOperator();
+
+    // Only the second operand may be an immediate
+    if (left.isConstant() && !right.isConstant()
+        && (operator.isCommutative() || operator.isComparison())) {
+      Operand swapped = left;
+      left = right;
+      right = swapped;
+      operator = operator.swap();
+    }
+
+    switch (operator) {
+      case ADD:
+        code.add(new ARMAddNode(destination, use(left), operandTwo(right),
+            operation.isChecked() ? AddComparator.ADDS : AddComparator.ADD));
+        break;
+      case SUB:
+        if (isImmediate(left) && !right.isConstant()) {
+          code.add(new ARMSubNode(destination, use(right), operandTwo(left),
+              SubComparator.RSBS));
+        } else {
+          code.add(new ARMSubNode(destination, use(left), operandTwo(right),
+              operation.isChecked() ? SubComparator.SUBS : SubComparator.SUB));
+        }
+        break;
+      case MUL:
+        if (right.isConstant() && !left.isConstant() && ConstantMultiplication
+            .canMultiplyBy(value(right), operation.isChecked())) {
+          code.addAll(ConstantMultiplication.multiply(destination, use(left),
+              value(right), operation.isChecked(), newRegister()));
+          if (operation.isChecked()) {
+            predefinedFunctionHandler
+                .addfunction(PredefinedFunction.P_THROW_OVERFLOW_ERROR_NE);
+          }
+          return;
+        }
+        if (!operation.isChecked()) {
+          code.add(new ARMMulNode(MulComparator.MUL, destination, use(left),
+              use(right)));
+          return;
+        }
+        // The product overflowed unless the high word is its sign extension
+        Register high = newRegister();
+        code.add(new ARMMulNode(MulComparator.SMULL, destination, high,
+            use(left), use(right)));
+        code.add(new ARMCmpNode(high, new OperandTwo(destination,
+            ShiftType.ASR, 31)));
+        predefinedFunctionHandler
+            .addfunction(PredefinedFunction.P_THROW_OVERFLOW_ERROR_NE);
+        return;
+      case DIV:
+      case MOD:
+        if (right.isConstant() && !left.isConstant()
+            && ConstantDivision.canDivideBy(value(right))) {
+          code.addAll(ConstantDivision.divide(
+              operator == BinaryOperation.Operator.MOD, destination, use(left),
+              value(right), newRegister(), newRegister()));
+          return;
+        }
+        move(REG_R0, left);
+        move(REG_R1, right);
+        code.add(new ARMBranchNode((operator == BinaryOperation.Operator.DIV)
+            ? "__aeabi_idiv" : "__aeabi_idivmod", BranchComparator.BL));
+        code.add(new ARMMovNode(destination, new OperandTwo(
+            (operator == BinaryOperation.Operator.DIV) ? REG_R0 : REG_R1),
+            MovComparator.MOV));
+        return;
+      case AND:
+        code.add(new ARMLogicalNode(LogicalComparator.AND, destination,
+            use(left), operandTwo(right)));
+        return;
+      case OR:
+        code.add(new ARMLogicalNode(LogicalComparator.ORR, destination,
+            use(left), operandTwo(right)));
+        return;
+      case XOR:
+        code.add(new ARMOrNode(destination, use(left), operandTwo(right),
+            ARMOrNode.OrOperator.EOR));
+        return;
+      case SHL:
+        code.add(new ARMMovNode(destination, new OperandTwo(use(left),
+            ShiftType.LSL, value(right)), MovComparator.MOV));
+        return;
+      default:
+        code.add(new ARMCmpNode(use(left), operandTwo(right)));
+        code.add(new ARMMovNode(destination, new OperandTwo(0, false),
+            MovComparator.MOV));
+        code.add(new ARMMovNode(destination, new OperandTwo(1, false),
+            movComparator(operator)));
+        return;
+    }
+    if (operation.isChecked()) {
+      predefinedFunctionHandler
+          .addfunction(PredefinedFunction.P_THROW_OVERFLOW_ERROR);
+    }
+  }
+
+  private static MovComparator movComparator(BinaryOperation.Operator operator) {
+    switch (operator) {
+      case EQ:
+        return MovComparator.MOVEQ;
+      case NE:
+        return MovComparator.MOVNE;
+      case LT:
+        return MovComparator.MOVLT;
+      case LE:
+        return MovComparator.MOVLE;
+      case GT:
+        return MovComparator.MOVGT;
+      default:
+        return MovComparator.MOVGE;
+    }
+  }
+
+  // Arguments are passed as the callee expects, pushed ones sized by its
+  // parameters and pushed in order before the argument registers are set
+  private void selectCall(Call call) {
+    Function callee = call.getFunction();
+    List<Operand> arguments = call.getArguments();
+    // Padding above the pushed arguments keeps the callee word aligned
+    int total = (4 - callee.stackParameterSizeInBytes() % 4) % 4;
+    if (total != 0) {
+      code.add(new ARMSubNode(REG_SP, REG_SP, new OperandTwo(total, false),
+          SubComparator.SUB));
+    }
+    for (int i = 0; i < arguments.size(); i++) {
+      if (callee.isPassedInRegister(i)) {
+        continue;
+      }
+      int size = IRType.of(callee.getArgumentType(i)).getSizeInBytes();
+      code.add(new ARMStrNode(use(arguments.get(i)), REG_SP, -size, true,
+          (size == 1) ? StrComparator.STRB : StrComparator.STR));
+      total += size;
+    }
+    for (int i = 0; i < arguments.size() && callee.isPassedInRegister(i);
+        i++) {
+      move(new Register(i), arguments.get(i));
+    }
+    code.add(new ARMBranchNode(callee.getId(), BranchComparator.BL));
+    if (total != 0) {
+      code.add(new ARMAddNode(REG_SP, REG_SP, new OperandTwo(total, false),
+          AddComparator.ADD));
+    }
+    code.add(new ARMMovNode(register(call.getDefined()),
+        new OperandTwo(REG_R0), MovComparator.MOV));
+  }
+
+  /*
+   * A call whose result is only moved into the returned value can reuse our
+   * frame, as long as it takes as many bytes of arguments as we were given
+   * so that our caller still pops the right amount
+   */
+  private static boolean isTailCall(IRFunction function,
+      List<Instruction> instructions, int index) {
+    if (!(instructions.get(index) instanceof Call)) {
+      return false;
+    }
+    Call call = (Call) instructions.get(index);
+    Operand result = call.getDefined();
+    for (int i = index + 1; i < instructions.size(); i++) {
+      Instruction instruction = instructions.get(i);
+      if (instruction instanceof Move
+          && ((Move) instruction).getSource().equals(result)) {
+        result = instruction.getDefined();
+      } else if (instruction instanceof Return) {
+        return ((Return) instruction).getValue().equals(result)
+            && call.getFunction().stackParameterSizeInBytes() == function
+                .getFunction().stackParameterSizeInBytes();
+      } else {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  // Arguments overwrite our own parameters before the frame is torn down
+  private void selectTailCall(Call call) {
+    Function callee = call.getFunction();
+    List<Operand> arguments = call.getArguments();
+    int offset = callee.stackParameterSizeInBytes();
+    for (int i = 0; i < arguments.size(); i++) {
+      if (callee.isPassedInRegister(i)) {
+        continue;
+      }
+      int size = IRType.of(callee.getArgumentType(i)).getSizeInBytes();
+      offset -= size;
+      ARMStrNode placeholder = new ARMStrNode(use(arguments.get(i)), REG_SP,
+          0, false, (size == 1) ? StrComparator.STRB : StrComparator.STR);
+      tailArguments.put(placeholder, offset);
+      code.add(placeholder);
+    }
+    for (int i = 0; i < arguments.size() && callee.isPassedInRegister(i);
+        i++) {
+      move(new Register(i), arguments.get(i));
+    }
+    code.add(new ARMTailCall(savedRegisters, callee.getId()));
+  }
+
+  private void selectRuntimeCall(RuntimeCall call) {
+    List<Operand> arguments = call.getArguments();
+    for (int i = 0; i < arguments.size(); i++) {
+      move(new Register(i), arguments.get(i));
+    }
+    if (call.getPredefinedFunction() != null) {
+      predefinedFunctionHandler.addfunction(call.getPredefinedFunction());
+    } else {
+      code.add(new ARMBranchNode(call.getLabel(), BranchComparator.BL));
+    }
+    if (call.getDefined() != null) {
+      code.add(new ARMMovNode(register(call.getDefined()), new OperandTwo(
+          REG_R0), MovComparator.MOV));
+    }
+  }
+
+  private void selectCheck(Check check) {
+    List<Operand> operands = check.getUsed();
+    switch (check.getKind()) {
+      case ARRAY_BOUNDS:
+        move(REG_R0, operands.get(1));
+        move(REG_R1, operands.get(0));
+        predefinedFunctionHandler
+            .addfunction(PredefinedFunction.P_CHECK_ARRAY_BOUNDS);
+        break;
+      case NULL_POINTER:
+        move(REG_R0, operands.get(0));
+        predefinedFunctionHandler
+            .addfunction(PredefinedFunction.P_CHECK_NULL_POINTER);
+        break;
+      case DIVIDE_BY_ZERO:
+        move(REG_R1, operands.get(0));
+        predefinedFunctionHandler
+            .addfunction(PredefinedFunction.P_CHECK_DIVIDE_BY_ZERO);
+        break;
+    }
+  }
+
+  // Reads go through the scratch word so a failed read keeps the old value
+  private void selectRead(Read read) {
+    usesScratch = true;
+    boolean isChar = read.getDefined().getType() == IRType.CHAR;
+    code.add(new ARMStrNode(use(read.getPrevious()), REG_SP, 0, false,
+        isChar ? StrComparator.STRB : StrComparator.STR));
+    code.add(new ARMMovNode(REG_R0, new OperandTwo(REG_SP), MovComparator.MOV));
+    predefinedFunctionHandler.addfunction(isChar ? PredefinedFunction.P_READ_CHAR
+        : PredefinedFunction.P_READ_INT);
+    code.add(new ARMLdrNode(register(read.getDefined()), REG_SP, 0,
+        isChar ? LdrComparator.LDRSB : LdrComparator.LDR));
+  }
+
+  // A comparison only read by the branch after it sets the flags for it
+  private boolean isBranchOnComparison(Instruction instruction,
+      Instruction next) {
+    if (!(instruction instanceof BinaryOperation) || !(next instanceof Branch)
+        || !((BinaryOperation) instruction).getOperator().isComparison()) {
+      return false;
+    }
+    Temp result = instruction.getDefined();
+    return result.equals(((Branch) next).getCondition())
+        && useCounts.get(result) == 1;
+  }
+
+  private void selectComparisonBranch(BinaryOperation comparison,
+      Branch branch) {
+    Operand left = comparison.getLeft();
+    Operand right = comparison.getRight();
+    BinaryOperation.Operator operator = comparison.getOperator();
+    if (left.isConstant() && !right.isConstant()) {
+      Operand swapped = left;
+      left = right;
+      right = swapped;
+      operator = operator.swap();
+    }
+    code.add(new ARMCmpNode(use(left), operandTwo(right)));
+    if (branch.getIfFalse() == nextBlock) {
+      branch(branch.getIfTrue(), branchComparator(operator));
+    } else {
+      branch(branch.getIfFalse(), branchComparator(operator.negate()));
+      if (branch.getIfTrue() != nextBlock) {
+        branch(branch.getIfTrue(), BranchComparator.B);
+      }
+    }
+  }
+
+  private static BranchComparator branchComparator(
+      BinaryOperation.Operator operator) {
+    switch (operator) {
+      case EQ:
+        return BranchComparator.BEQ;
+      case NE:
+        return BranchComparator.BNE;
+      case LT:
+        return BranchComparator.BLT;
+      case LE:
+        return BranchComparator.BLE;
+      case GT:
+        return BranchComparator.BGT;
+      default:
+        return BranchComparator.BGE;
+    }
+  }
+
+  private void selectBranch(Branch branch) {
+    Operand condition = branch.getCondition();
+    if (condition.isConstant()) {
+      BasicBlock target = (value(condition) != 0) ? branch.getIfTrue() : branch
+          .getIfFalse();
+      if (target != nextBlock) {
+        branch(target, BranchComparator.B);
+      }
+      return;
+    }
+    code.add(new ARMCmpNode(use(condition), new OperandTwo(0, false)));
+    if (branch.getIfFalse() == nextBlock) {
+      branch(branch.getIfTrue(), BranchComparator.BNE);
+    } else {
+      branch(branch.getIfFalse(), BranchComparator.BEQ);
+      if (branch.getIfTrue() != nextBlock) {
+        branch(branch.getIfTrue(), BranchComparator.B);
+      }
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package smacc.ir;
+
+import java.util.Collections;
+import java.util.List;
+
+public class Jump extends Instruction {
+
+  private BasicBlock target;
+
+  public Jump(BasicBlock target) {
+    this.target = target;
+  }
+
+  public BasicBlock getTarget() {
+    return target;
+  }
+
+  public void setTarget(BasicBlock target) {
+    this.target = target;
+  }
+
+  @Override
+  public boolean isTerminator() {
+    return true;
+  }
+
+  @Override
+  public List<BasicBlock> getSuccessors() {
+    return Collections.singletonList(target);
+  }
+
+  @Override
+  public Instruction copy() {
+    return new Jump(target);
+  }
+
+  @Override
+  public String toString() {
+    return "JUMP " + target.getName();
+  }
+}
@@ -0,0 +1,69 @@
+package smacc.ir;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// Reads a word or byte from memory at base + offset
+public class Load extends Definition {
+
+  private Temp destination;
+  private Operand base;
+  private int offset;
+  // Set when the word is never written once it has been allocated
+  private boolean immutable;
+
+  public Load(Temp destination, Operand base, int offset) {
+    this(destination, base, offset, false);
+  }
+
+  public Load(Temp destination, Operand base, int offset, boolean immutable) {
+    this.destination = destination;
+    this.base = base;
+    this.offset = offset;
+    this.immutable = immutable;
+  }
+
+  public Operand getBase() {
+    return base;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  public boolean isImmutable() {
+    return immutable;
+  }
+
+  @Override
+  public Temp getDefined() {
+    return destination;
+  }
+
+  @Override
+  public void setDefined(Temp temp) {
+    destination = temp;
+  }
+
+  @Override
+  public List<Operand> getUsed() {
+    return Collections.singletonList(base);
+  }
+
+  @Override
+  public void replaceUses(Map<Operand, Operand> replacements) {
+    base = replace(base, replacements);
+  }
+
+  @Override
+  public Instruction copy() {
+    return new Load(destination, base, offset, immutable);
+  }
+
+  @Override
+  public String toString() {
+    return destination + " = LOAD" + (destination.getType().isByte() ? "B ["
+        : " [") + base + ", #" + offset + "]";
+  }
+}
@@ -0,0 +1,177 @@
+package smacc.ir;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import smacc.ir.BinaryOperation.Operator;
+
+/*
+ * LoopInvariantCodeMotion
+ * Moves computations giving the same value on every iteration of a loop
+ * into its preheader, a block run once just before the loop is entered.
+ * Runs on SSA form, where an operand is invariant when it is a constant or
+ * a temp defined outside the loop.
+ *
+ * Instructions that cannot fail are hoisted from anywhere in the loop.
+ * Checks, loads and checked arithmetic could fail where the program would
+ * not have, so these are only hoisted from the start of the header, which
+ * is always run on entering the loop, ahead of anything else with an
+ * effect. Loads there also need a loop that writes no memory.
+ *
+ * Constants the instruction selector would load from the literal pool are
+ * loaded once, into a temp, in the preheader.
+ */
+public class LoopInvariantCodeMotion {
+
+  private IRFunction function;
+  private NaturalLoops loops;
+
+  public static void run(IRFunction function) {
+    new LoopInvariantCodeMotion(function).run();
+  }
+
+  private LoopInvariantCodeMotion(IRFunction function) {
+    this.function = function;
+  }
+
+  // Inner loops first, so what they hoist can leave outer loops as well
+  private void run() {
+    loops = new NaturalLoops(function);
+    for (BasicBlock header : loops.getHeaders()) {
+      BasicBlock preheader = loops.preheader(header);
+      if (preheader == null) {
+        continue;
+      }
+      hoist(header, loops.getBody(header), preheader);
+      hoistConstants(loops.getBody(header), preheader);
+    }
+  }
+
+  private void hoist(BasicBlock header, Set<BasicBlock> body,
+      BasicBlock preheader) {
+    Set<Temp> definedInLoop = new HashSet<>();
+    boolean writesMemory = false;
+    for (BasicBlock block : body) {
+      for (Instruction instruction : block.getInstructions()) {
+        if (instruction.getDefined() != null) {
+          definedInLoop.add(instruction.getDefined());
+        }
+        writesMemory |= instruction.writesMemory();
+      }
+    }
+
+    // Definitions dominate their uses, so these are visited first
+    List<Instruction> hoisted = new ArrayList<>();
+    for (BasicBlock block : loops.getDominators().getReversePostorder()) {
+      if (!body.contains(block)) {
+        continue;
+      }
+      boolean atLoopEntry = block == header;
+      Iterator<Instruction> iterator = block.getInstructions().iterator();
+      while (iterator.hasNext()) {
+        Instruction instruction = iterator.next();
+        boolean mayFail = mayFail(instruction);
+        if (isInvariant(instruction, definedInLoop)
+            && (!mayFail && !instruction.hasSideEffects() || atLoopEntry
+                && canHoistFromEntry(instruction, writesMemory))) {
+          iterator.remove();
+          hoisted.add(instruction);
+          definedInLoop.remove(instruction.getDefined());
+        } else if (mayFail || instruction.hasSideEffects()) {
+          atLoopEntry = false;
+        }
+      }
+    }
+
+    List<Instruction> instructions = preheader.getInstructions();
+    instructions.addAll(instructions.size() - 1, hoisted);
+  }
+
+  private static boolean isInvariant(Instruction instruction,
+      Set<Temp> definedInLoop) {
+    if (instruction instanceof Phi || instruction.isTerminator()
+        || instruction.getDefined() == null && !(instruction instanceof Check)) {
+      return false;
+    }
+    for (Operand operand : instruction.getUsed()) {
+      if (definedInLoop.contains(operand)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean mayFail(Instruction instruction) {
+    if (instruction instanceof Load) {
+      return !((Load) instruction).isImmutable();
+    }
+    if (instruction instanceof BinaryOperation) {
+      BinaryOperation operation = (BinaryOperation) instruction;
+      return operation.isChecked() || operation.getOperator() == Operator.DIV
+          || operation.getOperator() == Operator.MOD;
+    }
+    return instruction instanceof Check;
+  }
+
+  // Fails first thing on entering the loop if it fails at all
+  private static boolean canHoistFromEntry(Instruction instruction,
+      boolean writesMemory) {
+    return instruction instanceof Check
+        || instruction instanceof BinaryOperation
+        || instruction instanceof Load && !writesMemory;
+  }
+
+  private void hoistConstants(Set<BasicBlock> body, BasicBlock preheader) {
+    Map<Operand, Operand> temps = new HashMap<>();
+    List<Instruction> loads = new ArrayList<>();
+    for (BasicBlock block : body) {
+      for (Instruction instruction : block.getInstructions()) {
+        if (instruction instanceof Phi || instruction.isTerminator()) {
+          continue;
+        }
+        // Shift amounts are encoded in the instruction, and known divisors
+        // and multipliers are selected as shifts and adds
+        Operand encoded = encodedOperand(instruction);
+        for (Operand operand : instruction.getUsed()) {
+          if (operand.isConstant() && !operand.equals(encoded)
+              && !temps.containsKey(operand)
+              && !InstructionSelector.isCheapConstant(((Constant) operand)
+                  .getValue())) {
+            Temp temp = function.newTemp(operand.getType());
+            loads.add(new Move(temp, operand));
+            temps.put(operand, temp);
+          }
+        }
+        Map<Operand, Operand> replacements = temps;
+        if (encoded != null) {
+          replacements = new HashMap<>(temps);
+          replacements.remove(encoded);
+        }
+        instruction.replaceUses(replacements);
+      }
+    }
+
+    List<Instruction> instructions = preheader.getInstructions();
+    instructions.addAll(instructions.size() - 1, loads);
+  }
+
+  private static Operand encodedOperand(Instruction instruction) {
+    if (!(instruction instanceof BinaryOperation)) {
+      return null;
+    }
+    switch (((BinaryOperation) instruction).getOperator()) {
+      case SHL:
+      case MUL:
+      case DIV:
+      case MOD:
+        return ((BinaryOperation) instruction).getRight();
+      default:
+        return null;
+    }
+  }
+}
@@ -0,0 +1,215 @@
+package smacc.ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import smacc.ir.BinaryOperation.Operator;
+
+/*
+ * LoopStrengthReduction
+ * Replaces the element addresses "array + (i << 2)" computed in a loop from
+ * a counter i by a pointer that advances along the array with the counter,
+ * on a function in SSA form.
+ *
+ * A counter is a phi of the loop header with one value from the preheader
+ * and one from the loop, that value being the counter plus a constant. The
+ * pointer is a new phi starting at the address of the first element read
+ * and is moved on by the step times the element size right where the
+ * counter is. Every address of the same array and counter then reads the
+ * pointer, leaving the shifts and adds behind for dead code elimination.
+ */
+public class LoopStrengthReduction {
+
+  private IRFunction function;
+  private NaturalLoops loops;
+  private Map<Temp, Instruction> definitions = new HashMap<>();
+  private Map<Operand, Operand> replacements = new HashMap<>();
+
+  public static void run(IRFunction function) {
+    new LoopStrengthReduction(function).run();
+  }
+
+  private LoopStrengthReduction(IRFunction function) {
+    this.function = function;
+  }
+
+  private void run() {
+    loops = new NaturalLoops(function);
+    for (BasicBlock block : function.getBlocks()) {
+      for (Instruction instruction : block.getInstructions()) {
+        if (instruction.getDefined() != null) {
+          definitions.put(instruction.getDefined(), instruction);
+        }
+      }
+    }
+
+    for (BasicBlock header : loops.getHeaders()) {
+      BasicBlock preheader = loops.preheader(header);
+      if (preheader != null) {
+        reduce(header, loops.getBody(header), preheader);
+      }
+    }
+
+    if (replacements.isEmpty()) {
+      return;
+    }
+    for (BasicBlock block : function.getBlocks()) {
+      for (Instruction instruction : block.getInstructions()) {
+        instruction.replaceUses(replacements);
+      }
+    }
+  }
+
+  private void reduce(BasicBlock header, Set<BasicBlock> body,
+      BasicBlock preheader) {
+    Set<Temp> definedInLoop = new HashSet<>();
+    List<BinaryOperation> addresses = new ArrayList<>();
+    for (BasicBlock block : body) {
+      for (Instruction instruction : block.getInstructions()) {
+        if (instruction.getDefined() != null) {
+          definedInLoop.add(instruction.getDefined());
+        }
+        if (isAddress(instruction)) {
+          addresses.add((BinaryOperation) instruction);
+        }
+      }
+    }
+
+    // Pointers by array, counter and element size shift
+    Map<List<Object>, Temp> pointers = new HashMap<>();
+    for (BinaryOperation address : addresses) {
+      if (definedInLoop.contains(address.getLeft())) {
+        continue;
+      }
+      Operand offset = address.getRight();
+      int shift = 0;
+      Instruction shifted = definitions.get(offset);
+      if (shifted instanceof BinaryOperation
+          && ((BinaryOperation) shifted).getOperator() == Operator.SHL
+          && ((BinaryOperation) shifted).getRight().isConstant()) {
+        offset = ((BinaryOperation) shifted).getLeft();
+        shift = ((Constant) ((BinaryOperation) shifted).getRight())
+            .getValue();
+      }
+      Phi counter = counter(offset, header, preheader);
+      if (counter == null) {
+        continue;
+      }
+
+      List<Object> key = Arrays.<Object>asList(address.getLeft(), counter,
+          shift);
+      Temp pointer = pointers.get(key);
+      if (pointer == null) {
+        pointer = advance(address.getLeft(), counter, shift, header,
+            preheader);
+        pointers.put(key, pointer);
+      }
+      replacements.put(address.getDefined(), pointer);
+    }
+  }
+
+  private static boolean isAddress(Instruction instruction) {
+    return instruction instanceof BinaryOperation
+        && ((BinaryOperation) instruction).getOperator() == Operator.ADD
+        && instruction.getDefined().getType() == IRType.REFERENCE
+        && !((BinaryOperation) instruction).getLeft().isConstant();
+  }
+
+  // The phi of header operand is, if it is a counter
+  private Phi counter(Operand operand, BasicBlock header,
+      BasicBlock preheader) {
+    Instruction definition = definitions.get(operand);
+    if (!(definition instanceof Phi)
+        || !header.getInstructions().contains(definition)) {
+      return null;
+    }
+    Phi phi = (Phi) definition;
+    Map<BasicBlock, Operand> operands = phi.getOperands();
+    if (operands.size() != 2 || !operands.containsKey(preheader)) {
+      return null;
+    }
+    return step(phi, preheader) == null ? null : phi;
+  }
+
+  // Definition in the loop of the next value of counter, counter + step
+  private BinaryOperation step(Phi counter, BasicBlock preheader) {
+    for (Map.Entry<BasicBlock, Operand> operand : counter.getOperands()
+        .entrySet()) {
+      if (operand.getKey() == preheader) {
+        continue;
+      }
+      Instruction next = definitions.get(operand.getValue());
+      if (!(next instanceof BinaryOperation)) {
+        return null;
+      }
+      BinaryOperation add = (BinaryOperation) next;
+      boolean countsOn = add.getOperator() == Operator.ADD
+          && (add.getLeft().equals(counter.getDefined())
+              && add.getRight().isConstant()
+              || add.getRight().equals(counter.getDefined())
+              && add.getLeft().isConstant());
+      return countsOn ? add : null;
+    }
+    return null;
+  }
+
+  // New pointer phi kept equal to array + (counter << shift)
+  private Temp advance(Operand array, Phi counter, int shift,
+      BasicBlock header, BasicBlock preheader) {
+    BinaryOperation next = step(counter, preheader);
+    int step = ((Constant) (next.getRight().isConstant() ? next.getRight()
+        : next.getLeft())).getValue();
+
+    Operand initial = counter.getOperands().get(preheader);
+    Operand offset;
+    if (initial.isConstant()) {
+      offset = new Constant(((Constant) initial).getValue() << shift,
+          IRType.INT);
+    } else if (shift == 0) {
+      offset = initial;
+    } else {
+      offset = function.newTemp(IRType.INT);
+      insertBeforeTerminator(preheader, new BinaryOperation(Operator.SHL,
+          (Temp) offset, initial, new Constant(shift, IRType.INT), false));
+    }
+    Operand start = array;
+    if (!offset.equals(new Constant(0, IRType.INT))) {
+      start = function.newTemp(IRType.REFERENCE);
+      insertBeforeTerminator(preheader, new BinaryOperation(Operator.ADD,
+          (Temp) start, array, offset, false));
+    }
+
+    Temp pointer = function.newTemp(IRType.REFERENCE);
+    Temp advanced = function.newTemp(IRType.REFERENCE);
+    Phi phi = new Phi(pointer);
+    for (BasicBlock predecessor : counter.getOperands().keySet()) {
+      phi.setOperand(predecessor, (predecessor == preheader) ? start
+          : advanced);
+    }
+    header.getInstructions().add(0, phi);
+
+    // Stepped alongside the counter, wherever in the loop that is
+    for (BasicBlock block : loops.getBody(header)) {
+      List<Instruction> instructions = block.getInstructions();
+      int index = instructions.indexOf(next);
+      if (index >= 0) {
+        instructions.add(index + 1, new BinaryOperation(Operator.ADD,
+            advanced, pointer, new Constant(step << shift, IRType.INT),
+            false));
+        break;
+      }
+    }
+    return pointer;
+  }
+
+  private static void insertBeforeTerminator(BasicBlock block,
+      Instruction instruction) {
+    List<Instruction> instructions = block.getInstructions();
+    instructions.add(instructions.size() - 1, instruction);
+  }
+}
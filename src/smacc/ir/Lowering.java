@@ -0,0 +1,433 @@
+package smacc.ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import smacc.Function;
+import smacc.Variable;
+import smacc.arm.PredefinedFunctionHandler.PredefinedFunction;
+import smacc.ast.expr.*;
+import smacc.ast.stat.*;
+import smacc.ir.BinaryOperation.Operator;
+import smacc.types.WACCType;
+
+/*
+ * Lowering
+ * Builds the IR of a function from its AST. Every variable is given its own
+ * temp, so nothing but arrays and pairs is left in memory.
+ */
+public class Lowering {
+
+  private IRFunction function;
+  private BasicBlock current;
+  private Map<Variable, Temp> variables = new HashMap<>();
+
+  public static IRFunction lower(Function function) {
+    Lowering lowering = new Lowering(function);
+    function.getBody().lower(lowering);
+    lowering.finish();
+    return lowering.function;
+  }
+
+  private Lowering(Function function) {
+    this.function = new IRFunction(function);
+    startBlock(this.function.newBlock());
+    if (!function.isMain()) {
+      List<Variable> parameters = new ArrayList<>(function
+          .getParameterScope().getVariables());
+      for (int i = 0; i < parameters.size(); i++) {
+        if (function.isPassedInRegister(i)) {
+          emit(Param.inRegister(temp(parameters.get(i)), i));
+        }
+      }
+      // The last argument is pushed last so is nearest the stack pointer
+      int offset = 0;
+      for (int i = parameters.size() - 1; i >= 0; i--) {
+        if (!function.isPassedInRegister(i)) {
+          emit(new Param(temp(parameters.get(i)), offset));
+          offset += parameters.get(i).getSizeInBytes();
+        }
+      }
+    }
+  }
+
+  // Code falling off the end returns 0, as main does
+  private void finish() {
+    if (!current.isTerminated()) {
+      emit(new Return(new Constant(0, IRType.INT)));
+    }
+    function.removeUnreachableBlocks();
+  }
+
+  private void emit(Instruction instruction) {
+    current.add(instruction);
+  }
+
+  private void startBlock(BasicBlock block) {
+    function.getBlocks().add(block);
+    current = block;
+  }
+
+  private Temp temp(Variable variable) {
+    Temp temp = variables.get(variable);
+    if (temp == null) {
+      temp = function.newTemp(IRType.of(variable.getType()));
+      variables.put(variable, temp);
+    }
+    return temp;
+  }
+
+  private Temp binary(Operator operator, IRType type, Operand left,
+      Operand right, boolean checked) {
+    Temp result = function.newTemp(type);
+    emit(new BinaryOperation(operator, result, left, right, checked));
+    return result;
+  }
+
+  private Temp load(IRType type, Operand base, int offset) {
+    Temp result = function.newTemp(type);
+    emit(new Load(result, base, offset));
+    return result;
+  }
+
+  private Temp malloc(int size) {
+    Temp result = function.newTemp(IRType.REFERENCE);
+    emit(new RuntimeCall(result, "malloc", Collections
+        .<Operand>singletonList(new Constant(size, IRType.INT))));
+    return result;
+  }
+
+  private void runtimeCall(PredefinedFunction predefinedFunction,
+      Operand... arguments) {
+    emit(new RuntimeCall(null, predefinedFunction, Arrays.asList(arguments)));
+  }
+
+  /*
+   * Address of the element of an array, the element itself lies 4 bytes
+   * further on past the length. Every dimension is bounds checked.
+   */
+  private Operand elementAddress(ArrayElemNode node) {
+    Operand array = temp(node.getIdent().getVariable());
+    Operand address = null;
+    for (int i = 0; i < node.getIndexCount(); i++) {
+      if (i > 0) {
+        array = load(IRType.REFERENCE, address, 4);
+      }
+      Operand index = node.getIndex(i).lower(this);
+      emit(new Check(Check.Kind.ARRAY_BOUNDS, Arrays.asList(array, index)));
+      // Inner dimensions hold references to the next array
+      int size = (i == node.getIndexCount() - 1) ? IRType.of(node.getType())
+          .getSizeInBytes() : 4;
+      Operand offset = (size == 1) ? index : binary(Operator.SHL,
+          IRType.INT, index, new Constant(2, IRType.INT), false);
+      address = binary(Operator.ADD, IRType.REFERENCE, array, offset, false);
+    }
+    return address;
+  }
+
+  // Pointer to the box holding the element of a pair
+  private Operand pairBox(PairElemNode node) {
+    Operand pair = node.getExpr().lower(this);
+    emit(new Check(Check.Kind.NULL_POINTER, Collections
+        .singletonList(pair)));
+    return load(IRType.REFERENCE, pair, node.getIsFst() ? 0 : 4);
+  }
+
+  // Lowering Stats
+
+  public void lowerAssignmentNode(AssignmentNode node) {
+    Operand value = node.getRHS().lower(this);
+    ExprNode lhs = node.getLHS();
+    IRType type = IRType.of(lhs.getType());
+    if (lhs instanceof ArrayElemNode) {
+      emit(new Store(value, elementAddress((ArrayElemNode) lhs), 4, type));
+    } else if (lhs instanceof PairElemNode) {
+      emit(new Store(value, pairBox((PairElemNode) lhs), 0, type));
+    } else {
+      emit(new Move(temp(((IdentNode) lhs).getVariable()), value));
+    }
+  }
+
+  public void lowerExitNode(ExitNode node) {
+    Operand code = node.getExpr().lower(this);
+    emit(new RuntimeCall(null, "exit", Collections.singletonList(code)));
+  }
+
+  public void lowerFreeNode(FreeNode node) {
+    Operand reference = node.getExpr().lower(this);
+    if (node.getExpr().getType().equals(WACCType.TYPE_ARRAY_ANY)) {
+      runtimeCall(PredefinedFunction.P_FREE_ARRAY, reference);
+    } else {
+      runtimeCall(PredefinedFunction.P_FREE_PAIR, reference);
+    }
+  }
+
+  public void lowerIfNode(IfNode node) {
+    BasicBlock trueBlock = function.newBlock();
+    BasicBlock falseBlock = function.newBlock();
+    BasicBlock join = function.newBlock();
+    branch(node.getConditional(), trueBlock, falseBlock);
+    startBlock(trueBlock);
+    node.getTrueBody().lower(this);
+    emit(new Jump(join));
+    startBlock(falseBlock);
+    node.getFalseBody().lower(this);
+    emit(new Jump(join));
+    startBlock(join);
+  }
+
+  public void lowerPrintNode(PrintNode node) {
+    Operand value = node.getExpr().lower(this);
+    WACCType type = node.getExpr().getType();
+    if (type.equals(WACCType.TYPE_BOOL)) {
+      runtimeCall(PredefinedFunction.P_PRINT_BOOL, value);
+    } else if (type.equals(WACCType.TYPE_STRING)) {
+      runtimeCall(PredefinedFunction.P_PRINT_STRING, value);
+    } else if (type.equals(WACCType.TYPE_INT)) {
+      runtimeCall(PredefinedFunction.P_PRINT_INT, value);
+    } else if (type.equals(WACCType.TYPE_CHAR)) {
+      emit(new RuntimeCall(null, "putchar", Collections.singletonList(value)));
+    } else {
+      runtimeCall(PredefinedFunction.P_PRINT_REFERENCE, value);
+    }
+    if (node.getIsPrintln()) {
+      runtimeCall(PredefinedFunction.P_PRINTLN);
+    }
+  }
+
+  // Elements of arrays and pairs are read straight into memory
+  public void lowerReadNode(ReadNode node) {
+    ExprNode target = node.getExpr();
+    PredefinedFunction read = target.getType().equals(WACCType.TYPE_CHAR)
+        ? PredefinedFunction.P_READ_CHAR : PredefinedFunction.P_READ_INT;
+    if (target instanceof ArrayElemNode) {
+      Operand address = binary(Operator.ADD, IRType.REFERENCE,
+          elementAddress((ArrayElemNode) target), new Constant(4, IRType.INT),
+          false);
+      runtimeCall(read, address);
+    } else if (target instanceof PairElemNode) {
+      runtimeCall(read, pairBox((PairElemNode) target));
+    } else {
+      Temp variable = temp(((IdentNode) target).getVariable());
+      emit(new Read(variable, variable));
+    }
+  }
+
+  public void lowerReturnNode(ReturnNode node) {
+    emit(new Return(node.getExpr().lower(this)));
+    // Anything after a return is unreachable
+    startBlock(function.newBlock());
+  }
+
+  public void lowerScopeNode(ScopeNode node) {
+    node.getStat().lower(this);
+  }
+
+  public void lowerSequenceNode(SequenceNode node) {
+    for (int i = 0; i < node.getStatCount(); i++) {
+      node.getStat(i).lower(this);
+    }
+  }
+
+  public void lowerSkipNode(SkipNode node) {
+  }
+
+  // The condition is tested at the bottom of the loop
+  public void lowerWhileNode(WhileNode node) {
+    BasicBlock body = function.newBlock();
+    BasicBlock test = function.newBlock();
+    BasicBlock exit = function.newBlock();
+    emit(new Jump(test));
+    startBlock(body);
+    node.getBody().lower(this);
+    emit(new Jump(test));
+    startBlock(test);
+    branch(node.getConditional(), body, exit);
+    startBlock(exit);
+  }
+
+  /*
+   * Branches on a condition without building its value where possible,
+   * && and || jump to the block their left argument decides and only
+   * evaluate their right argument otherwise
+   */
+  private void branch(ExprNode condition, BasicBlock ifTrue,
+      BasicBlock ifFalse) {
+    if (condition instanceof BinaryOpNode) {
+      BinaryOpNode node = (BinaryOpNode) condition;
+      if (node.getOp() == ExprNode.BinOp.LOGICAL_AND
+          || node.getOp() == ExprNode.BinOp.LOGICAL_OR) {
+        BasicBlock right = function.newBlock();
+        if (node.getOp() == ExprNode.BinOp.LOGICAL_AND) {
+          branch(node.getLeft(), right, ifFalse);
+        } else {
+          branch(node.getLeft(), ifTrue, right);
+        }
+        startBlock(right);
+        branch(node.getRight(), ifTrue, ifFalse);
+        return;
+      }
+    } else if (condition instanceof UnaryOpNode
+        && ((UnaryOpNode) condition).getOp() == ExprNode.UnOp.LOGICAL_NOT) {
+      branch(((UnaryOpNode) condition).getArg(), ifFalse, ifTrue);
+      return;
+    }
+    emit(new Branch(condition.lower(this), ifTrue, ifFalse));
+  }
+
+  // Lowering Exprs
+
+  public Operand lowerArrayElemNode(ArrayElemNode node) {
+    return load(IRType.of(node.getType()), elementAddress(node), 4);
+  }
+
+  public Operand lowerArrayLiteralNode(ArrayLiteralNode node) {
+    if (ArrayLiteralNode.isPureString(node)) {
+      Temp string = function.newTemp(IRType.REFERENCE);
+      emit(new StringConstant(string, node.toString()));
+      return string;
+    }
+    List<Operand> elements = new ArrayList<>();
+    int size = 4;
+    for (int i = 0; i < node.getLength(); i++) {
+      size += IRType.of(node.getElement(i).getType()).getSizeInBytes();
+    }
+    Temp array = malloc(size);
+    int offset = 4;
+    for (int i = 0; i < node.getLength(); i++) {
+      IRType type = IRType.of(node.getElement(i).getType());
+      emit(new Store(node.getElement(i).lower(this), array, offset, type));
+      offset += type.getSizeInBytes();
+    }
+    emit(new Store(new Constant(node.getLength(), IRType.INT), array, 0,
+        IRType.INT));
+    return array;
+  }
+
+  public Operand lowerBinaryOpNode(BinaryOpNode node) {
+    if (node.getOp() == ExprNode.BinOp.LOGICAL_AND
+        || node.getOp() == ExprNode.BinOp.LOGICAL_OR) {
+      return shortCircuit(node);
+    }
+    Operand left = node.getLeft().lower(this);
+    Operand right = node.getRight().lower(this);
+    switch (node.getOp()) {
+      case MULTIPLY:
+        return binary(Operator.MUL, IRType.INT, left, right, true);
+      case DIVIDE:
+        emit(new Check(Check.Kind.DIVIDE_BY_ZERO, Collections
+            .singletonList(right)));
+        return binary(Operator.DIV, IRType.INT, left, right, false);
+      case MODULUS:
+        emit(new Check(Check.Kind.DIVIDE_BY_ZERO, Collections
+            .singletonList(right)));
+        return binary(Operator.MOD, IRType.INT, left, right, false);
+      case PLUS:
+        return binary(Operator.ADD, IRType.INT, left, right, true);
+      case MINUS:
+        return binary(Operator.SUB, IRType.INT, left, right, true);
+      case GREATER:
+        return binary(Operator.GT, IRType.BOOL, left, right, false);
+      case GEQ:
+        return binary(Operator.GE, IRType.BOOL, left, right, false);
+      case LESS:
+        return binary(Operator.LT, IRType.BOOL, left, right, false);
+      case LEQ:
+        return binary(Operator.LE, IRType.BOOL, left, right, false);
+      case EQUALS:
+        return binary(Operator.EQ, IRType.BOOL, left, right, false);
+      default:
+        return binary(Operator.NE, IRType.BOOL, left, right, false);
+    }
+  }
+
+  // && and || as values are built from the same jumping code as conditions
+  private Operand shortCircuit(BinaryOpNode node) {
+    Temp result = function.newTemp(IRType.BOOL);
+    BasicBlock ifTrue = function.newBlock();
+    BasicBlock ifFalse = function.newBlock();
+    BasicBlock join = function.newBlock();
+    branch(node, ifTrue, ifFalse);
+    startBlock(ifTrue);
+    emit(new Move(result, new Constant(1, IRType.BOOL)));
+    emit(new Jump(join));
+    startBlock(ifFalse);
+    emit(new Move(result, new Constant(0, IRType.BOOL)));
+    emit(new Jump(join));
+    startBlock(join);
+    return result;
+  }
+
+  public Operand lowerBoolLiteralNode(BoolLiteralNode node) {
+    return new Constant(node.getValue() ? 1 : 0, IRType.BOOL);
+  }
+
+  public Operand lowerCallNode(CallNode node) {
+    List<Operand> arguments = new ArrayList<>();
+    for (int i = 0; i < node.getArgCount(); i++) {
+      arguments.add(node.getArg(i).lower(this));
+    }
+    Temp result = function.newTemp(IRType.of(node.getType()));
+    emit(new Call(result, node.getFunction(), arguments));
+    return result;
+  }
+
+  public Operand lowerCharLiteralNode(CharLiteralNode node) {
+    return new Constant(node.getValue(), IRType.CHAR);
+  }
+
+  public Operand lowerIdentNode(IdentNode node) {
+    return temp(node.getVariable());
+  }
+
+  public Operand lowerIntLiteralNode(IntLiteralNode node) {
+    return new Constant(node.getValue(), IRType.INT);
+  }
+
+  public Operand lowerNewPairNode(NewPairNode node) {
+    Temp pair = malloc(8);
+    ExprNode[] elements = { node.getLeft(), node.getRight() };
+    for (int i = 0; i < elements.length; i++) {
+      Operand value = elements[i].lower(this);
+      IRType type = IRType.of(elements[i].getType());
+      Temp box = malloc(type.getSizeInBytes());
+      emit(new Store(value, box, 0, type));
+      emit(new Store(box, pair, 4 * i, IRType.REFERENCE));
+    }
+    return pair;
+  }
+
+  public Operand lowerNullNode(NullNode node) {
+    return new Constant(0, IRType.REFERENCE);
+  }
+
+  public Operand lowerPairElemNode(PairElemNode node) {
+    return load(IRType.of(node.getType()), pairBox(node), 0);
+  }
+
+  public Operand lowerUnaryOpNode(UnaryOpNode node) {
+    Operand argument = node.getArg().lower(this);
+    switch (node.getOp()) {
+      case LOGICAL_NOT:
+        return binary(Operator.XOR, IRType.BOOL, argument, new Constant(1,
+            IRType.BOOL), false);
+      case NEGATION:
+        return binary(Operator.SUB, IRType.INT, new Constant(0, IRType.INT),
+            argument, true);
+      case LEN:
+        // The length is written once, when the array is created
+        Temp length = function.newTemp(IRType.INT);
+        emit(new Load(length, argument, 0, true));
+        return length;
+      default:
+        // ord and chr only change the type of the value
+        Temp result = function.newTemp(IRType.of(node.getType()));
+        emit(new Move(result, argument));
+        return result;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package smacc.ir;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class Move extends Definition {
+
+  private Temp destination;
+  private Operand source;
+
+  public Move(Temp destination, Operand source) {
+    this.destination = destination;
+    this.source = source;
+  }
+
+  public Operand getSource() {
+    return source;
+  }
+
+  @Override
+  public Temp getDefined() {
+    return destination;
+  }
+
+  @Override
+  public void setDefined(Temp temp) {
+    destination = temp;
+  }
+
+  @Override
+  public List<Operand> getUsed() {
+    return Collections.singletonList(source);
+  }
+
+  @Override
+  public void replaceUses(Map<Operand, Operand> replacements) {
+    source = replace(source, replacements);
+  }
+
+  @Override
+  public Instruction copy() {
+    return new Move(destination, source);
+  }
+
+  @Override
+  public String toString() {
+    return destination + " = " + source;
+  }
+}
@@ -0,0 +1,131 @@
+package smacc.ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * NaturalLoops
+ * The loops of a function, found from back edges, edges into a block
+ * dominating their source. The loop of such a header is every block reaching
+ * the back edge without passing through the header, loops sharing a header
+ * are merged.
+ *
+ * Headers are listed inner loops first. Placing a preheader keeps the
+ * blocks of enclosing loops and the dominator tree up to date.
+ */
+public class NaturalLoops {
+
+  private IRFunction function;
+  private DominatorTree dominators;
+  private final Map<BasicBlock, Set<BasicBlock>> loops = new HashMap<>();
+  private List<BasicBlock> headers;
+
+  public NaturalLoops(IRFunction function) {
+    this.function = function;
+    function.computePredecessors();
+    dominators = new DominatorTree(function);
+
+    for (BasicBlock block : function.getBlocks()) {
+      for (BasicBlock header : block.getSuccessors()) {
+        if (!dominators.dominates(header, block)) {
+          continue;
+        }
+        if (!loops.containsKey(header)) {
+          loops.put(header, new HashSet<>(Collections.singleton(header)));
+        }
+        Set<BasicBlock> body = loops.get(header);
+        Deque<BasicBlock> worklist = new ArrayDeque<>();
+        if (body.add(block)) {
+          worklist.add(block);
+        }
+        while (!worklist.isEmpty()) {
+          for (BasicBlock predecessor : worklist.poll().getPredecessors()) {
+            if (body.add(predecessor)) {
+              worklist.add(predecessor);
+            }
+          }
+        }
+      }
+    }
+
+    headers = new ArrayList<>(loops.keySet());
+    Collections.sort(headers, new Comparator<BasicBlock>() {
+      @Override
+      public int compare(BasicBlock a, BasicBlock b) {
+        return Integer.compare(loops.get(a).size(), loops.get(b).size());
+      }
+    });
+  }
+
+  public DominatorTree getDominators() {
+    return dominators;
+  }
+
+  public List<BasicBlock> getHeaders() {
+    return headers;
+  }
+
+  public Set<BasicBlock> getBody(BasicBlock header) {
+    return loops.get(header);
+  }
+
+  // Loops nested in the loop of header, other than itself
+  public boolean hasInnerLoop(BasicBlock header) {
+    for (BasicBlock other : headers) {
+      if (other != header && loops.get(header).contains(other)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /*
+   * The single block entering the loop if it leads nowhere else, otherwise
+   * a new block placed on that edge. Loops entered from more than one block
+   * are given none, and null is returned.
+   */
+  public BasicBlock preheader(BasicBlock header) {
+    Set<BasicBlock> body = loops.get(header);
+    List<BasicBlock> entries = new ArrayList<>();
+    for (BasicBlock predecessor : header.getPredecessors()) {
+      if (!body.contains(predecessor)) {
+        entries.add(predecessor);
+      }
+    }
+    if (entries.size() != 1) {
+      return null;
+    }
+    BasicBlock entry = entries.get(0);
+    if (entry.getSuccessors().size() == 1) {
+      return entry;
+    }
+
+    BasicBlock preheader = function.newBlock();
+    preheader.add(new Jump(header));
+    ((Branch) entry.getTerminator()).replaceTarget(header, preheader);
+    for (Instruction instruction : header.getInstructions()) {
+      if (!(instruction instanceof Phi)) {
+        break;
+      }
+      Map<BasicBlock, Operand> operands = ((Phi) instruction).getOperands();
+      operands.put(preheader, operands.remove(entry));
+    }
+    function.getBlocks().add(function.getBlocks().indexOf(header), preheader);
+    for (BasicBlock outer : headers) {
+      if (outer != header && loops.get(outer).contains(header)) {
+        loops.get(outer).add(preheader);
+      }
+    }
+    function.computePredecessors();
+    dominators = new DominatorTree(function);
+    return preheader;
+  }
+}
@@ -0,0 +1,74 @@
+package smacc.ir;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import smacc.ir.BinaryOperation.Operator;
+
+/*
+ * NullCheckElimination
+ * Removes null checks of references already known not to be null, on a
+ * function in SSA form. A temp is never assigned again, so it stays non-null
+ * everywhere dominated by the point it was found to be: its allocation by
+ * newpair, an earlier check of it that passed, or a branch on it being
+ * different from null.
+ *
+ * The dominator tree is walked from the entry carrying the references known
+ * not to be null, each block adding to what its immediate dominator knew.
+ */
+public class NullCheckElimination {
+
+  private IRFunction function;
+  private DominatorTree dominators;
+  private RangeAnalysis ranges;
+
+  public static void run(IRFunction function) {
+    new NullCheckElimination(function).run();
+  }
+
+  private NullCheckElimination(IRFunction function) {
+    this.function = function;
+  }
+
+  private void run() {
+    function.computePredecessors();
+    dominators = new DominatorTree(function);
+    ranges = new RangeAnalysis(function, dominators);
+    visit(function.getEntry(), new HashSet<Operand>());
+  }
+
+  private void visit(BasicBlock block, Set<Operand> dominatorKnows) {
+    Set<Operand> nonNull = new HashSet<>(dominatorKnows);
+    for (Comparison fact : ranges.getFacts(block)) {
+      if (fact.getOperator() == Operator.NE && isNull(fact.getRight())) {
+        nonNull.add(fact.getLeft());
+      } else if (fact.getOperator() == Operator.NE && isNull(fact.getLeft())) {
+        nonNull.add(fact.getRight());
+      }
+    }
+
+    Iterator<Instruction> iterator = block.getInstructions().iterator();
+    while (iterator.hasNext()) {
+      Instruction instruction = iterator.next();
+      if (instruction instanceof Check
+          && ((Check) instruction).getKind() == Check.Kind.NULL_POINTER) {
+        // Execution only carries on past a check that passes
+        if (!nonNull.add(ranges.resolve(instruction.getUsed().get(0)))) {
+          iterator.remove();
+        }
+      } else if (instruction instanceof RuntimeCall
+          && "malloc".equals(((RuntimeCall) instruction).getLabel())) {
+        nonNull.add(instruction.getDefined());
+      }
+    }
+
+    for (BasicBlock child : dominators.getChildren(block)) {
+      visit(child, nonNull);
+    }
+  }
+
+  private static boolean isNull(Operand operand) {
+    return operand.isConstant() && ((Constant) operand).getValue() == 0;
+  }
+}
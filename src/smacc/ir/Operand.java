@@ -0,0 +1,22 @@
+package smacc.ir;
+
+/*
+ * Operand
+ * Anything an IR instruction can read, either a temporary or a constant
+ */
+public abstract class Operand {
+
+  protected IRType type;
+
+  public Operand(IRType type) {
+    this.type = type;
+  }
+
+  public IRType getType() {
+    return type;
+  }
+
+  public boolean isConstant() {
+    return false;
+  }
+}
@@ -0,0 +1,22 @@
+package smacc.ir;
+
+/*
+ * Optimiser
+ * Runs the IR passes of optimisation level 2 over a lowered function
+ */
+public class Optimiser {
+
+  public static IRFunction optimise(IRFunction function) {
+    SSAForm.construct(function);
+    ConstantPropagation.run(function);
+    GlobalValueNumbering.run(function);
+    BoundsCheckElimination.run(function);
+    OverflowCheckElimination.run(function);
+    NullCheckElimination.run(function);
+    LoopInvariantCodeMotion.run(function);
+    LoopStrengthReduction.run(function);
+    DeadCodeElimination.run(function);
+    SSAForm.destruct(function);
+    return function;
+  }
+}
@@ -0,0 +1,33 @@
+package smacc.ir;
+
+import smacc.ir.RangeAnalysis.Range;
+
+/*
+ * OverflowCheckElimination
+ * Drops the overflow check of additions, subtractions and multiplications
+ * whose exact result is shown by range analysis to fit in an int, such as
+ * a counter below an array length being incremented. The instruction
+ * selector then emits the operation without setting the flags or
+ * branching on them.
+ */
+public class OverflowCheckElimination {
+
+  public static void run(IRFunction function) {
+    function.computePredecessors();
+    RangeAnalysis ranges = new RangeAnalysis(function, new DominatorTree(
+        function));
+    for (BasicBlock block : function.getBlocks()) {
+      for (Instruction instruction : block.getInstructions()) {
+        if (!(instruction instanceof BinaryOperation)
+            || !((BinaryOperation) instruction).isChecked()) {
+          continue;
+        }
+        BinaryOperation operation = (BinaryOperation) instruction;
+        Range range = ranges.getExactRange(operation, block);
+        if (range != null && range.isInt()) {
+          operation.setChecked(false);
+        }
+      }
+    }
+  }
+}
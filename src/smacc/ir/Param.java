@@ -0,0 +1,63 @@
+package smacc.ir;
+
+// Reads a parameter from an argument register, or from the caller's frame
+// where offset is from the last argument pushed
+public class Param extends Definition {
+
+  // Offset of parameters passed in registers
+  public static final int IN_REGISTER = -1;
+
+  private Temp destination;
+  private int offset;
+  private int register;
+
+  public Param(Temp destination, int offset) {
+    this(destination, offset, IN_REGISTER);
+  }
+
+  // Parameter arriving in argument register register
+  public static Param inRegister(Temp destination, int register) {
+    return new Param(destination, IN_REGISTER, register);
+  }
+
+  private Param(Temp destination, int offset, int register) {
+    this.destination = destination;
+    this.offset = offset;
+    this.register = register;
+  }
+
+  public boolean isInRegister() {
+    return offset == IN_REGISTER;
+  }
+
+  public int getRegister() {
+    return register;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  @Override
+  public Temp getDefined() {
+    return destination;
+  }
+
+  @Override
+  public void setDefined(Temp temp) {
+    destination = temp;
+  }
+
+  @Override
+  public Instruction copy() {
+    return new Param(destination, offset, register);
+  }
+
+  @Override
+  public String toString() {
+    if (isInRegister()) {
+      return destination + " = PARAM r" + register;
+    }
+    return destination + " = PARAM #" + offset;
+  }
+}
@@ -0,0 +1,70 @@
+package smacc.ir;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Phi
+ * Chooses the operand of the predecessor control came from. Phis only exist
+ * at the start of blocks while the function is in SSA form.
+ */
+public class Phi extends Definition {
+
+  private Temp destination;
+  private Map<BasicBlock, Operand> operands = new LinkedHashMap<>();
+
+  public Phi(Temp destination) {
+    this.destination = destination;
+  }
+
+  public Map<BasicBlock, Operand> getOperands() {
+    return operands;
+  }
+
+  public void setOperand(BasicBlock predecessor, Operand operand) {
+    operands.put(predecessor, operand);
+  }
+
+  @Override
+  public Temp getDefined() {
+    return destination;
+  }
+
+  @Override
+  public void setDefined(Temp temp) {
+    destination = temp;
+  }
+
+  @Override
+  public List<Operand> getUsed() {
+    return new ArrayList<>(operands.values());
+  }
+
+  @Override
+  public void replaceUses(Map<Operand, Operand> replacements) {
+    for (Map.Entry<BasicBlock, Operand> entry : operands.entrySet()) {
+      entry.setValue(replace(entry.getValue(), replacements));
+    }
+  }
+
+  @Override
+  public Instruction copy() {
+    Phi copy = new Phi(destination);
+    copy.operands.putAll(operands);
+    return copy;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder(destination + " = PHI");
+    String separator = " ";
+    for (Map.Entry<BasicBlock, Operand> entry : operands.entrySet()) {
+      builder.append(separator).append(entry.getKey().getName()).append(":")
+          .append(entry.getValue());
+      separator = ", ";
+    }
+    return builder.toString();
+  }
+}
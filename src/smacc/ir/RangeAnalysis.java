@@ -0,0 +1,371 @@
+package smacc.ir;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import smacc.ir.BinaryOperation.Operator;
+
+/*
+ * RangeAnalysis
+ * The smallest and largest value every temp of a function in SSA form can
+ * hold, found by evaluating the instructions over intervals until nothing
+ * changes.
+ *
+ * A value is narrowed where it is read by the comparisons branched on to
+ * get there, so a counter is below its limit inside the loop it controls.
+ * Checked arithmetic throws rather than wrapping, so its result always lies
+ * within the int range. Bounds still moving after a few passes over a loop
+ * are widened to the end of the int range so the analysis terminates.
+ */
+public class RangeAnalysis {
+
+  private static final long MIN = Integer.MIN_VALUE;
+  private static final long MAX = Integer.MAX_VALUE;
+
+  private static final Range ANY = new Range(MIN, MAX);
+
+  // Changes to a range before its moving bounds are widened
+  private static final int WIDENING_ROUNDS = 3;
+
+  private DominatorTree dominators;
+  private Map<Temp, Instruction> definitions = new HashMap<>();
+  private Map<Temp, Range> ranges = new HashMap<>();
+  private Map<Temp, Integer> changes = new HashMap<>();
+  private Map<BasicBlock, List<Comparison>> facts = new HashMap<>();
+
+  public RangeAnalysis(IRFunction function, DominatorTree dominators) {
+    this.dominators = dominators;
+    for (BasicBlock block : function.getBlocks()) {
+      for (Instruction instruction : block.getInstructions()) {
+        if (instruction.getDefined() != null) {
+          definitions.put(instruction.getDefined(), instruction);
+        }
+      }
+    }
+
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (BasicBlock block : dominators.getReversePostorder()) {
+        for (Instruction instruction : block.getInstructions()) {
+          Temp defined = instruction.getDefined();
+          if (defined != null) {
+            changed |= update(defined, evaluate(instruction, block));
+          }
+        }
+      }
+    }
+  }
+
+  public Instruction getDefinition(Operand operand) {
+    return definitions.get(operand);
+  }
+
+  // The operand a chain of moves copies, so copies compare equal
+  public Operand resolve(Operand operand) {
+    while (!operand.isConstant()
+        && definitions.get(operand) instanceof Move) {
+      operand = ((Move) definitions.get(operand)).getSource();
+    }
+    return operand;
+  }
+
+  /*
+   * Comparisons known to hold on entering block, from the branches on the
+   * way down the dominator tree whose edge is the only way into the next
+   * block on it. Operands are resolved.
+   */
+  public List<Comparison> getFacts(BasicBlock block) {
+    if (facts.containsKey(block)) {
+      return facts.get(block);
+    }
+    List<Comparison> known = new ArrayList<>();
+    BasicBlock dominator = dominators.getImmediateDominator(block);
+    if (dominator != null) {
+      known.addAll(getFacts(dominator));
+      Instruction terminator = dominator.getTerminator();
+      if (block.getPredecessors().size() == 1
+          && terminator instanceof Branch) {
+        Branch branch = (Branch) terminator;
+        Instruction condition = definitions.get(resolve(branch
+            .getCondition()));
+        if (branch.getIfTrue() != branch.getIfFalse()
+            && condition instanceof BinaryOperation
+            && ((BinaryOperation) condition).getOperator().isComparison()) {
+          BinaryOperation comparison = (BinaryOperation) condition;
+          Operator operator = comparison.getOperator();
+          known.add(new Comparison(block == branch.getIfTrue() ? operator
+              : operator.negate(), resolve(comparison.getLeft()),
+              resolve(comparison.getRight())));
+        }
+      }
+    }
+    facts.put(block, known);
+    return known;
+  }
+
+  // Range of operand when read in block, null if it is never defined
+  public Range getRange(Operand operand, BasicBlock block) {
+    operand = resolve(operand);
+    Range range = rangeOf(operand);
+    if (range == null || operand.isConstant()) {
+      return range;
+    }
+    for (Comparison fact : getFacts(block)) {
+      Comparison oriented = fact.orient(operand);
+      Range other = (oriented == null) ? null : rangeOf(oriented.getRight());
+      if (other == null) {
+        continue;
+      }
+      long min = range.min;
+      long max = range.max;
+      switch (oriented.getOperator()) {
+        case LT:
+          max = Math.min(max, other.max - 1);
+          break;
+        case LE:
+          max = Math.min(max, other.max);
+          break;
+        case GT:
+          min = Math.max(min, other.min + 1);
+          break;
+        case GE:
+          min = Math.max(min, other.min);
+          break;
+        case EQ:
+          min = Math.max(min, other.min);
+          max = Math.min(max, other.max);
+          break;
+        default:
+          if (other.isConstant() && other.min == min) {
+            min++;
+          } else if (other.isConstant() && other.max == max) {
+            max--;
+          }
+      }
+      // Only reached on a path that is never taken
+      if (min > max) {
+        return null;
+      }
+      range = new Range(min, max);
+    }
+    return range;
+  }
+
+  /*
+   * Range of the exact result of an operation in block, before any overflow
+   * check or wrapping, null if it cannot be bounded
+   */
+  public Range getExactRange(BinaryOperation operation, BasicBlock block) {
+    Range left = getRange(operation.getLeft(), block);
+    Range right = getRange(operation.getRight(), block);
+    if (left == null || right == null) {
+      return null;
+    }
+    switch (operation.getOperator()) {
+      case ADD:
+        return new Range(left.min + right.min, left.max + right.max);
+      case SUB:
+        return new Range(left.min - right.max, left.max - right.min);
+      case MUL:
+        return product(left, right);
+      case SHL:
+        return right.isConstant() && right.min >= 0 && right.min < 31
+            ? product(left, new Range(1L << right.min, 1L << right.min))
+            : null;
+      default:
+        return null;
+    }
+  }
+
+  private Range rangeOf(Operand operand) {
+    if (operand.isConstant()) {
+      int value = ((Constant) operand).getValue();
+      return new Range(value, value);
+    }
+    return ranges.get(operand);
+  }
+
+  private boolean update(Temp temp, Range range) {
+    Range old = ranges.get(temp);
+    if (range == null || range.equals(old)) {
+      return false;
+    }
+    if (old != null) {
+      range = old.join(range);
+      if (range.equals(old)) {
+        return false;
+      }
+      int count = changes.containsKey(temp) ? changes.get(temp) + 1 : 1;
+      changes.put(temp, count);
+      if (count >= WIDENING_ROUNDS) {
+        range = new Range(range.min < old.min ? MIN : old.min,
+            range.max > old.max ? MAX : old.max);
+      }
+    }
+    ranges.put(temp, range);
+    return true;
+  }
+
+  private Range evaluate(Instruction instruction, BasicBlock block) {
+    if (instruction instanceof Move) {
+      return getRange(((Move) instruction).getSource(), block);
+    }
+    if (instruction instanceof Phi) {
+      Range range = null;
+      for (Map.Entry<BasicBlock, Operand> operand : ((Phi) instruction)
+          .getOperands().entrySet()) {
+        Range incoming = getRange(operand.getValue(), operand.getKey());
+        if (incoming != null) {
+          range = (range == null) ? incoming : range.join(incoming);
+        }
+      }
+      return range;
+    }
+    if (instruction instanceof Load) {
+      Load load = (Load) instruction;
+      if (load.isImmutable()) {
+        return new Range(0, MAX);
+      }
+      // Bytes are loaded sign extended by LDRSB
+      return load.getDefined().getType().isByte() ? new Range(-128, 127) : ANY;
+    }
+    if (instruction instanceof BinaryOperation) {
+      return evaluate((BinaryOperation) instruction, block);
+    }
+    return ANY;
+  }
+
+  private Range evaluate(BinaryOperation operation, BasicBlock block) {
+    Range left = getRange(operation.getLeft(), block);
+    Range right = getRange(operation.getRight(), block);
+    if (left == null || right == null) {
+      return null;
+    }
+    Operator operator = operation.getOperator();
+    if (operator.isComparison()) {
+      return new Range(0, 1);
+    }
+
+    Range range;
+    switch (operator) {
+      case DIV:
+        range = quotient(left, right);
+        break;
+      case MOD:
+        range = remainder(left, right);
+        break;
+      case AND:
+        if (left.min >= 0 || right.min >= 0) {
+          range = new Range(0, Math.min(left.min >= 0 ? left.max : MAX,
+              right.min >= 0 ? right.max : MAX));
+        } else {
+          range = ANY;
+        }
+        break;
+      case OR:
+      case XOR:
+        boolean bools = left.min >= 0 && left.max <= 1 && right.min >= 0
+            && right.max <= 1;
+        range = bools ? new Range(0, 1) : ANY;
+        break;
+      default:
+        range = getExactRange(operation, block);
+    }
+    if (range == null) {
+      return ANY;
+    }
+    if (operation.isChecked()) {
+      // Results outside the int range throw instead
+      return range.min > MAX || range.max < MIN ? null : new Range(Math.max(
+          range.min, MIN), Math.min(range.max, MAX));
+    }
+    return range.isInt() ? range : ANY;
+  }
+
+  private static Range product(Range left, Range right) {
+    long a = left.min * right.min;
+    long b = left.min * right.max;
+    long c = left.max * right.min;
+    long d = left.max * right.max;
+    return new Range(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(
+        Math.max(a, b), Math.max(c, d)));
+  }
+
+  // Rounds towards zero, so is no larger in size than the dividend
+  private static Range quotient(Range left, Range right) {
+    if (right.min > 0 || right.max < 0) {
+      long a = left.min / right.min;
+      long b = left.min / right.max;
+      long c = left.max / right.min;
+      long d = left.max / right.max;
+      return new Range(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(
+          Math.max(a, b), Math.max(c, d)));
+    }
+    long size = Math.max(Math.abs(left.min), Math.abs(left.max));
+    return new Range(-size, size);
+  }
+
+  // Takes the sign of the dividend and is smaller in size than the divisor
+  private static Range remainder(Range left, Range right) {
+    long size = Math.max(Math.max(Math.abs(right.min), Math.abs(right.max))
+        - 1, 0);
+    long min = (left.min >= 0) ? 0 : Math.max(left.min, -size);
+    long max = (left.max <= 0) ? 0 : Math.min(left.max, size);
+    return new Range(Math.min(min, max), max);
+  }
+
+  // The values from min to max inclusive
+  public static class Range {
+
+    private final long min;
+    private final long max;
+
+    public Range(long min, long max) {
+      this.min = min;
+      this.max = max;
+    }
+
+    public long getMin() {
+      return min;
+    }
+
+    public long getMax() {
+      return max;
+    }
+
+    public boolean isConstant() {
+      return min == max;
+    }
+
+    // Holds no value an int cannot
+    public boolean isInt() {
+      return min >= MIN && max <= MAX;
+    }
+
+    public Range join(Range other) {
+      return new Range(Math.min(min, other.min), Math.max(max, other.max));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Range)) {
+        return false;
+      }
+      Range other = (Range) o;
+      return other.min == min && other.max == max;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (31 * min + max);
+    }
+
+    @Override
+    public String toString() {
+      return "[" + min + ", " + max + "]";
+    }
+  }
+}
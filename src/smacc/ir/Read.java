@@ -0,0 +1,60 @@
+package smacc.ir;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Read
+ * Reads an int or char from standard input into a temp. When the input
+ * cannot be read the temp keeps its previous value.
+ */
+public class Read extends Definition {
+
+  private Temp destination;
+  private Operand previous;
+
+  public Read(Temp destination, Operand previous) {
+    this.destination = destination;
+    this.previous = previous;
+  }
+
+  public Operand getPrevious() {
+    return previous;
+  }
+
+  @Override
+  public Temp getDefined() {
+    return destination;
+  }
+
+  @Override
+  public void setDefined(Temp temp) {
+    destination = temp;
+  }
+
+  @Override
+  public List<Operand> getUsed() {
+    return Collections.singletonList(previous);
+  }
+
+  @Override
+  public void replaceUses(Map<Operand, Operand> replacements) {
+    previous = replace(previous, replacements);
+  }
+
+  @Override
+  public boolean hasSideEffects() {
+    return true;
+  }
+
+  @Override
+  public Instruction copy() {
+    return new Read(destination, previous);
+  }
+
+  @Override
+  public String toString() {
+    return destination + " = READ " + previous;
+  }
+}
@@ -0,0 +1,43 @@
+package smacc.ir;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class Return extends Instruction {
+
+  private Operand value;
+
+  public Return(Operand value) {
+    this.value = value;
+  }
+
+  public Operand getValue() {
+    return value;
+  }
+
+  @Override
+  public List<Operand> getUsed() {
+    return Collections.singletonList(value);
+  }
+
+  @Override
+  public void replaceUses(Map<Operand, Operand> replacements) {
+    value = replace(value, replacements);
+  }
+
+  @Override
+  public boolean isTerminator() {
+    return true;
+  }
+
+  @Override
+  public Instruction copy() {
+    return new Return(value);
+  }
+
+  @Override
+  public String toString() {
+    return "RETURN " + value;
+  }
+}
@@ -0,0 +1,108 @@
+package smacc.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import smacc.arm.PredefinedFunctionHandler.PredefinedFunction;
+
+/*
+ * RuntimeCall
+ * Calls a predefined function or a C library routine such as malloc, with
+ * the arguments passed in r0 upwards and any result returned in r0
+ */
+public class RuntimeCall extends Definition {
+
+  private Temp destination;
+  private PredefinedFunction predefinedFunction;
+  private String label;
+  private List<Operand> arguments;
+
+  public RuntimeCall(Temp destination, PredefinedFunction predefinedFunction,
+      List<Operand> arguments) {
+    this.destination = destination;
+    this.predefinedFunction = predefinedFunction;
+    this.arguments = arguments;
+  }
+
+  public RuntimeCall(Temp destination, String label, List<Operand> arguments) {
+    this.destination = destination;
+    this.label = label;
+    this.arguments = arguments;
+  }
+
+  // Null when calling a library routine by label
+  public PredefinedFunction getPredefinedFunction() {
+    return predefinedFunction;
+  }
+
+  public String getLabel() {
+    return label;
+  }
+
+  public List<Operand> getArguments() {
+    return arguments;
+  }
+
+  @Override
+  public Temp getDefined() {
+    return destination;
+  }
+
+  @Override
+  public void setDefined(Temp temp) {
+    destination = temp;
+  }
+
+  @Override
+  public List<Operand> getUsed() {
+    return arguments;
+  }
+
+  @Override
+  public void replaceUses(Map<Operand, Operand> replacements) {
+    List<Operand> replaced = new ArrayList<>();
+    for (Operand argument : arguments) {
+      replaced.add(replace(argument, replacements));
+    }
+    arguments = replaced;
+  }
+
+  @Override
+  public boolean hasSideEffects() {
+    return true;
+  }
+
+  // Reads into and frees heap objects, library routines called by label,
+  // malloc, putchar and exit, leave existing objects alone
+  @Override
+  public boolean writesMemory() {
+    if (predefinedFunction == null) {
+      return false;
+    }
+    switch (predefinedFunction) {
+      case P_READ_INT:
+      case P_READ_CHAR:
+      case P_FREE_ARRAY:
+      case P_FREE_PAIR:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  @Override
+  public Instruction copy() {
+    RuntimeCall copy = new RuntimeCall(destination, predefinedFunction,
+        new ArrayList<>(arguments));
+    copy.label = label;
+    return copy;
+  }
+
+  @Override
+  public String toString() {
+    String name = (label == null) ? predefinedFunction.name() : label;
+    return ((destination == null) ? "" : destination + " = ") + "RUNTIME "
+        + name + arguments;
+  }
+}
@@ -0,0 +1,192 @@
+package smacc.ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * SSAForm
+ * Puts a function into static single assignment form and takes it out again.
+ *
+ * Phis are only placed for temps that are live into some block, at the
+ * iterated dominance frontier of the blocks assigning them. Every definition
+ * is then given a new temp walking down the dominator tree. A use no
+ * definition reaches reads 0, which can only happen on paths the source
+ * program never takes with the variable in scope.
+ */
+public class SSAForm {
+
+  private IRFunction function;
+  private DominatorTree dominators;
+  private Map<Phi, Temp> phiTemps = new IdentityHashMap<>();
+  private Map<Temp, Deque<Operand>> names = new HashMap<>();
+
+  public static void construct(IRFunction function) {
+    new SSAForm(function).construct();
+  }
+
+  /*
+   * Each phi is given a temp of its own which every predecessor copies its
+   * operand into just before its terminator. As no other code reads these
+   * temps, the copies are safe on critical edges and cannot clobber another
+   * phi's operand, the allocator coalesces most of them away.
+   */
+  public static void destruct(IRFunction function) {
+    for (BasicBlock block : function.getBlocks()) {
+      List<Instruction> instructions = block.getInstructions();
+      for (int i = 0; i < instructions.size(); i++) {
+        if (!(instructions.get(i) instanceof Phi)) {
+          break;
+        }
+        Phi phi = (Phi) instructions.get(i);
+        Temp copy = function.newTemp(phi.getDefined().getType());
+        for (Map.Entry<BasicBlock, Operand> operand : phi.getOperands()
+            .entrySet()) {
+          List<Instruction> predecessor = operand.getKey().getInstructions();
+          predecessor.add(predecessor.size() - 1, new Move(copy,
+              operand.getValue()));
+        }
+        instructions.set(i, new Move(phi.getDefined(), copy));
+      }
+    }
+  }
+
+  private SSAForm(IRFunction function) {
+    this.function = function;
+  }
+
+  private void construct() {
+    function.computePredecessors();
+    dominators = new DominatorTree(function);
+    placePhis();
+    rename(function.getEntry());
+    removeDeadPhis(function);
+  }
+
+  private void placePhis() {
+    Map<Temp, Set<BasicBlock>> assignments = new HashMap<>();
+    Set<Temp> liveIn = new HashSet<>();
+    for (BasicBlock block : function.getBlocks()) {
+      Set<Temp> assigned = new HashSet<>();
+      for (Instruction instruction : block.getInstructions()) {
+        for (Operand operand : instruction.getUsed()) {
+          if (!operand.isConstant() && !assigned.contains(operand)) {
+            liveIn.add((Temp) operand);
+          }
+        }
+        Temp defined = instruction.getDefined();
+        if (defined != null) {
+          assigned.add(defined);
+          if (!assignments.containsKey(defined)) {
+            assignments.put(defined, new HashSet<BasicBlock>());
+          }
+          assignments.get(defined).add(block);
+        }
+      }
+    }
+
+    for (Temp temp : liveIn) {
+      if (!assignments.containsKey(temp)) {
+        continue;
+      }
+      Set<BasicBlock> hasPhi = new HashSet<>();
+      Deque<BasicBlock> worklist = new ArrayDeque<>(assignments.get(temp));
+      while (!worklist.isEmpty()) {
+        for (BasicBlock join : dominators.getFrontier(worklist.poll())) {
+          if (hasPhi.add(join)) {
+            Phi phi = new Phi(temp);
+            phiTemps.put(phi, temp);
+            join.getInstructions().add(0, phi);
+            worklist.add(join);
+          }
+        }
+      }
+    }
+  }
+
+  private Operand currentName(Temp temp) {
+    Deque<Operand> stack = names.get(temp);
+    if (stack == null || stack.isEmpty()) {
+      return new Constant(0, temp.getType());
+    }
+    return stack.peek();
+  }
+
+  private Temp newName(Temp temp, List<Temp> pushed) {
+    Temp name = function.newTemp(temp.getType());
+    if (!names.containsKey(temp)) {
+      names.put(temp, new ArrayDeque<Operand>());
+    }
+    names.get(temp).push(name);
+    pushed.add(temp);
+    return name;
+  }
+
+  private void rename(BasicBlock block) {
+    List<Temp> pushed = new ArrayList<>();
+    for (Instruction instruction : block.getInstructions()) {
+      if (!(instruction instanceof Phi)) {
+        Map<Operand, Operand> replacements = new HashMap<>();
+        for (Operand operand : instruction.getUsed()) {
+          if (!operand.isConstant()) {
+            replacements.put((Temp) operand, currentName((Temp) operand));
+          }
+        }
+        instruction.replaceUses(replacements);
+      }
+      Temp defined = instruction.getDefined();
+      if (defined != null) {
+        ((Definition) instruction).setDefined(newName(defined, pushed));
+      }
+    }
+
+    for (BasicBlock successor : block.getSuccessors()) {
+      for (Instruction instruction : successor.getInstructions()) {
+        if (!(instruction instanceof Phi)) {
+          break;
+        }
+        Phi phi = (Phi) instruction;
+        phi.setOperand(block, currentName(phiTemps.get(phi)));
+      }
+    }
+
+    for (BasicBlock child : dominators.getChildren(block)) {
+      rename(child);
+    }
+    for (Temp temp : pushed) {
+      names.get(temp).pop();
+    }
+  }
+
+  // Phis of variables that are never read again, such as at loop exits
+  private static void removeDeadPhis(IRFunction function) {
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      Set<Operand> used = new HashSet<>();
+      for (BasicBlock block : function.getBlocks()) {
+        for (Instruction instruction : block.getInstructions()) {
+          used.addAll(instruction.getUsed());
+        }
+      }
+      for (BasicBlock block : function.getBlocks()) {
+        Iterator<Instruction> iterator = block.getInstructions().iterator();
+        while (iterator.hasNext()) {
+          Instruction instruction = iterator.next();
+          if (instruction instanceof Phi
+              && !used.contains(instruction.getDefined())) {
+            iterator.remove();
+            changed = true;
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package smacc.ir;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// Writes a value of the given type to memory at base + offset
+public class Store extends Instruction {
+
+  private Operand value;
+  private Operand base;
+  private int offset;
+  private IRType type;
+
+  public Store(Operand value, Operand base, int offset, IRType type) {
+    this.value = value;
+    this.base = base;
+    this.offset = offset;
+    this.type = type;
+  }
+
+  public Operand getValue() {
+    return value;
+  }
+
+  public Operand getBase() {
+    return base;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  public IRType getType() {
+    return type;
+  }
+
+  @Override
+  public List<Operand> getUsed() {
+    return Arrays.asList(value, base);
+  }
+
+  @Override
+  public void replaceUses(Map<Operand, Operand> replacements) {
+    value = replace(value, replacements);
+    base = replace(base, replacements);
+  }
+
+  @Override
+  public boolean hasSideEffects() {
+    return true;
+  }
+
+  @Override
+  public boolean writesMemory() {
+    return true;
+  }
+
+  @Override
+  public Instruction copy() {
+    return new Store(value, base, offset, type);
+  }
+
+  @Override
+  public String toString() {
+    return "STORE" + (type.isByte() ? "B " : " ") + value + ", [" + base
+        + ", #" + offset + "]";
+  }
+}
@@ -0,0 +1,37 @@
+package smacc.ir;
+
+// Address of a string literal placed in the data section
+public class StringConstant extends Definition {
+
+  private Temp destination;
+  private String text;
+
+  public StringConstant(Temp destination, String text) {
+    this.destination = destination;
+    this.text = text;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  @Override
+  public Temp getDefined() {
+    return destination;
+  }
+
+  @Override
+  public void setDefined(Temp temp) {
+    destination = temp;
+  }
+
+  @Override
+  public Instruction copy() {
+    return new StringConstant(destination, text);
+  }
+
+  @Override
+  public String toString() {
+    return destination + " = STRING \"" + text + "\"";
+  }
+}
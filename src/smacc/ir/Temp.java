@@ -0,0 +1,35 @@
+package smacc.ir;
+
+/*
+ * Temp
+ * A virtual register, locals of the source program are held in temps too and
+ * may be assigned several times until the function is put into SSA form
+ */
+public class Temp extends Operand {
+
+  private int id;
+
+  public Temp(int id, IRType type) {
+    super(type);
+    this.id = id;
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return (o instanceof Temp) && ((Temp) o).id == id;
+  }
+
+  @Override
+  public int hashCode() {
+    return id;
+  }
+
+  @Override
+  public String toString() {
+    return "t" + id;
+  }
+}